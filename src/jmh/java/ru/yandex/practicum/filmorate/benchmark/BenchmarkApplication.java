@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.service.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.PopularFilmsIndex;
+
+import java.util.Random;
+
+// Поднимает контекст приложения без веб-сервера на отдельной БД в памяти и заполняет ее синтетическими данными.
+// Дополнительные свойства, например размер пула соединений, переопределяют настройки по умолчанию.
+public final class BenchmarkApplication {
+    private static final long SEED = 42;
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(int users, int films, int likesPerUser,
+                                                      int friendsPerUser, int reviewsPerFilm, String... properties) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.ru.yandex.practicum=warn")
+                .properties(properties)
+                .run();
+
+        new SyntheticDataSeeder(context.getBean(JdbcTemplate.class), new Random(SEED)).seed(SeedScale.builder()
+                .users(users)
+                .films(films)
+                .directors(Math.max(1, films / 20))
+                .likesPerUser(likesPerUser)
+                .friendsPerUser(friendsPerUser)
+                .reviewsPerFilm(reviewsPerFilm)
+                .build());
+
+        // индексы строятся при старте по пустой БД, перестраиваем их по сгенерированным данным
+        context.getBean(PopularFilmsIndex.class).rebuild();
+        context.getBean(FilmSearchIndex.class).rebuild();
+        context.getBean(FilmRecommendationIndex.class).rebuild();
+        return context;
+    }
+}
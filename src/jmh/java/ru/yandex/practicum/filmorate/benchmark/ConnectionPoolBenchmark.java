@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность чтения фильмов через пул соединений при 8/32/128 параллельных клиентах.
+// Четверть операций - популярные фильмы, остальные - фильм по идентификатору.
+// Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=ConnectionPoolBenchmark [-Djmh.args="-p poolSize=8,16,32"]
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+public class ConnectionPoolBenchmark {
+    @Param("16")
+    public int poolSize;
+    @Param("1000")
+    public int films;
+
+    private ConfigurableApplicationContext context;
+    private FilmDbStorage filmDbStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(1000, films, 5, 5, 0,
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "spring.datasource.hikari.minimum-idle=" + poolSize);
+        filmDbStorage = context.getBean(FilmDbStorage.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object clients8() {
+        return read();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Object clients32() {
+        return read();
+    }
+
+    @Benchmark
+    @Threads(128)
+    public Object clients128() {
+        return read();
+    }
+
+    private Object read() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(4) == 0) {
+            return filmDbStorage.getPopularByGenreAndYear(10, 0, 0);
+        }
+        return filmDbStorage.getById(1 + random.nextInt(films));
+    }
+}
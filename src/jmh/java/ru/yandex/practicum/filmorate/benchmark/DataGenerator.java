@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Random;
+
+// Заполняет БД приложения синтетическими данными. Схема создается миграциями, как в профиле prod.
+// mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=ru.yandex.practicum.filmorate.benchmark.DataGenerator
+//     -Dbenchmark.args="--url=jdbc:h2:tcp://localhost:9092/./db/filmorate --users=1000000 --films=200000"
+@Slf4j
+public class DataGenerator {
+    public static void main(String[] args) {
+        Arguments arguments = new Arguments(args);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                arguments.get("url", "jdbc:h2:file:./db/filmorate"),
+                arguments.get("username", "sa"),
+                arguments.get("password", "password"));
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("2")
+                .load()
+                .migrate();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Integer films = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film", Integer.class);
+        if (films != null && films > 0) {
+            throw new IllegalStateException("БД уже содержит фильмы, генерация возможна только в пустую БД");
+        }
+
+        int filmsCount = arguments.getInt("films", 100_000);
+        SeedScale scale = SeedScale.builder()
+                .users(arguments.getInt("users", 1_000_000))
+                .films(filmsCount)
+                .directors(arguments.getInt("directors", Math.max(1, filmsCount / 20)))
+                .likesPerUser(arguments.getInt("likes-per-user", 20))
+                .friendsPerUser(arguments.getInt("friends-per-user", 10))
+                .reviewsPerFilm(arguments.getInt("reviews-per-film", 2))
+                .events(Boolean.parseBoolean(arguments.get("events", "true")))
+                .skew(arguments.getDouble("skew", 1.0))
+                .build();
+        log.info("Генерация данных: {}", scale);
+        new SyntheticDataSeeder(jdbcTemplate, new Random(arguments.getInt("seed", 42))).seed(scale);
+    }
+}
@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dao.impl.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.dao.impl.InMemoryPersistence;
+import ru.yandex.practicum.filmorate.dao.impl.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Время запуска хранилищ в памяти с 10 млн лайков: восстановление только из журнала и из снимка.
+// Лайки распределены равномерно, пары фильм-пользователь не повторяются.
+// Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.include=InMemoryRecoveryBenchmark
+// [-Djmh.args="-p likes=1000000 -p fsync=true"]
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class InMemoryRecoveryBenchmark {
+    private static final int FILMS = 100_000;
+    private static final int USERS = 1_000_000;
+    private static final int THREADS = 8;
+
+    @Param("10000000")
+    public long likes;
+    @Param("false")
+    public boolean fsync;
+
+    private Path logDirectory;
+    private Path snapshotDirectory;
+    private InMemoryPersistence recovered;
+
+    // каталог только с журналом и его копия, в которой журнал свернут в снимок
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        logDirectory = Files.createTempDirectory("filmorate-recovery-log");
+        Storages loaded = start(logDirectory);
+        load(loaded);
+        loaded.persistence.close();
+
+        snapshotDirectory = Files.createTempDirectory("filmorate-recovery-snapshot");
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, snapshotDirectory.resolve(file.getFileName()));
+            }
+        }
+        Storages fromLog = start(snapshotDirectory);
+        long restoredLikes = likeCount(fromLog.filmStorage);
+        if (restoredLikes != likes) {
+            throw new IllegalStateException("Восстановлено лайков " + restoredLikes + " из " + likes);
+        }
+        fromLog.persistence.snapshot();
+        fromLog.persistence.close();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeRecovered() {
+        if (recovered != null) {
+            recovered.close();
+            recovered = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(logDirectory);
+        delete(snapshotDirectory);
+    }
+
+    @Benchmark
+    public InMemoryFilmStorage recoverFromLog() {
+        return start(logDirectory).filmStorage;
+    }
+
+    @Benchmark
+    public InMemoryFilmStorage recoverFromSnapshot() {
+        return start(snapshotDirectory).filmStorage;
+    }
+
+    private void load(Storages storages) throws Exception {
+        List<Film> films = new ArrayList<>(FILMS);
+        for (int i = 0; i < FILMS; i++) {
+            films.add(storages.filmStorage.create(Film.builder()
+                    .name("film " + i)
+                    .description("description")
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(100)
+                    .mpa(new MPA(1, "G"))
+                    .build()));
+        }
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(storages.userStorage.create(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .name("user" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()));
+        }
+        // лайк i: пользователь i % USERS, фильм сдвигается на каждом проходе по пользователям
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int offset = thread;
+            futures.add(executor.submit(() -> {
+                for (long i = offset; i < likes; i += THREADS) {
+                    int user = (int) (i % USERS);
+                    int film = (int) ((user + (i / USERS) * 7919) % FILMS);
+                    storages.filmStorage.addLike(films.get(film), users.get(user));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    // при восстановлении открывается новый пустой сегмент журнала, поэтому каталоги между запусками не растут
+    private Storages start(Path directory) {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        InMemoryUserStorage userStorage = new InMemoryUserStorage(filmStorage);
+        InMemoryPersistence persistence = new InMemoryPersistence(filmStorage, userStorage, directory, fsync,
+                1000, Duration.ofHours(1));
+        persistence.start();
+        recovered = persistence;
+        return new Storages(filmStorage, userStorage, persistence);
+    }
+
+    private static long likeCount(InMemoryFilmStorage filmStorage) {
+        return filmStorage.get().stream().mapToLong(Film::getLikeCount).sum();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static class Storages {
+        private final InMemoryFilmStorage filmStorage;
+        private final InMemoryUserStorage userStorage;
+        private final InMemoryPersistence persistence;
+
+        private Storages(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage,
+                         InMemoryPersistence persistence) {
+            this.filmStorage = filmStorage;
+            this.userStorage = userStorage;
+            this.persistence = persistence;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+// HTTP-нагрузка на запущенное приложение смешанным набором запросов ко всем контроллерам.
+// Идентификаторы выбираются по закону Ципфа, как в SyntheticDataSeeder. По итогам печатает p50/p99 по каждому запросу.
+// mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=ru.yandex.practicum.filmorate.benchmark.LoadDriver
+//     -Dbenchmark.args="--base-url=http://localhost:8080 --users=1000000 --films=200000 --clients=64 --duration=60"
+@Slf4j
+public class LoadDriver {
+    private static final String JSON = "application/json";
+
+    private final String baseUrl;
+    private final int users;
+    private final int films;
+    private final double skew;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final List<Operation> operations = new ArrayList<>();
+    private int totalWeight;
+
+    public LoadDriver(String baseUrl, int users, int films, double skew) {
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.films = films;
+        this.skew = skew;
+
+        operation("GET /films/{id}", 20, ids -> get("/films/" + ids.film()));
+        operation("GET /films/popular", 10, ids -> get("/films/popular?count=10&genreId=" + (1 + ids.random.nextInt(6))));
+        operation("GET /films/search", 8, ids -> get("/films/search?query=" + ids.word() + "&by=title,director"));
+        operation("GET /films/common", 3, ids -> get("/films/common?userId=" + ids.user() + "&friendId=" + ids.user()));
+        operation("GET /films/director/{id}", 3, ids ->
+                get("/films/director/" + (1 + ids.random.nextInt(Math.max(1, films / 20))) + "?sortBy=likes"));
+        operation("PUT /films/{id}/like/{userId}", 8, ids -> put("/films/" + ids.film() + "/like/" + ids.user()));
+        operation("DELETE /films/{id}/like/{userId}", 3, ids -> delete("/films/" + ids.film() + "/like/" + ids.user()));
+        operation("GET /users/{id}", 8, ids -> get("/users/" + ids.user()));
+        operation("GET /users/{id}/friends", 6, ids -> get("/users/" + ids.user() + "/friends"));
+        operation("GET /users/{id}/friends/common/{id}", 3, ids ->
+                get("/users/" + ids.user() + "/friends/common/" + ids.user()));
+        operation("PUT /users/{id}/friends/{id}", 3, ids -> put("/users/" + ids.user() + "/friends/" + ids.user()));
+        operation("GET /users/{id}/feed", 5, ids -> get("/users/" + ids.user() + "/feed"));
+        operation("GET /users/{id}/feed/friends", 5, ids -> get("/users/" + ids.user() + "/feed/friends?limit=20"));
+        operation("GET /users/{id}/recommendations", 4, ids -> get("/users/" + ids.user() + "/recommendations"));
+        operation("GET /reviews?filmId", 6, ids -> get("/reviews?filmId=" + ids.film() + "&count=10"));
+        operation("POST /reviews", 2, ids -> post("/reviews", String.format(
+                "{\"content\":\"%s %s\",\"isPositive\":%b,\"userId\":%d,\"filmId\":%d}",
+                ids.word(), ids.word(), ids.random.nextBoolean(), ids.user(), ids.film())));
+        operation("GET /genres", 2, ids -> get("/genres"));
+        operation("GET /mpa", 2, ids -> get("/mpa"));
+        operation("GET /directors", 2, ids -> get("/directors"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arguments arguments = new Arguments(args);
+        LoadDriver driver = new LoadDriver(
+                arguments.get("base-url", "http://localhost:8080"),
+                arguments.getInt("users", 10_000),
+                arguments.getInt("films", 5_000),
+                arguments.getDouble("skew", 1.0));
+        int clients = arguments.getInt("clients", 32);
+
+        log.info("Прогрев: {} с", arguments.getInt("warmup", 10));
+        driver.run(clients, arguments.getInt("warmup", 10));
+        Map<String, Stats> results = driver.run(clients, arguments.getInt("duration", 60));
+        driver.report(results, arguments.getInt("duration", 60));
+    }
+
+    public Map<String, Stats> run(int clients, int durationSeconds) throws Exception {
+        // распределения общие для всех клиентов: их построение на миллионах объектов дорогое
+        PowerLaw filmPopularity = new PowerLaw(new Random(1), films, skew);
+        PowerLaw userPopularity = new PowerLaw(new Random(2), users, skew);
+        long deadline = System.nanoTime() + Duration.ofSeconds(durationSeconds).toNanos();
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<Map<String, Stats>>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            futures.add(executor.submit(() -> {
+                Ids ids = new Ids(ThreadLocalRandom.current(), filmPopularity, userPopularity);
+                Map<String, Stats> stats = new HashMap<>();
+                while (System.nanoTime() < deadline) {
+                    Operation operation = pick(ids.random);
+                    long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = httpClient.send(operation.request.apply(ids), HttpResponse.BodyHandlers.discarding())
+                                .statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    stats.computeIfAbsent(operation.name, name -> new Stats())
+                            .record(System.nanoTime() - start, status);
+                }
+                return stats;
+            }));
+        }
+
+        Map<String, Stats> results = new LinkedHashMap<>();
+        operations.forEach(operation -> results.put(operation.name, new Stats()));
+        for (Future<Map<String, Stats>> future : futures) {
+            future.get().forEach((name, stats) -> results.get(name).merge(stats));
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    public void report(Map<String, Stats> results, int durationSeconds) {
+        StringBuilder report = new StringBuilder(String.format("%n%-40s %10s %10s %10s %10s %8s %8s%n",
+                "Запрос", "Всего", "Оп/с", "p50, мс", "p99, мс", "4xx", "Ошибки"));
+        Stats total = new Stats();
+        results.forEach((name, stats) -> {
+            report.append(stats.format(name, durationSeconds));
+            total.merge(stats);
+        });
+        report.append(total.format("Итого", durationSeconds));
+        log.info(report.toString());
+    }
+
+    private void operation(String name, int weight, Function<Ids, HttpRequest> request) {
+        operations.add(new Operation(name, weight, request));
+        totalWeight += weight;
+    }
+
+    private Operation pick(Random random) {
+        int point = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            point -= operation.weight;
+            if (point < 0) {
+                return operation;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest put(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).PUT(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest delete(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).DELETE().build();
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    @RequiredArgsConstructor
+    private static class Operation {
+        private final String name;
+        private final int weight;
+        private final Function<Ids, HttpRequest> request;
+    }
+
+    @RequiredArgsConstructor
+    private static class Ids {
+        private static final String[] WORDS = {"matrix", "star", "love", "night", "city", "dark", "king", "ghost"};
+
+        private final Random random;
+        private final PowerLaw filmPopularity;
+        private final PowerLaw userPopularity;
+
+        int film() {
+            return filmPopularity.nextId();
+        }
+
+        int user() {
+            return userPopularity.nextId();
+        }
+
+        String word() {
+            return WORDS[random.nextInt(WORDS.length)];
+        }
+    }
+
+    // время ответов в наносекундах, процентили считаются по отсортированному массиву
+    public static class Stats {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int clientErrors;
+        private int errors;
+
+        void record(long latency, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            if (status >= 400 && status < 500) {
+                clientErrors++;
+            } else if (status < 200 || status >= 500) {
+                errors++;
+            }
+        }
+
+        void merge(Stats other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            clientErrors += other.clientErrors;
+            errors += other.errors;
+        }
+
+        public double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        String format(String name, int durationSeconds) {
+            return String.format("%-40s %10d %10.1f %10.2f %10.2f %8d %8d%n", name, count,
+                    (double) count / durationSeconds, percentileMillis(50), percentileMillis(99), clientErrors, errors);
+        }
+    }
+}
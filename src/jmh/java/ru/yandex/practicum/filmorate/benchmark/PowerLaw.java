@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Случайные величины со степенным распределением: популярность объектов по закону Ципфа
+// и "активность" (количество лайков, друзей) по Парето
+public class PowerLaw {
+    private final Random random;
+    private final double[] cumulative;
+    // ранг по популярности -> идентификатор, чтобы популярные объекты не были сосредоточены в начале таблицы
+    private final int[] idByRank;
+
+    public PowerLaw(Random random, int size, double exponent) {
+        this.random = random;
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+
+        idByRank = new int[size];
+        for (int i = 0; i < size; i++) {
+            idByRank[i] = i + 1;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = idByRank[i];
+            idByRank[i] = idByRank[j];
+            idByRank[j] = id;
+        }
+    }
+
+    // идентификатор от 1 до size, популярные идентификаторы выпадают чаще
+    public int nextId() {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        return idByRank[Math.min(rank, idByRank.length - 1)];
+    }
+
+    // количество со средним mean и тяжелым хвостом (Парето с показателем 2), не больше max
+    public static int nextCount(Random random, double mean, int max) {
+        double scale = mean / 2;
+        double value = scale / Math.sqrt(1 - random.nextDouble());
+        return (int) Math.min(max, Math.round(value));
+    }
+}
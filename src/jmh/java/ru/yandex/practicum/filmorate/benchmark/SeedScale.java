@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.Builder;
+import lombok.Value;
+
+// Объем синтетических данных. Количество лайков, друзей и отзывов - средние значения,
+// реальные значения распределены по степенному закону с показателем skew
+@Value
+@Builder
+public class SeedScale {
+    int users;
+    int films;
+    int directors;
+    int likesPerUser;
+    int friendsPerUser;
+    int reviewsPerFilm;
+    @Builder.Default
+    boolean events = true;
+    @Builder.Default
+    double skew = 1.0;
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.ReviewDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Горячие пути хранилищ и сервисов на синтетических данных.
+// Масштаб задается параметрами: mvn -Pbenchmark test-compile exec:exec -Djmh.args="-p users=100000 -p films=20000"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StorageBenchmark {
+    @Param("10000")
+    public int users;
+    @Param("5000")
+    public int films;
+    @Param("20")
+    public int likesPerUser;
+    @Param("20")
+    public int friendsPerUser;
+    @Param("3")
+    public int reviewsPerFilm;
+
+    private ConfigurableApplicationContext context;
+    private FilmDbStorage filmDbStorage;
+    private ReviewDbStorage reviewDbStorage;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(users, films, likesPerUser, friendsPerUser, reviewsPerFilm);
+        filmDbStorage = context.getBean(FilmDbStorage.class);
+        reviewDbStorage = context.getBean(ReviewDbStorage.class);
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Film> filmGetById() {
+        return filmDbStorage.getById(randomFilmId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Film> filmGetAll() {
+        return filmDbStorage.get();
+    }
+
+    @Benchmark
+    public List<Film> filmSearch() {
+        return filmDbStorage.search("matrix", true, true, false);
+    }
+
+    @Benchmark
+    public List<Film> filmPopularByGenreAndYear() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return filmDbStorage.getPopularByGenreAndYear(10, random.nextInt(7), 0);
+    }
+
+    @Benchmark
+    public List<Film> filmRecommendations() {
+        return filmDbStorage.getFilmRecommendations(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> userCommonFriends() {
+        return userService.getCommonFriends(randomUserId(), randomUserId());
+    }
+
+    @Benchmark
+    public List<Review> reviewsByFilmId() {
+        return reviewDbStorage.getReviewsByFilmId(randomFilmId(), 10);
+    }
+
+    private int randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextInt(films);
+    }
+
+    private int randomUserId() {
+        return 1 + ThreadLocalRandom.current().nextInt(users);
+    }
+}
@@ -0,0 +1,219 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Заполняет пустую схему синтетическими данными. Справочники жанров и рейтингов должны быть уже загружены (data.sql).
+// Популярность фильмов и пользователей подчиняется закону Ципфа, активность пользователей - распределению Парето.
+// Генерация детерминирована: при одинаковых параметрах получаются одинаковые данные.
+@Slf4j
+@RequiredArgsConstructor
+public class SyntheticDataSeeder {
+    private static final int BATCH_SIZE = 5_000;
+    private static final int GENRES = 6;
+    private static final int RATINGS = 5;
+    private static final LocalDateTime EVENTS_START = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final String[] WORDS = {
+            "matrix", "star", "war", "love", "night", "city", "dark", "light", "king", "queen",
+            "river", "storm", "ghost", "space", "dream", "road", "fire", "ice", "secret", "last"};
+
+    private static final String INSERT_LIKE = "INSERT INTO film_like (film_id, user_id) VALUES (?, ?)";
+    private static final String INSERT_FRIEND = "INSERT INTO friend (user_id, friend_user_id) VALUES (?, ?)";
+    private static final String INSERT_REVIEW =
+            "INSERT INTO review (review_id, creator_user_id, reviewed_film_id, content, is_positive) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_EVENT =
+            "INSERT INTO event (user_id, event_type, action_type, entity_id, event_dttm) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random;
+
+    private final List<Object[]> events = new ArrayList<>();
+    private boolean withEvents;
+    private long eventSeconds;
+
+    public void seed(SeedScale scale) {
+        long start = System.currentTimeMillis();
+        withEvents = scale.isEvents();
+        // внешние ключи заведомо корректны, проверка при массовой загрузке только замедляет вставку
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        try {
+            seedUsers(scale.getUsers());
+            seedDirectors(scale.getDirectors());
+            seedFilms(scale.getFilms(), scale.getDirectors());
+
+            PowerLaw filmPopularity = new PowerLaw(random, scale.getFilms(), scale.getSkew());
+            PowerLaw userPopularity = new PowerLaw(random, scale.getUsers(), scale.getSkew());
+            seedLikes(scale, filmPopularity);
+            seedFriends(scale, userPopularity);
+            seedReviews(scale, filmPopularity);
+            batch(INSERT_EVENT, events);
+            events.clear();
+        } finally {
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+        jdbcTemplate.update("UPDATE film f SET like_count = (SELECT COUNT(*) FROM film_like fl WHERE fl.film_id = f.film_id)");
+        log.info("Сгенерировано пользователей: {}, фильмов: {} за {} мс",
+                scale.getUsers(), scale.getFilms(), System.currentTimeMillis() - start);
+    }
+
+    private void seedUsers(int users) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            rows.add(new Object[]{i, "user" + i + "@mail.ru", "user" + i, "User " + i,
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(20_000)))});
+            rows = flushIfFull("INSERT INTO filmorate_user (user_id, email, login, name, birth_dt) VALUES (?, ?, ?, ?, ?)",
+                    rows);
+        }
+        batch("INSERT INTO filmorate_user (user_id, email, login, name, birth_dt) VALUES (?, ?, ?, ?, ?)", rows);
+        restartIdentity("filmorate_user", "user_id", users);
+    }
+
+    private void seedDirectors(int directors) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= directors; i++) {
+            rows.add(new Object[]{i, capitalize(word()) + " " + capitalize(word()) + i});
+        }
+        batch("INSERT INTO director (director_id, name) VALUES (?, ?)", rows);
+        restartIdentity("director", "director_id", directors);
+    }
+
+    private void seedFilms(int films, int directors) {
+        String insertFilm = "INSERT INTO film (film_id, name, description, release_dt, duration, rating_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        String insertGenre = "INSERT INTO film_x_genre (film_id, genre_id) VALUES (?, ?)";
+        String insertDirector = "INSERT INTO film_x_director (film_id, director_id) VALUES (?, ?)";
+        List<Object[]> filmRows = new ArrayList<>();
+        List<Object[]> genreRows = new ArrayList<>();
+        List<Object[]> directorRows = new ArrayList<>();
+        for (int i = 1; i <= films; i++) {
+            filmRows.add(new Object[]{i, capitalize(word()) + " " + word() + " " + i,
+                    word() + " " + word() + " " + word() + " " + word(),
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(27_000))),
+                    60 + random.nextInt(120), 1 + random.nextInt(RATINGS)});
+            for (int genreId : distinct(1 + random.nextInt(3), GENRES)) {
+                genreRows.add(new Object[]{i, genreId});
+            }
+            if (directors > 0) {
+                directorRows.add(new Object[]{i, 1 + random.nextInt(directors)});
+            }
+            filmRows = flushIfFull(insertFilm, filmRows);
+            genreRows = flushIfFull(insertGenre, genreRows);
+            directorRows = flushIfFull(insertDirector, directorRows);
+        }
+        batch(insertFilm, filmRows);
+        batch(insertGenre, genreRows);
+        batch(insertDirector, directorRows);
+        restartIdentity("film", "film_id", films);
+    }
+
+    private void seedLikes(SeedScale scale, PowerLaw filmPopularity) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int userId = 1; userId <= scale.getUsers(); userId++) {
+            int count = PowerLaw.nextCount(random, scale.getLikesPerUser(), scale.getFilms() / 2);
+            for (int filmId : distinct(count, filmPopularity)) {
+                rows.add(new Object[]{filmId, userId});
+                event(userId, "LIKE", filmId);
+            }
+            rows = flushIfFull(INSERT_LIKE, rows);
+        }
+        batch(INSERT_LIKE, rows);
+    }
+
+    private void seedFriends(SeedScale scale, PowerLaw userPopularity) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int userId = 1; userId <= scale.getUsers(); userId++) {
+            int count = PowerLaw.nextCount(random, scale.getFriendsPerUser(), scale.getUsers() / 2);
+            for (int friendId : distinct(count, userPopularity)) {
+                if (friendId != userId) {
+                    rows.add(new Object[]{userId, friendId});
+                    event(userId, "FRIEND", friendId);
+                }
+            }
+            rows = flushIfFull(INSERT_FRIEND, rows);
+        }
+        batch(INSERT_FRIEND, rows);
+    }
+
+    private void seedReviews(SeedScale scale, PowerLaw filmPopularity) {
+        List<Object[]> rows = new ArrayList<>();
+        long reviews = (long) scale.getFilms() * scale.getReviewsPerFilm();
+        for (int reviewId = 1; reviewId <= reviews; reviewId++) {
+            int userId = 1 + random.nextInt(scale.getUsers());
+            rows.add(new Object[]{reviewId, userId, filmPopularity.nextId(),
+                    word() + " " + word() + " " + word(), random.nextBoolean()});
+            event(userId, "REVIEW", reviewId);
+            rows = flushIfFull(INSERT_REVIEW, rows);
+        }
+        batch(INSERT_REVIEW, rows);
+        restartIdentity("review", "review_id", (int) reviews);
+    }
+
+    // события накапливаются по времени вперед, как если бы действия совершались последовательно
+    private void event(int userId, String eventType, long entityId) {
+        if (!withEvents) {
+            return;
+        }
+        eventSeconds += 1 + random.nextInt(60);
+        events.add(new Object[]{userId, eventType, "ADD", entityId,
+                Timestamp.valueOf(EVENTS_START.plusSeconds(eventSeconds))});
+        if (events.size() >= BATCH_SIZE) {
+            batch(INSERT_EVENT, events);
+            events.clear();
+        }
+    }
+
+    private List<Object[]> flushIfFull(String sql, List<Object[]> rows) {
+        if (rows.size() < BATCH_SIZE) {
+            return rows;
+        }
+        batch(sql, rows);
+        return new ArrayList<>();
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    // идентификаторы вставлены явно, счетчик identity нужно сдвинуть за них
+    private void restartIdentity(String table, String column, int lastId) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + (lastId + 1));
+    }
+
+    private Set<Integer> distinct(int count, int bound) {
+        Set<Integer> values = new HashSet<>();
+        while (values.size() < count) {
+            values.add(1 + random.nextInt(bound));
+        }
+        return values;
+    }
+
+    // у популярных объектов повторы часты, поэтому число попыток ограничено
+    private Set<Integer> distinct(int count, PowerLaw popularity) {
+        Set<Integer> values = new HashSet<>();
+        for (int attempt = 0; attempt < count * 10 && values.size() < count; attempt++) {
+            values.add(popularity.nextId());
+        }
+        return values;
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+// Хранилища фильмов и пользователей, которые получают сервисы по именам filmStorage и userStorage:
+// filmorate.storage=db (по умолчанию) или in-memory. Имена - псевдонимы самих хранилищ, поэтому аспект метрик
+// и жизненный цикл бинов от выбора не зависят
+@Configuration
+public class StorageConfig {
+    static final String PROPERTY = "filmorate.storage";
+
+    @Bean
+    public static BeanFactoryPostProcessor storageAliases(Environment environment) {
+        return beanFactory -> {
+            String storage = environment.getProperty(PROPERTY, "db");
+            switch (storage) {
+                case "db":
+                    beanFactory.registerAlias("filmDbStorage", "filmStorage");
+                    beanFactory.registerAlias("userDbStorage", "userStorage");
+                    break;
+                case "in-memory":
+                    beanFactory.registerAlias("inMemoryFilmStorage", "filmStorage");
+                    beanFactory.registerAlias("inMemoryUserStorage", "userStorage");
+                    break;
+                default:
+                    throw new IllegalStateException("Неизвестное хранилище " + PROPERTY + ": " + storage);
+            }
+        };
+    }
+}
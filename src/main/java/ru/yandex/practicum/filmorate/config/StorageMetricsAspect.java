@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Метрики всех публичных методов хранилищ в БД: время выполнения (с гистограммой для процентилей),
+// количество вызовов с разбивкой по результату и количество возвращенных строк
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class StorageMetricsAspect {
+    static final String TIMER = "filmorate.storage";
+    static final String ROWS = "filmorate.storage.rows";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Method, Meters> meters = new ConcurrentHashMap<>();
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.dao.impl.*DbStorage.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Meters methodMeters = meters.computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+                method -> new Meters(joinPoint.getTarget().getClass().getSimpleName(), method.getName()));
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            methodMeters.success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            methodMeters.rows.record(rowsOf(result));
+            return result;
+        } catch (Throwable e) {
+            methodMeters.error.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private static int rowsOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        return result == null ? 0 : 1;
+    }
+
+    private class Meters {
+        private final Timer success;
+        private final Timer error;
+        private final DistributionSummary rows;
+
+        Meters(String storage, String method) {
+            success = timer(storage, method, "success");
+            error = timer(storage, method, "error");
+            rows = DistributionSummary.builder(ROWS)
+                    .description("Количество строк, возвращенных методом хранилища")
+                    .tag("storage", storage)
+                    .tag("method", method)
+                    .register(meterRegistry);
+        }
+
+        private Timer timer(String storage, String method, String outcome) {
+            return Timer.builder(TIMER)
+                    .description("Время выполнения метода хранилища")
+                    .tag("storage", storage)
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.enums.ActionType;
 import ru.yandex.practicum.filmorate.enums.EventType;
 import ru.yandex.practicum.filmorate.enums.SearchCategoryType;
@@ -24,30 +28,52 @@ import ru.yandex.practicum.filmorate.service.EventService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.ValidateService;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @RestController
 @RequestMapping("/films")
 @RequiredArgsConstructor
 public class FilmController {
+    private static final int BULK_CHUNK_SIZE = 1000;
 
     private final FilmService filmService;
     private final ValidateService validateService;
     private final EventService eventService;
+    private final JsonStreamWriter jsonStreamWriter;
+    private final JsonStreamReader jsonStreamReader;
+    private final Validator validator;
 
     @GetMapping("/search")
     public List<Film> search(@RequestParam(name = "query", defaultValue = "") String query,
                              @RequestParam(name = "by", defaultValue = "") List<SearchCategoryType> by) {
         log.info(String.format("Вывести фильмы, содержащие подстроку \"%s\" в полях: %s", query, by));
-        return filmService.searchFilms(query, by.contains(SearchCategoryType.DIRECTOR), by.contains(SearchCategoryType.TITLE));
+        return filmService.searchFilms(query, by.contains(SearchCategoryType.DIRECTOR), by.contains(SearchCategoryType.TITLE),
+                by.contains(SearchCategoryType.DESCRIPTION));
     }
 
     @GetMapping
-    public List<Film> findAll() {
-        log.info("Вывести все фильмы");
-        return filmService.findAll();
+    public List<Film> findAll(@RequestParam(required = false) Integer after,
+                              @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Вывести все фильмы");
+            return filmService.findAll();
+        }
+        log.info("Вывести {} фильмов после ID = {}", limit, after);
+        return filmService.findPage(after, limit);
+    }
+
+    @GetMapping(params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        log.info("Выгрузить все фильмы в формате NDJSON");
+        return jsonStreamWriter.ndjson(filmService::streamAll);
     }
 
     @GetMapping("/{filmId}")
@@ -88,6 +114,29 @@ public class FilmController {
         return filmService.createFilm(film);
     }
 
+    // фильмы читаются из тела потоком и создаются пачками по BULK_CHUNK_SIZE, каждая пачка в своей транзакции.
+    // При ошибке в фильме уже созданные пачки остаются в БД
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<Integer> createFilms(HttpServletRequest request) throws IOException {
+        log.info("Загружаем фильмы пачками");
+        List<Integer> filmIds = new ArrayList<>();
+        try {
+            jsonStreamReader.read(request.getInputStream(), Film.class, BULK_CHUNK_SIZE, films -> {
+                for (int i = 0; i < films.size(); i++) {
+                    validateBulkFilm(films.get(i), filmIds.size() + i + 1, filmIds.size());
+                }
+                filmService.createFilms(films).forEach(film -> filmIds.add(film.getId()));
+            });
+        } catch (JsonProcessingException e) {
+            log.warn("Ошибка разбора фильмов после загрузки {}: {}", filmIds.size(), e.getOriginalMessage());
+            throw new FilmValidationException("Некорректный JSON после " + filmIds.size() + " загруженных фильмов: "
+                    + e.getOriginalMessage());
+        }
+        log.info("Загружено фильмов: {}", filmIds.size());
+        return filmIds;
+    }
+
     @PutMapping
     public Film updateFilm(@RequestBody @Valid Film film, BindingResult bindingResult) {
         log.info("Обновляем фильм: {}", film);
@@ -114,6 +163,27 @@ public class FilmController {
         return filmService.getFilmsByDirector(directorId, sortBy);
     }
 
+    private void validateBulkFilm(Film film, int position, int createdCount) {
+        Set<ConstraintViolation<Film>> violations = validator.validate(film);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<Film> violation = violations.iterator().next();
+            log.warn("Ошибка в заполнении поля {} - {}. Фильм №{} - {}", violation.getPropertyPath(),
+                    violation.getMessage(), position, film);
+            throw new FilmValidationException("Ошибка в заполнении поля " + violation.getPropertyPath()
+                    + " фильма №" + position + ", загружено фильмов: " + createdCount);
+        }
+        if (film.getReleaseDate() == null) {
+            throw new FilmValidationException("Не указана дата релиза фильма №" + position
+                    + ", загружено фильмов: " + createdCount);
+        }
+        try {
+            validateService.validateFilm(film);
+        } catch (FilmValidationException e) {
+            throw new FilmValidationException(e.getMessage() + " (фильм №" + position
+                    + ", загружено фильмов: " + createdCount + ")");
+        }
+    }
+
     private void generateCustomValidateException(Film film, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.warn("Ошибка в заполнении поля {} - {}. Фильм - {}", bindingResult.getFieldError().getField(),
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Component
+@RequiredArgsConstructor
+public class JsonStreamReader {
+    private final ObjectMapper objectMapper;
+
+    // читает JSON-массив или NDJSON по одному объекту и передает их пачками по chunkSize,
+    // поэтому тело запроса целиком в памяти не держится
+    public <T> void read(InputStream inputStream, Class<T> type, int chunkSize,
+                         Consumer<List<T>> consumer) throws IOException {
+        try (MappingIterator<T> iterator = objectMapper.readerFor(type).readValues(inputStream)) {
+            List<T> chunk = new ArrayList<>(chunkSize);
+            while (iterator.hasNextValue()) {
+                chunk.add(iterator.nextValue());
+                if (chunk.size() == chunkSize) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+        }
+    }
+}
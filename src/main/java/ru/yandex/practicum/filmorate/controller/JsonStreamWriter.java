@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+@Component
+@RequiredArgsConstructor
+public class JsonStreamWriter {
+    private final ObjectMapper objectMapper;
+
+    // source передает объекты по одному, каждый сразу сериализуется отдельной строкой в тело ответа
+    public <T> ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = outputStream -> writeItems(source, (json, index) -> {
+            outputStream.write(json);
+            outputStream.write('\n');
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // то же, но обычным JSON-массивом для клиентов, которые ждут application/json
+    public <T> ResponseEntity<StreamingResponseBody> array(Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = outputStream -> {
+            outputStream.write('[');
+            writeItems(source, (json, index) -> {
+                if (index > 0) {
+                    outputStream.write(',');
+                }
+                outputStream.write(json);
+            });
+            outputStream.write(']');
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private <T> void writeItems(Consumer<Consumer<T>> source, ItemWriter itemWriter) throws IOException {
+        long[] index = {0};
+        try {
+            source.accept(item -> {
+                try {
+                    itemWriter.write(objectMapper.writeValueAsBytes(item), index[0]++);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface ItemWriter {
+        void write(byte[] json, long index) throws IOException;
+    }
+}
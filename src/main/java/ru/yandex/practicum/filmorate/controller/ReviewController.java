@@ -8,6 +8,8 @@ import ru.yandex.practicum.filmorate.enums.ActionType;
 import ru.yandex.practicum.filmorate.enums.EventType;
 import ru.yandex.practicum.filmorate.exception.ReviewValidationException;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
+import ru.yandex.practicum.filmorate.model.ReviewVoteResult;
 import ru.yandex.practicum.filmorate.service.EventService;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 
@@ -67,6 +69,12 @@ public class ReviewController {
         reviewService.likeReview(id, userId, false);
     }
 
+    @PostMapping("/votes")
+    public ReviewVoteResult voteAll(@RequestBody List<ReviewVote> votes) {
+        log.info("Применить пачку оценок отзывов, количество: {}", votes.size());
+        return reviewService.voteAll(votes);
+    }
+
     @DeleteMapping("/{id}")
     public void removeReview(@PathVariable long id) {
         log.info("Удалить отзыв с ID: {}", id);
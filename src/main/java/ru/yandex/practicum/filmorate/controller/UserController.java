@@ -1,36 +1,64 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.UserValidationException;
 import ru.yandex.practicum.filmorate.enums.ActionType;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.enums.EventType;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.EventService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.service.ValidateService;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     private final UserService userService;
     private final ValidateService validateService;
     private final EventService eventService;
+    private final JsonStreamWriter jsonStreamWriter;
+    private final JsonStreamReader jsonStreamReader;
+    private final Validator validator;
 
     @GetMapping
-    public List<User> findAll() {
-        log.info("Вывести всех пользователей");
-        return userService.findAll();
+    public List<User> findAll(@RequestParam(required = false) Integer after,
+                              @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Вывести всех пользователей");
+            return userService.findAll();
+        }
+        log.info("Вывести {} пользователей после ID = {}", limit, after);
+        return userService.findPage(after, limit);
+    }
+
+    @GetMapping(params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        log.info("Выгрузить всех пользователей в формате NDJSON");
+        return jsonStreamWriter.ndjson(userService::streamAll);
     }
 
     @GetMapping("/{userId}")
@@ -52,11 +80,28 @@ public class UserController {
     }
 
     @GetMapping("/{userId}/feed")
-    public List<Event> getEvents(@PathVariable int userId) {
-        log.info("Вывести информацию о действиях пользоватяля ID = {}", userId);
+    public ResponseEntity<StreamingResponseBody> getEvents(@PathVariable int userId,
+                                                           @RequestParam(required = false) Long since,
+                                                           @RequestParam(required = false) Long before,
+                                                           @RequestParam(required = false) Integer limit) {
+        log.info("Вывести информацию о действиях пользоватяля ID = {} с {} до {}, не более {}",
+                userId, since, before, limit);
+        // ошибки после начала потокового ответа уже не превратить в код 400, поэтому проверяем заранее
+        validateService.validateFeedPage(since, before, limit);
+        //проверяем, что пользователь существует
+        userService.findById(userId);
+        return jsonStreamWriter.<Event>array(consumer ->
+                eventService.streamByUserId(userId, since, before, limit, consumer));
+    }
+
+    @GetMapping("/{userId}/feed/friends")
+    public List<Event> getFriendsEvents(@PathVariable int userId,
+                                        @RequestParam(required = false) Integer beforeId,
+                                        @RequestParam(required = false) Integer limit) {
+        log.info("Вывести ленту друзей пользователя ID = {} до события ID = {}, не более {}", userId, beforeId, limit);
         //проверяем, что пользователь существует
         userService.findById(userId);
-        return eventService.findByUserId(userId);
+        return eventService.findFriendsFeed(userId, beforeId, limit);
     }
 
     @PutMapping("/{userId}/friends/{friendId}")
@@ -82,6 +127,50 @@ public class UserController {
         return userService.createUser(user);
     }
 
+    // пользователи читаются из тела потоком и создаются пачками по BULK_CHUNK_SIZE, каждая пачка в своей транзакции.
+    // При ошибке в пользователе уже созданные пачки остаются в БД
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<Integer> createUsers(HttpServletRequest request) throws IOException {
+        log.info("Загружаем пользователей пачками");
+        List<Integer> userIds = new ArrayList<>();
+        readBulk(request, User.class, users -> {
+            for (int i = 0; i < users.size(); i++) {
+                validateBulkItem(users.get(i), userIds.size() + i + 1, userIds.size());
+                if (users.get(i).getBirthday() == null) {
+                    throw new UserValidationException("Не указана дата рождения пользователя №"
+                            + (userIds.size() + i + 1) + ", загружено пользователей: " + userIds.size());
+                }
+                validateService.validateUser(users.get(i));
+            }
+            userService.createUsers(users).forEach(user -> userIds.add(user.getId()));
+        });
+        log.info("Загружено пользователей: {}", userIds.size());
+        return userIds;
+    }
+
+    // загрузка списка дружб; события в ленту для загружаемых дружб можно не создавать параметром events=false
+    @PostMapping(value = "/friends/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public int addFriends(HttpServletRequest request,
+                          @RequestParam(defaultValue = "true") boolean events) throws IOException {
+        log.info("Загружаем дружбы пачками, события {}", events ? "создаются" : "не создаются");
+        int[] added = {0};
+        readBulk(request, Friendship.class, friendships -> {
+            for (int i = 0; i < friendships.size(); i++) {
+                validateBulkItem(friendships.get(i), added[0] + i + 1, added[0]);
+            }
+            userService.addFriends(friendships);
+            if (events) {
+                friendships.forEach(friendship -> eventService.createEvent(friendship.getUserId(), ActionType.ADD,
+                        EventType.FRIEND, friendship.getFriendId()));
+            }
+            added[0] += friendships.size();
+        });
+        log.info("Загружено дружб: {}", added[0]);
+        return added[0];
+    }
+
     @PutMapping
     public User updateUser(@RequestBody @Valid User user, BindingResult bindingResult) {
         log.info("Обновляем пользователя: {}", user);
@@ -101,6 +190,27 @@ public class UserController {
         userService.removeUser(userId);
     }
 
+    private <T> void readBulk(HttpServletRequest request, Class<T> type, Consumer<List<T>> consumer)
+            throws IOException {
+        try {
+            jsonStreamReader.read(request.getInputStream(), type, BULK_CHUNK_SIZE, consumer);
+        } catch (JsonProcessingException e) {
+            log.warn("Ошибка разбора загружаемых данных: {}", e.getOriginalMessage());
+            throw new UserValidationException("Некорректный JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private <T> void validateBulkItem(T item, int position, int loadedCount) {
+        Set<ConstraintViolation<T>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<T> violation = violations.iterator().next();
+            log.warn("Ошибка в заполнении поля {} - {}. Запись №{} - {}", violation.getPropertyPath(),
+                    violation.getMessage(), position, item);
+            throw new UserValidationException("Ошибка в заполнении поля " + violation.getPropertyPath()
+                    + " записи №" + position + ", загружено записей: " + loadedCount);
+        }
+    }
+
     private void generateCustomValidateException(User user, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.warn("Ошибка в заполнении поля {} - {}. Пользователь - {}", bindingResult.getFieldError().getField(),
@@ -4,14 +4,31 @@ import ru.yandex.practicum.filmorate.enums.ActionType;
 import ru.yandex.practicum.filmorate.enums.EventType;
 import ru.yandex.practicum.filmorate.model.Event;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface EventStorage {
 
     Optional<Event> getById(int id);
 
+    List<Event> getByIds(Collection<Integer> ids);
+
+    // события по возрастанию идентификатора, начиная со следующего за afterId
+    List<Event> getPage(int afterId, int limit);
+
     List<Event> getByUserId(int userId);
 
+    // последние limit событий пользователя, от новых к старым
+    List<Event> getLastByUserId(int userId, int limit);
+
+    // события пользователя по возрастанию времени в полуинтервале [since, before), не более limit;
+    // пустые границы и лимит не ограничивают выборку
+    void streamByUserId(int userId, Long since, Long before, Integer limit, Consumer<Event> consumer);
+
     Event create(int userId, EventType eventType, ActionType actionType, long entityId);
+
+    // проставляет событиям идентификаторы, присвоенные БД
+    void createAll(List<Event> events);
 }
@@ -1,25 +1,42 @@
 package ru.yandex.practicum.filmorate.dao;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface FilmStorage {
     List<Film> get();
 
-    List<Film> search(String query, Boolean director, Boolean film);
+    List<Film> getPage(int afterId, int limit);
+
+    // без выбранных полей возвращает все фильмы
+    List<Film> search(String query, Boolean director, Boolean film, Boolean description);
 
     Optional<Film> getById(int id);
 
+    List<Film> getByIds(Collection<Integer> ids);
+
     Film create(Film film);
 
+    // создает фильмы пачкой и проставляет им идентификаторы, не перечитывая их из хранилища
+    List<Film> createAll(List<Film> films);
+
     Optional<Film> update(Film film);
 
-    void addLike(Film film, User user);
+    // true, если лайк действительно добавлен или удален, а не уже был в нужном состоянии
+    boolean addLike(Film film, User user);
+
+    boolean removeLike(Film film, User user);
+
+    // фильм -> лайкнувшие его пользователи; остальные выборки лайки не загружают, кроме getById
+    Map<Integer, IdSet> getAllLikes();
 
-    void removeLike(Film film, User user);
+    IdSet getLikedFilmIds(int userId);
 
     List<Film> getFilmsByDirector(int directorId);
 
@@ -1,6 +1,8 @@
 package ru.yandex.practicum.filmorate.dao;
 
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
+import ru.yandex.practicum.filmorate.model.ReviewVoteResult;
 
 import java.util.List;
 
@@ -14,8 +16,12 @@ public interface ReviewStorage {
 
     Review updateReview(Review review);
 
+    // ставит оценку или меняет уже поставленную
     void likeReview(long reviewId, int userId, int i);
 
+    // применяет оценки пачкой, оценки несуществующих отзывов и пользователей пропускаются
+    ReviewVoteResult voteAll(List<ReviewVote> votes);
+
     void removeReview(long reviewId);
 
     void removeLike(long reviewId, int userId, int i);
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import ru.yandex.practicum.filmorate.model.TimelineEntry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface TimelineStorage {
+
+    // записи лент по возрастанию пользователя и события; записи об удаленных из друзей авторах пропускаются
+    void stream(Consumer<TimelineEntry> consumer);
+
+    // последнее событие, разосланное к моменту сохранения лент; с него продолжается рассылка при старте
+    int getLastEventId();
+
+    // ленты пользователей userIds целиком заменяются переданными записями, в той же транзакции
+    // сохраняется последнее разосланное событие
+    void replace(Collection<Integer> userIds, List<TimelineEntry> entries, int lastEventId);
+}
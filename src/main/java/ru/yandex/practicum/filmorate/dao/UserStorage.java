@@ -1,23 +1,42 @@
 package ru.yandex.practicum.filmorate.dao;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserStorage {
 
     List<User> get();
 
+    List<User> getPage(int afterId, int limit);
+
     Optional<User> getById(int id);
 
+    List<User> getByIds(Collection<Integer> ids);
+
     User create(User user);
 
+    // пользователям присваиваются идентификаторы, сами пользователи повторно не читаются
+    List<User> createAll(List<User> users);
+
+    // какие из переданных идентификаторов принадлежат существующим пользователям
+    Set<Integer> findExistingIds(Collection<Integer> ids);
+
     Optional<User> update(User user);
 
     void addFriend(User user, User friend);
 
+    void addFriends(List<Friendship> friendships);
+
     void removeFriend(User user, User friend);
 
+    // пользователь -> те, у кого он в друзьях и кто видит его события в ленте друзей
+    Map<Integer, List<Integer>> getFollowerIds(Collection<Integer> userIds);
+
     void removeUser(int userId);
 }
@@ -5,34 +5,193 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.BaseModel;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+// Хранилище моделей в памяти для многопоточной работы: модели лежат в ConcurrentHashMap,
+// идентификаторы выдаются атомарным счетчиком, а составные изменения одной модели
+// выполняются под одной из STRIPES блокировок, выбираемой по идентификатору
 @Component("baseModelStorage")
 @Slf4j
 public abstract class BaseModelStorage<T extends BaseModel> {
-    private final Map<Integer, T> models = new HashMap<>();
-    private int idCounter;
+    protected static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+    private static final int STRIPES = 64;
+
+    private final ConcurrentMap<Integer, T> models = new ConcurrentHashMap<>();
+    private final AtomicInteger idCounter = new AtomicInteger();
+    private final Object[] locks = new Object[STRIPES];
+
+    protected BaseModelStorage() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
 
     public List<T> get() {
-        return (List<T>) models.values();
+        return getPage(0, Integer.MAX_VALUE);
+    }
+
+    public List<T> getPage(int afterId, int limit) {
+        return models.values().stream()
+                .filter(model -> model.getId() > afterId)
+                .sorted(Comparator.comparingInt(BaseModel::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
     }
 
     public Optional<T> getById(int id) {
         return Optional.ofNullable(models.get(id));
     }
 
+    public List<T> getByIds(Collection<Integer> ids) {
+        return ids.stream()
+                .map(models::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     public T create(T baseModel) {
-        baseModel.setId(++idCounter);
-        models.put(baseModel.getId(), baseModel);
+        checkWritable();
+        baseModel.setId(idCounter.incrementAndGet());
+        prepare(baseModel);
+        await(locked(baseModel.getId(), () -> {
+            models.put(baseModel.getId(), baseModel);
+            reindex(null, baseModel);
+            return created(baseModel);
+        }));
         log.debug("Создана модель: {}", baseModel);
         return baseModel;
     }
 
     public Optional<T> update(T baseModel) {
-        if (!models.containsKey(baseModel.getId())) {
+        CompletableFuture<Void> commit = locked(baseModel.getId(), () -> {
+            checkWritable();
+            T existing = models.get(baseModel.getId());
+            if (existing == null) {
+                return null;
+            }
+            prepare(baseModel);
+            merge(existing, baseModel);
+            models.put(baseModel.getId(), baseModel);
+            reindex(existing, baseModel);
+            return updated(baseModel);
+        });
+        if (commit == null) {
             return Optional.empty();
         }
-        models.put(baseModel.getId(), baseModel);
+        await(commit);
         log.debug("Обновлена модель: {}", baseModel);
         return Optional.of(baseModel);
     }
+
+    protected T remove(int id) {
+        List<T> removed = new ArrayList<>(1);
+        await(locked(id, () -> {
+            checkWritable();
+            T model = models.remove(id);
+            if (model == null) {
+                return DURABLE;
+            }
+            removed.add(model);
+            reindex(model, null);
+            return removed(id);
+        }));
+        return removed.isEmpty() ? null : removed.get(0);
+    }
+
+    // восстановление модели из снимка или журнала с ее прежним идентификатором; существующая модель обновляется
+    protected void restore(T model) {
+        advanceId(model.getId());
+        prepare(model);
+        locked(model.getId(), () -> {
+            T existing = models.get(model.getId());
+            if (existing != null) {
+                merge(existing, model);
+            }
+            models.put(model.getId(), model);
+            reindex(existing, model);
+            return null;
+        });
+    }
+
+    protected int lastId() {
+        return idCounter.get();
+    }
+
+    // идентификаторы удаленных моделей не выдаются повторно и после восстановления
+    protected void advanceId(int id) {
+        idCounter.accumulateAndGet(id, Math::max);
+    }
+
+    protected Collection<T> models() {
+        return models.values();
+    }
+
+    // составное изменение модели: параллельные изменения той же модели ждут, остальные выполняются одновременно
+    protected <R> R locked(int id, Supplier<R> action) {
+        synchronized (locks[Math.floorMod(id, STRIPES)]) {
+            return action.get();
+        }
+    }
+
+    // действие под всеми блокировками сразу, например, согласованный снимок хранилища: изменения моделей ждут его
+    protected <R> R lockedAll(Supplier<R> action) {
+        return lockedFrom(0, action);
+    }
+
+    private <R> R lockedFrom(int stripe, Supplier<R> action) {
+        if (stripe == STRIPES) {
+            return action.get();
+        }
+        synchronized (locks[stripe]) {
+            return lockedFrom(stripe + 1, action);
+        }
+    }
+
+    // запись в журнал дожидается уже после снятия блокировки, чтобы ожидание fsync не задерживало другие изменения
+    protected static void await(CompletableFuture<Void> commit) {
+        try {
+            commit.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // вызывается перед каждым изменением, кроме восстановления: после ошибки журнала хранилище только читается
+    protected void checkWritable() {
+    }
+
+    // вызывается перед сохранением модели, например, чтобы заменить ее коллекции потокобезопасными
+    protected void prepare(T model) {
+    }
+
+    // переносит в обновленную модель данные, которые обновлением не меняются
+    protected void merge(T existing, T updated) {
+    }
+
+    // обновляет вторичные индексы наследника под блокировкой модели; previous или current равны null
+    // при создании и удалении модели
+    protected void reindex(T previous, T current) {
+    }
+
+    // вызываются под блокировкой модели после изменения и возвращают его запись в журнал, которую нужно дождаться
+    protected CompletableFuture<Void> created(T model) {
+        return DURABLE;
+    }
+
+    protected CompletableFuture<Void> updated(T model) {
+        return DURABLE;
+    }
+
+    protected CompletableFuture<Void> removed(int id) {
+        return DURABLE;
+    }
 }
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.DirectorStorage;
+import ru.yandex.practicum.filmorate.model.Director;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+@Component("cachedDirectorStorage")
+@Slf4j
+public class CachedDirectorStorage implements DirectorStorage, MeterBinder {
+    private final DirectorStorage directorStorage;
+    private final ReferenceDataCache<Director> cache;
+
+    public CachedDirectorStorage(@Qualifier("directorDbStorage") DirectorStorage directorStorage,
+                                 @Value("${filmorate.cache.reference.max-size:1000}") long maxSize,
+                                 @Value("${filmorate.cache.reference.ttl:10m}") Duration ttl) {
+        this.directorStorage = directorStorage;
+        this.cache = new ReferenceDataCache<>(maxSize, ttl);
+    }
+
+    @Override
+    public List<Director> get() {
+        return cache.getAll(directorStorage::get);
+    }
+
+    @Override
+    public Optional<Director> getById(int id) {
+        return cache.getById(id, directorStorage::getById);
+    }
+
+    @Override
+    public Director create(Director director) {
+        Director createdDirector = directorStorage.create(director);
+        invalidate();
+        return createdDirector;
+    }
+
+    @Override
+    public Optional<Director> udpate(Director director) {
+        Optional<Director> updatedDirector = directorStorage.udpate(director);
+        invalidate();
+        return updatedDirector;
+    }
+
+    @Override
+    public void delete(int id) {
+        directorStorage.delete(id);
+        invalidate();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache.bindTo(registry, "directors");
+    }
+
+    public ReferenceDataCache<Director> getCache() {
+        return cache;
+    }
+
+    private void invalidate() {
+        log.debug("Сброс кэша режиссеров");
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.GenreStorage;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+@Component("cachedGenreStorage")
+public class CachedGenreStorage implements GenreStorage, MeterBinder {
+    private final GenreStorage genreStorage;
+    private final ReferenceDataCache<Genre> cache;
+
+    public CachedGenreStorage(@Qualifier("genreDbStorage") GenreStorage genreStorage,
+                              @Value("${filmorate.cache.reference.max-size:1000}") long maxSize,
+                              @Value("${filmorate.cache.reference.ttl:10m}") Duration ttl) {
+        this.genreStorage = genreStorage;
+        this.cache = new ReferenceDataCache<>(maxSize, ttl);
+    }
+
+    @Override
+    public List<Genre> get() {
+        return cache.getAll(genreStorage::get);
+    }
+
+    @Override
+    public Optional<Genre> getById(int id) {
+        return cache.getById(id, genreStorage::getById);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache.bindTo(registry, "genres");
+    }
+
+    public ReferenceDataCache<Genre> getCache() {
+        return cache;
+    }
+}
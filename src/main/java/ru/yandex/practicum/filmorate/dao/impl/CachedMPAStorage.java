@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.MPAStorage;
+import ru.yandex.practicum.filmorate.model.MPA;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+@Component("cachedMPAStorage")
+public class CachedMPAStorage implements MPAStorage, MeterBinder {
+    private final MPAStorage mpaStorage;
+    private final ReferenceDataCache<MPA> cache;
+
+    public CachedMPAStorage(@Qualifier("mpaDbStorage") MPAStorage mpaStorage,
+                            @Value("${filmorate.cache.reference.max-size:1000}") long maxSize,
+                            @Value("${filmorate.cache.reference.ttl:10m}") Duration ttl) {
+        this.mpaStorage = mpaStorage;
+        this.cache = new ReferenceDataCache<>(maxSize, ttl);
+    }
+
+    @Override
+    public List<MPA> get() {
+        return cache.getAll(mpaStorage::get);
+    }
+
+    @Override
+    public Optional<MPA> getById(int id) {
+        return cache.getById(id, mpaStorage::getById);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache.bindTo(registry, "mpa");
+    }
+
+    public ReferenceDataCache<MPA> getCache() {
+        return cache;
+    }
+}
@@ -2,10 +2,15 @@ package ru.yandex.practicum.filmorate.dao.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.EventStorage;
 import ru.yandex.practicum.filmorate.enums.ActionType;
 import ru.yandex.practicum.filmorate.model.Event;
@@ -14,14 +19,18 @@ import ru.yandex.practicum.filmorate.enums.EventType;
 import java.sql.*;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Component("eventDbStorage")
 @Slf4j
 @RequiredArgsConstructor
 public class EventDbStorage implements EventStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     @Override
     public Optional<Event> getById(int id) {
@@ -40,22 +49,90 @@ public class EventDbStorage implements EventStorage {
         return Optional.of(events.get(0));
     }
 
+    @Override
+    public List<Event> getByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlQuery =
+                "SELECT * " +
+                        "FROM event " +
+                        "WHERE event_id IN (:eventIds)";
+        MapSqlParameterSource params = new MapSqlParameterSource("eventIds", ids);
+
+        return namedParameterJdbcTemplate.query(sqlQuery, params, (rs, rowNum) -> makeEvent(rs));
+    }
+
+    @Override
+    public List<Event> getPage(int afterId, int limit) {
+        String sqlQuery =
+                "SELECT * " +
+                        "FROM event " +
+                        "WHERE event_id > ? " +
+                        "ORDER BY event_id " +
+                        "LIMIT ?";
+
+        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeEvent(rs), afterId, limit);
+    }
+
     @Override
     public List<Event> getByUserId(int userId) {
         String sqlQuery =
                 "SELECT * " +
                         "FROM event " +
-                        "WHERE user_id = ?";
+                        "WHERE user_id = ? " +
+                        "ORDER BY event_dttm, event_id";
 
         return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeEvent(rs), userId);
     }
 
+    @Override
+    public List<Event> getLastByUserId(int userId, int limit) {
+        String sqlQuery =
+                "SELECT * " +
+                        "FROM event " +
+                        "WHERE user_id = ? " +
+                        "ORDER BY event_dttm DESC, event_id DESC " +
+                        "LIMIT ?";
+
+        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeEvent(rs), userId, limit);
+    }
+
+    @Override
+    public void streamByUserId(int userId, Long since, Long before, Integer limit, Consumer<Event> consumer) {
+        // условия и сортировка совпадают с индексом event_user_dttm_idx, поэтому выборка идет по нему без сортировки
+        StringBuilder sqlQuery = new StringBuilder(
+                "SELECT * " +
+                        "FROM event " +
+                        "WHERE user_id = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(userId);
+        if (since != null) {
+            sqlQuery.append(" AND event_dttm >= ?");
+            params.add(new Timestamp(since));
+        }
+        if (before != null) {
+            sqlQuery.append(" AND event_dttm < ?");
+            params.add(new Timestamp(before));
+        }
+        sqlQuery.append(" ORDER BY event_dttm, event_id");
+        if (limit != null) {
+            sqlQuery.append(" LIMIT ?");
+            params.add(limit);
+        }
+
+        jdbcTemplate.query(sqlQuery.toString(), rs -> {
+            consumer.accept(makeEvent(rs));
+        }, params.toArray());
+    }
+
     @Override
     public Event create(int userId, EventType eventType, ActionType actionType, long entityId) {
         String userSqlQuery =
                 "INSERT INTO event (user_id, event_type, action_type, entity_id, event_dttm) " +
                         "VALUES (?, ?, ?, ?, ?)";
 
+        LocalDateTime eventDateTime = LocalDateTime.now();
         KeyHolder keyHolder = new GeneratedKeyHolder();
         int updatedRowsCount = jdbcTemplate.update(connection -> {
             PreparedStatement stmt = connection.prepareStatement(userSqlQuery, new String[]{"event_id"});
@@ -63,7 +140,7 @@ public class EventDbStorage implements EventStorage {
             stmt.setString(2, String.valueOf(eventType));
             stmt.setString(3, String.valueOf(actionType));
             stmt.setLong(4, entityId);
-            stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setTimestamp(5, Timestamp.valueOf(eventDateTime));
             return stmt;
         }, keyHolder);
 
@@ -72,14 +149,61 @@ public class EventDbStorage implements EventStorage {
             return null;
         }
 
-        int eventId = (int) keyHolder.getKey().longValue();
-
-        Event createdEvent = getById(eventId).orElse(null);
+        // событие собирается из вставленных значений, повторно читать его из БД не нужно
+        Event createdEvent = Event.builder()
+                .eventId((int) keyHolder.getKey().longValue())
+                .userId(userId)
+                .eventType(eventType)
+                .actionType(actionType)
+                .entityId(entityId)
+                .eventDateTime(Timestamp.valueOf(eventDateTime).toInstant().toEpochMilli())
+                .build();
 
-        log.info("Событие {} добавлен в базу данных. Присвоен идентификатор {}", createdEvent, eventId);
+        log.info("Событие {} добавлено в базу данных", createdEvent);
         return createdEvent;
     }
 
+    @Override
+    @Transactional
+    public void createAll(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        String sqlQuery =
+                "INSERT INTO event (user_id, event_type, action_type, entity_id, event_dttm) " +
+                        "VALUES (?, ?, ?, ?, ?)";
+
+        jdbcTemplate.execute(connection -> connection.prepareStatement(sqlQuery, new String[]{"event_id"}),
+                (PreparedStatementCallback<Void>) stmt -> {
+                    for (Event event : events) {
+                        stmt.setInt(1, event.getUserId());
+                        stmt.setString(2, String.valueOf(event.getEventType()));
+                        stmt.setString(3, String.valueOf(event.getActionType()));
+                        stmt.setLong(4, event.getEntityId());
+                        stmt.setTimestamp(5, new Timestamp(event.getEventDateTime()));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+
+                    // ключи возвращаются в порядке строк пачки; при несовпадении числа ключей пачка откатывается
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        int count = 0;
+                        while (keys.next()) {
+                            if (count < events.size()) {
+                                events.get(count).setEventId(keys.getInt(1));
+                            }
+                            count++;
+                        }
+                        if (count != events.size()) {
+                            throw new DataRetrievalFailureException(String.format(
+                                    "Получено ключей %d для %d событий", count, events.size()));
+                        }
+                    }
+                    return null;
+                });
+        log.debug("В базу данных добавлено событий: {}", events.size());
+    }
+
     private Event makeEvent(ResultSet rs) throws SQLException {
         return Event.builder()
                 .eventId(rs.getInt("event_id"))
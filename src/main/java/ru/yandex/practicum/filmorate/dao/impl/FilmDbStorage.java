@@ -2,26 +2,44 @@ package ru.yandex.practicum.filmorate.dao.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.DirectorStorage;
 import ru.yandex.practicum.filmorate.dao.FilmStorage;
 import ru.yandex.practicum.filmorate.dao.GenreStorage;
 import ru.yandex.practicum.filmorate.dao.MPAStorage;
+import ru.yandex.practicum.filmorate.exception.FilmValidationException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -30,44 +48,78 @@ import java.util.stream.Collectors;
 @Slf4j
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
+    // максимальное количество идентификаторов фильмов в одном запросе IN (...) при загрузке связанных данных
+    private static final int HYDRATION_BATCH_SIZE = 1000;
+    private static final String FILM_COLUMNS =
+            "f.film_id, f.name, f.description, f.release_dt, f.duration, f.rating_id, f.like_count ";
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Qualifier("cachedGenreStorage")
     private final GenreStorage genreStorage;
+    @Qualifier("cachedMPAStorage")
     private final MPAStorage mpaStorage;
+    @Qualifier("cachedDirectorStorage")
     private final DirectorStorage directorStorage;
 
     @Override
     public List<Film> get() {
         String sqlQuery =
-                "SELECT *" +
-                        "FROM film";
+                "SELECT " + FILM_COLUMNS +
+                        "FROM film AS f " +
+                        "ORDER BY f.film_id";
+
+        return queryFilms(sqlQuery);
+    }
+
+    @Override
+    public List<Film> getPage(int afterId, int limit) {
+        String sqlQuery =
+                "SELECT " + FILM_COLUMNS +
+                        "FROM film AS f " +
+                        "WHERE f.film_id > ? " +
+                        "ORDER BY f.film_id " +
+                        "LIMIT ?";
 
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs));
+        return queryFilms(sqlQuery, afterId, limit);
     }
 
     @Override
-    public List<Film> search(String query, Boolean director, Boolean film) {
+    public List<Film> search(String query, Boolean director, Boolean film, Boolean description) {
         StringBuilder sqlQuery = new StringBuilder();
-        sqlQuery.append("SELECT * FROM film f " +
+        sqlQuery.append("SELECT DISTINCT " + FILM_COLUMNS +
+                "FROM film f " +
                 "LEFT JOIN film_x_director fxd ON f.film_id = fxd.film_id " +
                 "LEFT JOIN director d ON d.director_id = fxd.director_id " +
                 "WHERE 1=1 ");
-        if (director && film)
-            sqlQuery.append("AND (d.name ILIKE '%").append(query).append("%'").append("OR f.name ILIKE '%").append(query).append("%')");
-        else {
-            if (director) sqlQuery.append("AND d.name ILIKE '%").append(query).append("%'");
-            if (film) sqlQuery.append("AND f.name ILIKE '%").append(query).append("%'");
+        List<Object> args = new ArrayList<>();
+        String pattern = "%" + escapeLikePattern(query) + "%";
+        List<String> conditions = new ArrayList<>();
+        if (director) {
+            conditions.add("d.name ILIKE ?");
+        }
+        if (film) {
+            conditions.add("f.name ILIKE ?");
         }
+        if (description) {
+            conditions.add("f.description ILIKE ?");
+        }
+        if (!conditions.isEmpty()) {
+            sqlQuery.append("AND (").append(String.join(" OR ", conditions)).append(") ");
+            conditions.forEach(condition -> args.add(pattern));
+        }
+        sqlQuery.append("ORDER BY f.like_count DESC, f.film_id");
 
-        return jdbcTemplate.query(sqlQuery.toString(), (rs, rowNum) -> makeFilm(rs));
+        return queryFilms(sqlQuery.toString(), args.toArray());
     }
 
     @Override
     public Optional<Film> getById(int id) {
         String sqlQuery =
-                "SELECT * " +
-                        "FROM film " +
-                        "WHERE film_id = ?";
-        List<Film> films = jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), id);
+                "SELECT " + FILM_COLUMNS +
+                        "FROM film AS f " +
+                        "WHERE f.film_id = ?";
+        List<Film> films = hydrateFilms(jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), id));
 
         // обрабатываем результат выполнения запроса
         if (films.isEmpty()) {
@@ -78,6 +130,23 @@ public class FilmDbStorage implements FilmStorage {
         return Optional.of(films.get(0));
     }
 
+    @Override
+    public List<Film> getByIds(Collection<Integer> ids) {
+        List<Integer> filmIds = new ArrayList<>(ids);
+        List<Film> films = new ArrayList<>();
+        for (int from = 0; from < filmIds.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Integer> batch = filmIds.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, filmIds.size()));
+            String sqlQuery =
+                    "SELECT " + FILM_COLUMNS +
+                            "FROM film AS f " +
+                            "WHERE f.film_id IN (:filmIds) " +
+                            "ORDER BY f.film_id";
+            films.addAll(namedParameterJdbcTemplate.query(sqlQuery,
+                    new MapSqlParameterSource("filmIds", batch), (rs, rowNum) -> makeFilm(rs)));
+        }
+        return hydrateFilms(films);
+    }
+
     @Override
     public Film create(Film film) {
         String filmSqlQuery =
@@ -103,11 +172,15 @@ public class FilmDbStorage implements FilmStorage {
         film.setId(filmId);
 
         if (film.getGenres() != null) {
-            updateGenresSet(film);
+            batchLinks("INSERT INTO film_x_genre (film_id, genre_id) VALUES (?, ?)", film.getGenres().stream()
+                    .map(genre -> new int[]{filmId, genre.getId()})
+                    .collect(Collectors.toList()));
         }
 
         if (film.getDirectors() != null) {
-            updateDirectorsSet(film);
+            batchLinks("INSERT INTO film_x_director (film_id, director_id) VALUES (?, ?)", film.getDirectors().stream()
+                    .map(director -> new int[]{filmId, director.getId()})
+                    .collect(Collectors.toList()));
         }
 
         Film createdFilm = getById(filmId).orElse(null);
@@ -116,7 +189,97 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
+    @Transactional
+    public List<Film> createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        // ссылки на справочники проверяются до вставки, чтобы не откатывать пачку из-за внешнего ключа
+        films.forEach(film -> {
+            resolveReferences(film);
+            film.setLikes(new IdSet());
+            film.setLikeCount(0);
+        });
+
+        String filmSqlQuery =
+                "INSERT INTO film (name, description, release_dt, duration, rating_id) " +
+                        "VALUES (?, ?, ?, ?, ?)";
+        jdbcTemplate.execute(connection -> connection.prepareStatement(filmSqlQuery, new String[]{"film_id"}),
+                (PreparedStatementCallback<Void>) stmt -> {
+                    for (Film film : films) {
+                        stmt.setString(1, film.getName());
+                        stmt.setString(2, film.getDescription());
+                        stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+                        stmt.setInt(4, film.getDuration());
+                        stmt.setInt(5, film.getMpa().getId());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+
+                    // ключи возвращаются в порядке строк пачки; при несовпадении числа ключей пачка откатывается
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        int count = 0;
+                        while (keys.next()) {
+                            if (count < films.size()) {
+                                films.get(count).setId(keys.getInt(1));
+                            }
+                            count++;
+                        }
+                        if (count != films.size()) {
+                            throw new DataRetrievalFailureException(String.format(
+                                    "Получено ключей %d для %d фильмов", count, films.size()));
+                        }
+                    }
+                    return null;
+                });
+
+        List<int[]> filmGenres = new ArrayList<>();
+        List<int[]> filmDirectors = new ArrayList<>();
+        for (Film film : films) {
+            film.getGenres().forEach(genre -> filmGenres.add(new int[]{film.getId(), genre.getId()}));
+            film.getDirectors().forEach(director -> filmDirectors.add(new int[]{film.getId(), director.getId()}));
+        }
+        batchLinks("INSERT INTO film_x_genre (film_id, genre_id) VALUES (?, ?)", filmGenres);
+        batchLinks("INSERT INTO film_x_director (film_id, director_id) VALUES (?, ?)", filmDirectors);
+
+        log.info("В базу данных добавлено фильмов: {}", films.size());
+        return films;
+    }
+
+    @Override
+    @Transactional
     public Optional<Film> update(Film film) {
+        // текущие связи и число лайков читаются одним запросом; отсутствие строки 'C' значит, что фильма нет,
+        // и это проверяется раньше ссылок на справочники, чтобы несуществующий фильм давал 404, а не 400
+        String linksSqlQuery =
+                "SELECT 'C' AS link_type, like_count AS link_id FROM film WHERE film_id = ? " +
+                        "UNION ALL " +
+                        "SELECT 'G', genre_id FROM film_x_genre WHERE film_id = ? " +
+                        "UNION ALL " +
+                        "SELECT 'D', director_id FROM film_x_director WHERE film_id = ?";
+        List<Integer> likeCount = new ArrayList<>(1);
+        Set<Integer> oldGenreIds = new HashSet<>();
+        Set<Integer> oldDirectorIds = new HashSet<>();
+        jdbcTemplate.query(linksSqlQuery, rs -> {
+            switch (rs.getString("link_type")) {
+                case "C":
+                    likeCount.add(rs.getInt("link_id"));
+                    break;
+                case "G":
+                    oldGenreIds.add(rs.getInt("link_id"));
+                    break;
+                default:
+                    oldDirectorIds.add(rs.getInt("link_id"));
+            }
+        }, film.getId(), film.getId(), film.getId());
+
+        if (likeCount.isEmpty()) {
+            log.info("Фильм с идентификатором {} не найден.", film.getId());
+            return Optional.empty();
+        }
+
+        resolveReferences(film);
+
         String filmSqlQuery =
                 "UPDATE film " +
                         "SET name = ?, description = ?, release_dt = ?, duration = ?, rating_id = ? " +
@@ -130,66 +293,133 @@ public class FilmDbStorage implements FilmStorage {
                 film.getId());
 
         if (updatedRowsCount == 0) {
-            log.info("Фильм с идентификатором {} не найден.", film.getId());
+            log.info("Фильм с идентификатором {} удален во время обновления.", film.getId());
             return Optional.empty();
         }
 
-        deleteOldGenresSet(film);
-        if (film.getGenres() != null) {
-            updateGenresSet(film);
-        }
+        Set<Integer> newGenreIds = film.getGenres().stream().map(Genre::getId).collect(Collectors.toSet());
+        Set<Integer> newDirectorIds = film.getDirectors().stream().map(Director::getId).collect(Collectors.toSet());
+        updateLinks(film.getId(), oldGenreIds, newGenreIds,
+                "INSERT INTO film_x_genre (film_id, genre_id) VALUES (?, ?)",
+                "DELETE FROM film_x_genre WHERE film_id = ? AND genre_id = ?");
+        updateLinks(film.getId(), oldDirectorIds, newDirectorIds,
+                "INSERT INTO film_x_director (film_id, director_id) VALUES (?, ?)",
+                "DELETE FROM film_x_director WHERE film_id = ? AND director_id = ?");
+
+        // сами лайки обновление не меняет и не читает
+        film.setLikes(null);
+        film.setLikeCount(likeCount.get(0));
+        log.info("Фильм {} обновлен в базе данных", film);
+        return Optional.of(film);
+    }
 
-        deleteOldDirectorsSet(film);
-        if (film.getDirectors() != null) {
-            updateDirectorsSet(film);
-        }
+    @Override
+    public Map<Integer, IdSet> getAllLikes() {
+        String sqlQuery =
+                "SELECT film_id, user_id " +
+                        "FROM film_like " +
+                        "ORDER BY film_id, user_id";
+
+        Map<Integer, IdSet> likes = new HashMap<>();
+        jdbcTemplate.query(sqlQuery, rs -> {
+            likes.computeIfAbsent(rs.getInt("film_id"), id -> new IdSet()).add(rs.getInt("user_id"));
+        });
+        return likes;
+    }
+
+    @Override
+    public IdSet getLikedFilmIds(int userId) {
+        String sqlQuery =
+                "SELECT film_id " +
+                        "FROM film_like " +
+                        "WHERE user_id = ? " +
+                        "ORDER BY film_id";
 
-        Optional<Film> updatedFilm = this.getById(film.getId());
-        log.info("Фильм {} обновлен в базе данных", updatedFilm);
-        return updatedFilm;
+        IdSet filmIds = new IdSet();
+        jdbcTemplate.query(sqlQuery, rs -> {
+            filmIds.add(rs.getInt("film_id"));
+        }, userId);
+        return filmIds;
     }
 
     @Override
-    public void addLike(Film film, User user) {
+    @Transactional
+    public boolean addLike(Film film, User user) {
         String sqlQuery =
-                "MERGE INTO film_like (film_id, user_id) " +
-                        "VALUES (?, ?)";
-        jdbcTemplate.update(sqlQuery, film.getId(), user.getId());
+                "INSERT INTO film_like (film_id, user_id) " +
+                        "SELECT ?, ? " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM film_like WHERE film_id = ? AND user_id = ?)";
+        int insertedRowsCount;
+        try {
+            insertedRowsCount = jdbcTemplate.update(sqlQuery, film.getId(), user.getId(), film.getId(), user.getId());
+        } catch (DuplicateKeyException e) {
+            log.info("Лайк от пользователя {} фильму {} уже существует", user.getId(), film.getId());
+            return false;
+        }
+
+        if (insertedRowsCount == 0) {
+            return false;
+        }
+        updateLikeCount(film.getId(), 1);
+        return true;
     }
 
     @Override
-    public void removeLike(Film film, User user) {
+    @Transactional
+    public boolean removeLike(Film film, User user) {
         String sqlQuery =
                 "DELETE FROM film_like " +
                         "WHERE film_id = ? AND user_id = ?";
 
-        jdbcTemplate.update(sqlQuery, film.getId(), user.getId());
+        int deletedRowsCount = jdbcTemplate.update(sqlQuery, film.getId(), user.getId());
+        if (deletedRowsCount == 0) {
+            return false;
+        }
+        updateLikeCount(film.getId(), -1);
+        return true;
+    }
+
+    private void updateLikeCount(int filmId, int delta) {
+        String sqlQuery =
+                "UPDATE film " +
+                        "SET like_count = like_count + ? " +
+                        "WHERE film_id = ?";
+
+        jdbcTemplate.update(sqlQuery, delta, filmId);
     }
 
     @Override
     public List<Film> getFilmsByDirector(int directorId) {
-        String queryFilmSelect = "SELECT * " +
+        String queryFilmSelect = "SELECT " + FILM_COLUMNS +
                 "FROM film AS f " +
-                "LEFT JOIN film_x_director AS fd ON f.film_id = fd.film_id " +
-                "WHERE fd.director_id = ?;";
-        return jdbcTemplate.query(queryFilmSelect, (rs, rowNum) -> makeFilm(rs), directorId);
+                "INNER JOIN film_x_director AS fd ON f.film_id = fd.film_id " +
+                "WHERE fd.director_id = ? " +
+                "ORDER BY f.film_id;";
+        return queryFilms(queryFilmSelect, directorId);
     }
 
     public List<Film> getPopularByGenreAndYear(int count, int genreId, int year) {
         List<Film> films;
-        String sqlQuery = "SELECT f.film_id, f.name, f.description, f.release_dt, f.duration, f.rating_id, " +
-                "COUNT(fl.user_id) as likes " +
+        List<Object> args = new ArrayList<>();
+        StringBuilder sqlQuery = new StringBuilder();
+        sqlQuery.append("SELECT " + FILM_COLUMNS +
                 "FROM film f " +
-                "LEFT JOIN film_like fl ON f.film_id=fl.film_id " +
-                "LEFT JOIN film_x_genre fg ON f.film_id=fg.film_id AND fg.genre_id = ?" +
-                "WHERE COALESCE (fg.genre_id, 0) = ?" +
-                "AND EXTRACT (year FROM COALESCE(f.release_dt, '1800-01-01')) = " +
-                "CASE WHEN ? = 0 THEN EXTRACT (year FROM COALESCE(f.release_dt, '1800-01-01')) ELSE ? END " +
-                "GROUP BY f.film_id, f.name, f.description, f.release_dt, f.duration, f.rating_id " +
-                "ORDER BY likes DESC, film_id " +
-                "LIMIT ?";
+                "WHERE 1=1 ");
+        if (genreId != 0) {
+            // фильмы жанра берутся из индекса film_x_genre_genre_idx, а не проверкой каждого фильма
+            sqlQuery.append("AND f.film_id IN (SELECT fg.film_id FROM film_x_genre fg WHERE fg.genre_id = ?) ");
+            args.add(genreId);
+        }
+        if (year != 0) {
+            sqlQuery.append("AND f.release_dt >= ? AND f.release_dt < ? ");
+            args.add(Date.valueOf(LocalDate.of(year, 1, 1)));
+            args.add(Date.valueOf(LocalDate.of(year + 1, 1, 1)));
+        }
+        sqlQuery.append("ORDER BY f.like_count DESC, f.film_id " +
+                "LIMIT ?");
+        args.add(count);
 
-        films = jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), genreId, genreId, year, year, count);
+        films = queryFilms(sqlQuery.toString(), args.toArray());
 
         if (films.isEmpty()) {
             log.info("Популярные фильмы с жанром {} и годом {} не найдены.", genreId, year);
@@ -218,131 +448,157 @@ public class FilmDbStorage implements FilmStorage {
                         "ORDER BY COUNT(t2.film_id) DESC " +
                         "LIMIT 1) " +
 
+                        "SELECT " + FILM_COLUMNS +
+                        "FROM film f " +
+                        "WHERE f.film_id IN (" +
                         "SELECT rec.film_id " +
                         "FROM film_like rec " +
-                        "INNER JOIN rec_user ON rec.user_id = rec_user.user_id " +
-                        "LEFT JOIN film_like base ON rec.film_id = base.film_id " +
-                        "AND base.user_id = ? " +
-                        "WHERE 1=1 " +
-                        "AND base.film_id IS NULL";
-
-        return jdbcTemplate.queryForList(sqlQuery,
-                        Integer.class,
-                        userId,
-                        userId)
-                .stream()
-                .map(this::getById)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+                        "WHERE rec.user_id = (SELECT user_id FROM rec_user) " +
+                        "AND NOT EXISTS (SELECT 1 FROM film_like base " +
+                        "WHERE base.film_id = rec.film_id AND base.user_id = ?)) " +
+                        "ORDER BY f.film_id";
+
+        return queryFilms(sqlQuery, userId, userId);
     }
 
     @Override
     public List<Film> getCommonFilms(int userId, int friendId) {
         String sqlQuery =
-                "SELECT film_id " +
+                "SELECT " + FILM_COLUMNS +
+                        "FROM film f " +
+                        "WHERE f.film_id IN (" +
+                        "SELECT film_id " +
                         "FROM film_like " +
                         "WHERE user_id = ? " +
                         "INTERSECT " +
                         "SELECT film_id " +
                         "FROM film_like " +
-                        "WHERE user_id = ?";
-        return jdbcTemplate.queryForList(sqlQuery,
-                        Integer.class,
-                        userId,
-                        friendId)
-                .stream()
-                .map(this::getById)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+                        "WHERE user_id = ?) " +
+                        "ORDER BY f.like_count DESC, f.film_id";
+        return queryFilms(sqlQuery, userId, friendId);
     }
 
-    private Film makeFilm(ResultSet rs) throws SQLException {
-        int filmId = rs.getInt("film_id");
-        Film film = Film.builder()
-                .name(rs.getString("name"))
-                .description(rs.getString("description"))
-                .releaseDate(rs.getDate("release_dt").toLocalDate())
-                .duration(rs.getInt("duration"))
-                .mpa(mpaStorage.getById(rs.getInt("rating_id")).orElse(null))
-                .genres(getGenresByFilmId(filmId))
-                .likes(getLikesByFilmId(filmId))
-                .directors(getDirectorsByFilmId(filmId))
-                .build();
-        film.setId(filmId);
-        return film;
+    private List<Film> queryFilms(String sqlQuery, Object... args) {
+        List<Film> films = jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), args);
+        return hydrateFilms(films);
     }
 
-    private Set<Genre> getGenresByFilmId(int filmId) {
-        String sqlQuery =
-                "SELECT genre_id " +
-                        "FROM film_x_genre " +
-                        "WHERE film_id = ?";
+    // связи с жанрами и режиссерами загружаются для всей выборки фильмов сразу,
+    // а сами жанры, рейтинги и режиссеры берутся из кэша справочников.
+    // Лайки не загружаются: популярность сортируется по like_count, а addLike и removeLike их не читают
+    private List<Film> hydrateFilms(List<Film> films) {
+        Map<Integer, Film> filmsById = new LinkedHashMap<>();
+        films.forEach(film -> filmsById.putIfAbsent(film.getId(), film));
+
+        List<Integer> filmIds = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < filmIds.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Integer> batch = filmIds.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, filmIds.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource("filmIds", batch);
+            loadGenres(filmsById, params);
+            loadDirectors(filmsById, params);
+        }
 
-        return jdbcTemplate.queryForList(sqlQuery, Integer.class, filmId)
-                .stream()
-                .map(genreStorage::getById)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toSet());
+        return new ArrayList<>(filmsById.values());
     }
 
-    private Set<Integer> getLikesByFilmId(int filmId) {
+    private void loadGenres(Map<Integer, Film> filmsById, MapSqlParameterSource params) {
         String sqlQuery =
-                "SELECT user_id " +
-                        "FROM film_like " +
-                        "WHERE film_id = ?";
-        List<Integer> likes = jdbcTemplate.queryForList(sqlQuery, Integer.class, filmId);
-        return new HashSet<>(likes);
-    }
-
-    private Set<Director> getDirectorsByFilmId(int filmId) {
-        String queryFilmXDirectorSelect = "SELECT director_id " +
-                "FROM film_x_director " +
-                "WHERE film_id = ?;";
-
-        List<Integer> directorsIds = jdbcTemplate.queryForList(queryFilmXDirectorSelect, Integer.class, filmId);
+                "SELECT film_id, genre_id " +
+                        "FROM film_x_genre " +
+                        "WHERE film_id IN (:filmIds) " +
+                        "ORDER BY film_id, genre_id";
 
-        List<Director> allDirectors = directorStorage.get();
-        return allDirectors.stream()
-                .filter(director -> directorsIds.contains(director.getId()))
-                .collect(Collectors.toSet());
+        namedParameterJdbcTemplate.query(sqlQuery, params, rs -> {
+            genreStorage.getById(rs.getInt("genre_id"))
+                    .ifPresent(filmsById.get(rs.getInt("film_id")).getGenres()::add);
+        });
     }
 
-    private void updateDirectorsSet(Film film) {
-        String queryFilmDirectorInsert = "INSERT INTO film_x_director(film_id, director_id) " +
-                "VALUES(?, ?);";
-
-        film.getDirectors().forEach(director -> {
-            jdbcTemplate.update(queryFilmDirectorInsert, film.getId(), director.getId());
+    private void loadDirectors(Map<Integer, Film> filmsById, MapSqlParameterSource params) {
+        String sqlQuery =
+                "SELECT film_id, director_id " +
+                        "FROM film_x_director " +
+                        "WHERE film_id IN (:filmIds) " +
+                        "ORDER BY film_id, director_id";
+
+        namedParameterJdbcTemplate.query(sqlQuery, params, rs -> {
+            directorStorage.getById(rs.getInt("director_id"))
+                    .ifPresent(filmsById.get(rs.getInt("film_id")).getDirectors()::add);
         });
     }
 
-    private void updateGenresSet(Film film) {
-        String genreSqlQuery =
-                "INSERT INTO film_x_genre (film_id, genre_id) " +
-                        "VALUES (?, ?)";
+    // экранирует служебные символы LIKE, чтобы подстрока запроса искалась буквально
+    private static String escapeLikePattern(String query) {
+        return query.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
 
-        film.getGenres().forEach(genre -> {
-            jdbcTemplate.update(genreSqlQuery,
-                    film.getId(),
-                    genre.getId());
-        });
+    private Film makeFilm(ResultSet rs) throws SQLException {
+        int filmId = rs.getInt("film_id");
+        int ratingId = rs.getInt("rating_id");
+        MPA mpa = rs.wasNull() ? null : mpaStorage.getById(ratingId).orElse(null);
+        Film film = Film.builder()
+                .name(rs.getString("name"))
+                .description(rs.getString("description"))
+                .releaseDate(rs.getDate("release_dt").toLocalDate())
+                .duration(rs.getInt("duration"))
+                .likeCount(rs.getInt("like_count"))
+                .mpa(mpa)
+                .genres(new LinkedHashSet<>())
+                .directors(new LinkedHashSet<>())
+                .build();
+        film.setId(filmId);
+        return film;
     }
 
-    private void deleteOldDirectorsSet(Film film) {
-        String queryFilmDirectorDelete = "DELETE FROM film_x_director " +
-                "WHERE film_id = ?;";
+    // заменяет жанры, рейтинг и режиссеров фильма объектами из справочников
+    private void resolveReferences(Film film) {
+        if (film.getMpa() == null) {
+            throw new FilmValidationException("Не указан рейтинг фильма " + film.getName());
+        }
+        film.setMpa(mpaStorage.getById(film.getMpa().getId()).orElseThrow(() ->
+                new FilmValidationException("Рейтинг с ID = " + film.getMpa().getId() + " не найден")));
+
+        Set<Genre> genres = new LinkedHashSet<>();
+        if (film.getGenres() != null) {
+            film.getGenres().stream()
+                    .sorted(Comparator.comparingInt(Genre::getId))
+                    .forEach(genre -> genres.add(genreStorage.getById(genre.getId()).orElseThrow(() ->
+                            new FilmValidationException("Жанр с ID = " + genre.getId() + " не найден"))));
+        }
+        film.setGenres(genres);
 
-        jdbcTemplate.update(queryFilmDirectorDelete, film.getId());
+        Set<Director> directors = new LinkedHashSet<>();
+        if (film.getDirectors() != null) {
+            film.getDirectors().stream()
+                    .sorted(Comparator.comparingInt(Director::getId))
+                    .forEach(director -> directors.add(directorStorage.getById(director.getId()).orElseThrow(() ->
+                            new FilmValidationException("Режиссер с ID = " + director.getId() + " не найден"))));
+        }
+        film.setDirectors(directors);
     }
 
-    private void deleteOldGenresSet(Film film) {
-        String genreDeleteSqlQuery =
-                "DELETE FROM film_x_genre " +
-                        "WHERE film_id = ?";
+    private void batchLinks(String sqlQuery, List<int[]> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sqlQuery, links, HYDRATION_BATCH_SIZE, (stmt, link) -> {
+            stmt.setInt(1, link[0]);
+            stmt.setInt(2, link[1]);
+        });
+    }
 
-        jdbcTemplate.update(genreDeleteSqlQuery, film.getId());
+    // в БД применяется только разница между старыми и новыми связями фильма
+    private void updateLinks(int filmId, Set<Integer> oldIds, Set<Integer> newIds,
+                             String insertSqlQuery, String deleteSqlQuery) {
+        batchLinks(insertSqlQuery, newIds.stream()
+                .filter(id -> !oldIds.contains(id))
+                .map(id -> new int[]{filmId, id})
+                .collect(Collectors.toList()));
+        batchLinks(deleteSqlQuery, oldIds.stream()
+                .filter(id -> !newIds.contains(id))
+                .map(id -> new int[]{filmId, id})
+                .collect(Collectors.toList()));
     }
 }
@@ -2,56 +2,405 @@ package ru.yandex.practicum.filmorate.dao.impl;
 
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+// Хранилище фильмов целиком в памяти. Кроме самих фильмов поддерживает индексы по режиссеру, жанру,
+// году выпуска, лайкам пользователя и рейтинг по числу лайков. Индексы меняются под блокировкой фильма
+// вместе с ним, поэтому выборки получают согласованный снимок каждого фильма без обхода всего хранилища
 @Component("inMemoryFilmStorage")
 public class InMemoryFilmStorage extends BaseModelStorage<Film> implements FilmStorage {
+    // порядок популярных фильмов как в FilmDbStorage: like_count DESC, film_id
+    private static final Comparator<Film> BY_POPULARITY = Comparator.comparingInt(Film::getLikeCount).reversed()
+            .thenComparingInt(Film::getId);
+
+    private final ConcurrentMap<Integer, Set<Integer>> filmsByDirector = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<Integer>> filmsByGenre = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<Integer>> filmsByYear = new ConcurrentHashMap<>();
+    // множества лайков пользователя не меняются на месте, а заменяются копией, поэтому читаются без блокировок
+    private final ConcurrentMap<Integer, IdSet> filmsByUserLike = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Rank> ranking = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<Integer, Rank> ranks = new ConcurrentHashMap<>();
+    private volatile StorageJournal journal = StorageJournal.NONE;
+    // при восстановлении индекс лайков по пользователям строится один раз в конце, а не по лайку
+    private volatile boolean likeIndexDeferred;
+
+    public void setJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    // лайки фильма тоже заменяются копией под блокировкой фильма: читатели видят либо старый, либо новый набор
+    @Override
+    protected void prepare(Film film) {
+        IdSet likes = film.getLikes() == null ? new IdSet() : IdSet.copyOf(film.getLikes());
+        film.setLikes(likes);
+        film.setLikeCount(likes.size());
+    }
+
+    // лайки меняются только через addLike и removeLike, обновление фильма их не затрагивает
+    @Override
+    protected void merge(Film existing, Film updated) {
+        updated.setLikes(existing.getLikes());
+        updated.setLikeCount(existing.getLikeCount());
+    }
+
+    @Override
+    protected void reindex(Film previous, Film current) {
+        int filmId = previous != null ? previous.getId() : current.getId();
+        reindex(filmsByDirector, filmId, directorIds(previous), directorIds(current));
+        reindex(filmsByGenre, filmId, genreIds(previous), genreIds(current));
+        reindex(filmsByYear, filmId, releaseYear(previous), releaseYear(current));
+        IdSet previousLikes = previous == null ? new IdSet() : previous.getLikes();
+        IdSet currentLikes = current == null ? new IdSet() : current.getLikes();
+        if (previousLikes != currentLikes && !likeIndexDeferred) {
+            previousLikes.forEachInt(userId -> {
+                if (!currentLikes.contains(userId)) {
+                    unlike(userId, filmId);
+                }
+            });
+            currentLikes.forEachInt(userId -> like(userId, filmId));
+        }
+        rank(filmId, current == null ? null : current.getLikeCount());
+    }
+
+    @Override
+    protected void checkWritable() {
+        journal.checkWritable();
+    }
+
+    @Override
+    protected CompletableFuture<Void> created(Film film) {
+        return journal.filmCreated(film);
+    }
+
+    @Override
+    protected CompletableFuture<Void> updated(Film film) {
+        return journal.filmUpdated(film);
+    }
+
+    @Override
+    protected CompletableFuture<Void> removed(int filmId) {
+        return journal.filmRemoved(filmId);
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        films.forEach(this::create);
+        return films;
+    }
+
+    @Override
+    public List<Film> search(String query, Boolean director, Boolean film, Boolean description) {
+        String substring = query.toLowerCase();
+        return models().stream()
+                .filter(candidate -> !director && !film && !description
+                        || director && directorMatches(candidate, substring)
+                        || film && candidate.getName().toLowerCase().contains(substring)
+                        || description && candidate.getDescription() != null
+                        && candidate.getDescription().toLowerCase().contains(substring))
+                .sorted(BY_POPULARITY)
+                .collect(Collectors.toList());
+    }
+
+    // лайк, счетчик и индексы меняются вместе под блокировкой фильма, чтобы они не расходились между собой
     @Override
-    @Deprecated
-    public List<Film> search(String query, Boolean director, Boolean film) {
-        throw new UnsupportedOperationException("Реализация метода существует только при работе с БД");
+    public boolean addLike(Film film, User user) {
+        int filmId = film.getId();
+        int userId = user.getId();
+        CompletableFuture<Void> commit = locked(filmId, () -> {
+            checkWritable();
+            Film stored = getById(filmId).orElse(null);
+            if (stored == null || stored.getLikes().contains(userId)) {
+                return null;
+            }
+            setLikes(stored, stored.getLikes().with(userId));
+            like(userId, filmId);
+            return journal.likeAdded(filmId, userId);
+        });
+        if (commit == null) {
+            return false;
+        }
+        await(commit);
+        return true;
+    }
+
+    @Override
+    public boolean removeLike(Film film, User user) {
+        return removeLike(film.getId(), user.getId());
+    }
+
+    // лайки удаляемого пользователя снимаются по одному, с записью в журнал, как и обычные
+    void removeLikes(int userId) {
+        getLikedFilmIds(userId).forEachInt(filmId -> removeLike(filmId, userId));
+    }
+
+    private boolean removeLike(int filmId, int userId) {
+        CompletableFuture<Void> commit = locked(filmId, () -> {
+            checkWritable();
+            Film stored = getById(filmId).orElse(null);
+            if (stored == null || !stored.getLikes().contains(userId)) {
+                return null;
+            }
+            setLikes(stored, stored.getLikes().without(userId));
+            unlike(userId, filmId);
+            return journal.likeRemoved(filmId, userId);
+        });
+        if (commit == null) {
+            return false;
+        }
+        await(commit);
+        return true;
     }
 
+    // наборы лайков не меняются на месте, поэтому отдаются без копирования
     @Override
-    public void addLike(Film film, User user) {
-        film.getLikes().add(user.getId());
+    public Map<Integer, IdSet> getAllLikes() {
+        Map<Integer, IdSet> likes = new HashMap<>();
+        models().stream()
+                .filter(film -> !film.getLikes().isEmpty())
+                .forEach(film -> likes.put(film.getId(), film.getLikes()));
+        return likes;
     }
 
     @Override
-    public void removeLike(Film film, User user) {
-        film.getLikes().remove(user.getId());
+    public IdSet getLikedFilmIds(int userId) {
+        return filmsByUserLike.getOrDefault(userId, new IdSet());
     }
 
     @Override
-    @Deprecated
     public List<Film> getFilmsByDirector(int directorId) {
-        throw new UnsupportedOperationException("Реализация метода существует только при работе с БД");
+        return films(filmsByDirector.getOrDefault(directorId, Set.of()))
+                .sorted(Comparator.comparingInt(Film::getId))
+                .collect(Collectors.toList());
     }
 
     @Override
-    @Deprecated
     public void removeFilm(int filmId) {
-        throw new UnsupportedOperationException("Реализация метода существует только при работе с БД");
+        remove(filmId);
     }
 
     @Override
-    @Deprecated
     public List<Film> getPopularByGenreAndYear(int count, int genreId, int year) {
-        throw new UnsupportedOperationException("Реализация метода существует только при работе с БД");
+        if (genreId == 0 && year == 0) {
+            // без фильтров первые count фильмов берутся прямо из рейтинга
+            return ranking.stream()
+                    .map(rank -> getById(rank.filmId).orElse(null))
+                    .filter(Objects::nonNull)
+                    .limit(count)
+                    .collect(Collectors.toList());
+        }
+        Set<Integer> byGenre = genreId == 0 ? null : filmsByGenre.getOrDefault(genreId, Set.of());
+        Set<Integer> byYear = year == 0 ? null : filmsByYear.getOrDefault(year, Set.of());
+        return films(intersect(byGenre, byYear))
+                .sorted(BY_POPULARITY)
+                .limit(count)
+                .collect(Collectors.toList());
     }
 
+    // рекомендации дает пользователь с наибольшим числом общих лайков, при равенстве - с меньшим идентификатором
     @Override
-    @Deprecated
     public List<Film> getFilmRecommendations(int userId) {
-        throw new UnsupportedOperationException("Реализация метода существует только при работе с БД");
+        IdSet liked = filmsByUserLike.getOrDefault(userId, new IdSet());
+        Map<Integer, Integer> overlaps = new HashMap<>();
+        films(liked).forEach(film -> film.getLikes().forEachInt(otherId -> {
+            if (otherId != userId) {
+                overlaps.merge(otherId, 1, Integer::sum);
+            }
+        }));
+        return overlaps.entrySet().stream()
+                .min(Comparator.<Map.Entry<Integer, Integer>>comparingInt(entry -> -entry.getValue())
+                        .thenComparingInt(Map.Entry::getKey))
+                .map(best -> films(filmsByUserLike.getOrDefault(best.getKey(), new IdSet()))
+                        .filter(film -> !liked.contains(film.getId()))
+                        .sorted(Comparator.comparingInt(Film::getId))
+                        .collect(Collectors.toList()))
+                .orElse(List.of());
     }
 
     @Override
-    @Deprecated
     public List<Film> getCommonFilms(int userId, int friendId) {
-        throw new UnsupportedOperationException("Реализация метода существует только при работе с БД");
+        return films(filmsByUserLike.getOrDefault(userId, new IdSet())
+                .intersect(filmsByUserLike.getOrDefault(friendId, new IdSet())))
+                .sorted(BY_POPULARITY)
+                .collect(Collectors.toList());
+    }
+
+    // копии фильмов с текущими наборами лайков для снимка; вызывается под lockedAll
+    List<Film> copies() {
+        return models().stream().map(film -> {
+            Film copy = Film.builder()
+                    .name(film.getName())
+                    .description(film.getDescription())
+                    .releaseDate(film.getReleaseDate())
+                    .duration(film.getDuration())
+                    .likes(film.getLikes())
+                    .likeCount(film.getLikeCount())
+                    .genres(film.getGenres())
+                    .mpa(film.getMpa())
+                    .directors(film.getDirectors())
+                    .build();
+            copy.setId(film.getId());
+            return copy;
+        }).collect(Collectors.toList());
+    }
+
+    void deferLikeIndex() {
+        likeIndexDeferred = true;
+    }
+
+    // переключает лайки перечисленных пользователей: так применяются лайки, накопленные при чтении журнала
+    void toggleLikes(int filmId, IdSet userIds) {
+        locked(filmId, () -> {
+            getById(filmId).ifPresent(stored -> setLikes(stored, stored.getLikes().symmetricDifference(userIds)));
+            return null;
+        });
+    }
+
+    // фильмы обходятся по возрастанию идентификатора, поэтому идентификаторы добавляются в конец наборов
+    void rebuildLikeIndex() {
+        Map<Integer, IdSet> index = new HashMap<>();
+        get().forEach(film -> film.getLikes().forEachInt(userId ->
+                index.computeIfAbsent(userId, id -> new IdSet()).add(film.getId())));
+        filmsByUserLike.clear();
+        filmsByUserLike.putAll(index);
+        likeIndexDeferred = false;
+    }
+
+    private void setLikes(Film stored, IdSet likes) {
+        stored.setLikes(likes);
+        stored.setLikeCount(likes.size());
+        rank(stored.getId(), stored.getLikeCount());
+    }
+
+    private Stream<Film> films(Collection<Integer> filmIds) {
+        return filmIds.stream()
+                .map(filmId -> getById(filmId).orElse(null))
+                .filter(Objects::nonNull);
+    }
+
+    // пересечение идет по меньшему набору; null означает отсутствие фильтра
+    private Collection<Integer> intersect(Set<Integer> first, Set<Integer> second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        Set<Integer> smaller = first.size() <= second.size() ? first : second;
+        Set<Integer> larger = smaller == first ? second : first;
+        return smaller.stream().filter(larger::contains).collect(Collectors.toList());
+    }
+
+    private boolean directorMatches(Film film, String substring) {
+        return film.getDirectors() != null && film.getDirectors().stream()
+                .anyMatch(director -> director.getName() != null
+                        && director.getName().toLowerCase().contains(substring));
+    }
+
+    // вызывается под блокировкой фильма; null убирает фильм из рейтинга
+    private void rank(int filmId, Integer likeCount) {
+        Rank current = likeCount == null ? null : new Rank(filmId, likeCount);
+        Rank previous = current == null ? ranks.remove(filmId) : ranks.put(filmId, current);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        if (current != null) {
+            ranking.add(current);
+        }
+    }
+
+    private void like(int userId, int filmId) {
+        if (likeIndexDeferred) {
+            return;
+        }
+        filmsByUserLike.compute(userId, (id, filmIds) -> filmIds == null ? IdSet.of(filmId) : filmIds.with(filmId));
+    }
+
+    private void unlike(int userId, int filmId) {
+        if (likeIndexDeferred) {
+            return;
+        }
+        filmsByUserLike.computeIfPresent(userId, (id, filmIds) -> {
+            IdSet remaining = filmIds.without(filmId);
+            return remaining.isEmpty() ? null : remaining;
+        });
+    }
+
+    private void reindex(ConcurrentMap<Integer, Set<Integer>> index, int filmId,
+                         Set<Integer> previousKeys, Set<Integer> currentKeys) {
+        previousKeys.stream()
+                .filter(key -> !currentKeys.contains(key))
+                .forEach(key -> unindex(index, key, filmId));
+        currentKeys.forEach(key -> index(index, key, filmId));
+    }
+
+    private void index(ConcurrentMap<Integer, Set<Integer>> index, int key, int filmId) {
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(filmId);
+    }
+
+    // пустой набор удаляется атомарно, чтобы не потерять добавление в него из другого потока
+    private void unindex(ConcurrentMap<Integer, Set<Integer>> index, int key, int filmId) {
+        index.computeIfPresent(key, (k, filmIds) -> {
+            filmIds.remove(filmId);
+            return filmIds.isEmpty() ? null : filmIds;
+        });
+    }
+
+    private static Set<Integer> directorIds(Film film) {
+        return ids(film == null ? null : film.getDirectors(), Director::getId);
+    }
+
+    private static Set<Integer> genreIds(Film film) {
+        return ids(film == null ? null : film.getGenres(), Genre::getId);
+    }
+
+    private static Set<Integer> releaseYear(Film film) {
+        return film == null || film.getReleaseDate() == null ? Set.of() : Set.of(film.getReleaseDate().getYear());
+    }
+
+    private static <T> Set<Integer> ids(Set<T> items, Function<T, Integer> id) {
+        return items == null ? Set.of() : items.stream().map(id).collect(Collectors.toSet());
+    }
+
+    // позиция фильма в рейтинге: больше лайков - выше, при равенстве выше фильм с меньшим идентификатором
+    private static final class Rank implements Comparable<Rank> {
+        private final int filmId;
+        private final int likeCount;
+
+        private Rank(int filmId, int likeCount) {
+            this.filmId = filmId;
+            this.likeCount = likeCount;
+        }
+
+        @Override
+        public int compareTo(Rank other) {
+            int byLikes = Integer.compare(other.likeCount, likeCount);
+            return byLikes != 0 ? byLikes : Integer.compare(filmId, other.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Rank && ((Rank) o).filmId == filmId && ((Rank) o).likeCount == likeCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * filmId + likeCount;
+        }
     }
-}
\ No newline at end of file
+}
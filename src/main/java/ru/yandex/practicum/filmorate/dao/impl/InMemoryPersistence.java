@@ -0,0 +1,566 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Долговечность хранилищ в памяти: каждое изменение пишется в журнал упреждающей записи с групповой фиксацией,
+// периодически состояние целиком сохраняется в двоичный снимок snapshot-<сегмент>.bin, после чего журнал
+// до этого сегмента удаляется. При запуске загружается последний снимок (через отображение файла в память)
+// и применяются записи журнала после него.
+// Снимок согласован: переключение сегмента журнала и копирование моделей идут под всеми блокировками хранилищ,
+// а наборы лайков и друзей не меняются на месте, поэтому копии ссылаются на них без копирования массивов.
+// Записи лайков и друзей пишутся, только когда меняют состояние, поэтому записи одной пары чередуются
+// добавлением и удалением: при восстановлении пара переключается, если записей о ней нечетное число.
+// Пары копятся в массиве long и применяются одной сортировкой, а не по одной записи
+@Component
+@ConditionalOnProperty(prefix = "filmorate.in-memory.persistence", name = "enabled", havingValue = "true")
+@Slf4j
+public class InMemoryPersistence implements StorageJournal, SmartLifecycle {
+    private static final int SNAPSHOT_MAGIC = 0x464D5331;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private static final byte FILM_CREATED = 1;
+    private static final byte FILM_UPDATED = 2;
+    private static final byte FILM_REMOVED = 3;
+    private static final byte LIKE_ADDED = 4;
+    private static final byte LIKE_REMOVED = 5;
+    private static final byte USER_CREATED = 6;
+    private static final byte USER_UPDATED = 7;
+    private static final byte FRIEND_ADDED = 8;
+    private static final byte FRIEND_REMOVED = 9;
+    private static final byte USER_REMOVED = 10;
+
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final Path directory;
+    private final Duration snapshotInterval;
+    private final WriteAheadLog wal;
+
+    private final AtomicLong appended = new AtomicLong();
+    private long appendedAtSnapshot = -1;
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    public InMemoryPersistence(@Qualifier("inMemoryFilmStorage") InMemoryFilmStorage filmStorage,
+                               @Qualifier("inMemoryUserStorage") InMemoryUserStorage userStorage,
+                               @Value("${filmorate.in-memory.persistence.dir:./db/in-memory}") Path directory,
+                               @Value("${filmorate.in-memory.persistence.fsync:true}") boolean fsync,
+                               @Value("${filmorate.in-memory.persistence.group-commit-max-batch:1000}") int maxBatch,
+                               @Value("${filmorate.in-memory.persistence.snapshot-interval:10m}")
+                               Duration snapshotInterval) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        this.wal = new WriteAheadLog(directory, fsync, maxBatch);
+    }
+
+    @Override
+    public void start() {
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить хранилища в памяти из " + directory, e);
+        }
+        filmStorage.setJournal(this);
+        userStorage.setJournal(this);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "in-memory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotInterval.toMillis(),
+                snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    // при штатной остановке сохраняется снимок, чтобы следующий запуск не читал журнал
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // после ошибки журнала снимок не сохраняется: в памяти могут быть изменения, не попавшие в журнал
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Снимок хранилищ в памяти при остановке не сохранен: {}", e.getMessage());
+        }
+        close();
+    }
+
+    // закрывает журнал без снимка; после этого изменения хранилищ завершаются ошибкой
+    public void close() {
+        running = false;
+        wal.close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // останавливаемся после веб-сервера, чтобы записать изменения последних запросов
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 1024;
+    }
+
+    public synchronized void snapshot() {
+        if (appendedAtSnapshot == appended.get()) {
+            return;
+        }
+        long started = System.nanoTime();
+        long appendedBefore = appended.get();
+        Capture capture = filmStorage.lockedAll(() -> userStorage.lockedAll(() -> new Capture(wal.rotate(),
+                filmStorage.lastId(), userStorage.lastId(), filmStorage.copies(), userStorage.copies())));
+        long segment = capture.segment.join();
+
+        String name = String.format("%s%020d%s", SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX);
+        Path temporary = directory.resolve(name + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(segment);
+                out.writeInt(capture.lastFilmId);
+                out.writeInt(capture.lastUserId);
+                out.writeInt(capture.films.size());
+                for (Film film : capture.films) {
+                    writeFilm(out, film, true);
+                }
+                out.writeInt(capture.users.size());
+                for (User user : capture.users) {
+                    writeUser(out, user, true);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            for (Path old : snapshots()) {
+                if (snapshotSegment(old) < segment) {
+                    Files.delete(old);
+                }
+            }
+            wal.deleteSegmentsBefore(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сохранить снимок хранилищ в памяти", e);
+        }
+        appendedAtSnapshot = appendedBefore;
+        log.info("Снимок хранилищ в памяти {} сохранен за {} мс: фильмов {}, пользователей {}", name,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), capture.films.size(), capture.users.size());
+    }
+
+    @Override
+    public void checkWritable() {
+        wal.checkWritable();
+    }
+
+    @Override
+    public CompletableFuture<Void> filmCreated(Film film) {
+        return append(FILM_CREATED, out -> writeFilm(out, film, true));
+    }
+
+    // лайки при обновлении не меняются и в запись не попадают
+    @Override
+    public CompletableFuture<Void> filmUpdated(Film film) {
+        return append(FILM_UPDATED, out -> writeFilm(out, film, false));
+    }
+
+    @Override
+    public CompletableFuture<Void> filmRemoved(int filmId) {
+        return append(FILM_REMOVED, out -> out.writeInt(filmId));
+    }
+
+    @Override
+    public CompletableFuture<Void> likeAdded(int filmId, int userId) {
+        return append(LIKE_ADDED, out -> writePair(out, filmId, userId));
+    }
+
+    @Override
+    public CompletableFuture<Void> likeRemoved(int filmId, int userId) {
+        return append(LIKE_REMOVED, out -> writePair(out, filmId, userId));
+    }
+
+    @Override
+    public CompletableFuture<Void> userCreated(User user) {
+        return append(USER_CREATED, out -> writeUser(out, user, true));
+    }
+
+    @Override
+    public CompletableFuture<Void> userUpdated(User user) {
+        return append(USER_UPDATED, out -> writeUser(out, user, false));
+    }
+
+    @Override
+    public CompletableFuture<Void> userRemoved(int userId) {
+        return append(USER_REMOVED, out -> out.writeInt(userId));
+    }
+
+    @Override
+    public CompletableFuture<Void> friendAdded(int userId, int friendId) {
+        return append(FRIEND_ADDED, out -> writePair(out, userId, friendId));
+    }
+
+    @Override
+    public CompletableFuture<Void> friendRemoved(int userId, int friendId) {
+        return append(FRIEND_REMOVED, out -> writePair(out, userId, friendId));
+    }
+
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        filmStorage.deferLikeIndex();
+
+        long replayFrom = 0;
+        List<Path> snapshots = snapshots();
+        if (!snapshots.isEmpty()) {
+            replayFrom = readSnapshot(snapshots.get(snapshots.size() - 1));
+        }
+
+        Toggles likes = new Toggles();
+        Toggles friends = new Toggles();
+        AtomicLong records = new AtomicLong();
+        long lastSegment = WriteAheadLog.replay(directory, replayFrom, record -> {
+            apply(record, likes, friends);
+            records.incrementAndGet();
+        });
+        likes.apply(filmStorage::toggleLikes);
+        friends.apply(userStorage::toggleFriends);
+        filmStorage.rebuildLikeIndex();
+
+        wal.open(Math.max(lastSegment + 1, replayFrom));
+        log.info("Хранилища в памяти восстановлены за {} мс: снимков {}, записей журнала {}, фильмов {}, "
+                        + "пользователей {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                snapshots.isEmpty() ? 0 : 1, records.get(), filmStorage.get().size(), userStorage.get().size());
+    }
+
+    // снимок читается через отображение файла в память, поэтому ограничен 2 ГБ
+    private long readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Снимок " + path + " больше 2 ГБ");
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Файл " + path + " не является снимком хранилищ");
+            }
+            long segment = in.getLong();
+            filmStorage.advanceId(in.getInt());
+            userStorage.advanceId(in.getInt());
+            for (int films = in.getInt(); films > 0; films--) {
+                filmStorage.restore(readFilm(in, true));
+            }
+            for (int users = in.getInt(); users > 0; users--) {
+                userStorage.restore(readUser(in, true));
+            }
+            return segment;
+        }
+    }
+
+    private void apply(ByteBuffer record, Toggles likes, Toggles friends) {
+        byte type = record.get();
+        switch (type) {
+            case FILM_CREATED:
+                filmStorage.restore(readFilm(record, true));
+                break;
+            case FILM_UPDATED:
+                filmStorage.restore(readFilm(record, false));
+                break;
+            case FILM_REMOVED:
+                filmStorage.removeFilm(record.getInt());
+                break;
+            case LIKE_ADDED:
+            case LIKE_REMOVED:
+                likes.add(record.getInt(), record.getInt());
+                break;
+            case USER_CREATED:
+                userStorage.restore(readUser(record, true));
+                break;
+            case USER_UPDATED:
+                userStorage.restore(readUser(record, false));
+                break;
+            case USER_REMOVED:
+                userStorage.restoreRemoval(record.getInt());
+                break;
+            case FRIEND_ADDED:
+            case FRIEND_REMOVED:
+                friends.add(record.getInt(), record.getInt());
+                break;
+            default:
+                throw new IllegalStateException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Снимок хранилищ в памяти не сохранен: {}", e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> append(byte type, RecordBody body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        appended.incrementAndGet();
+        return wal.append(bytes.toByteArray());
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SNAPSHOT_PREFIX)
+                            && path.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long snapshotSegment(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    private static void writeFilm(DataOutput out, Film film, boolean withLikes) throws IOException {
+        out.writeInt(film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        out.writeInt(film.getDuration());
+        out.writeBoolean(film.getMpa() != null);
+        if (film.getMpa() != null) {
+            out.writeInt(film.getMpa().getId());
+            writeString(out, film.getMpa().getName());
+        }
+        writeNamed(out, film.getGenres(), Genre::getId, Genre::getName);
+        writeNamed(out, film.getDirectors(), Director::getId, Director::getName);
+        if (withLikes) {
+            writeIds(out, film.getLikes());
+        }
+    }
+
+    private static Film readFilm(ByteBuffer in, boolean withLikes) {
+        int id = in.getInt();
+        Film film = Film.builder()
+                .name(readString(in))
+                .description(readString(in))
+                .releaseDate(readDate(in))
+                .duration(in.getInt())
+                .mpa(in.get() != 0 ? new MPA(in.getInt(), readString(in)) : null)
+                .genres(readNamed(in, Genre::new))
+                .directors(readNamed(in, Director::new))
+                .likes(withLikes ? readIds(in) : null)
+                .build();
+        film.setId(id);
+        return film;
+    }
+
+    private static void writeUser(DataOutput out, User user, boolean withFriends) throws IOException {
+        out.writeInt(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+        if (withFriends) {
+            writeIds(out, user.getFriends());
+        }
+    }
+
+    private static User readUser(ByteBuffer in, boolean withFriends) {
+        int id = in.getInt();
+        User user = User.builder()
+                .email(readString(in))
+                .login(readString(in))
+                .name(readString(in))
+                .birthday(readDate(in))
+                .friends(withFriends ? readIds(in) : null)
+                .build();
+        user.setId(id);
+        return user;
+    }
+
+    private static void writePair(DataOutput out, int first, int second) throws IOException {
+        out.writeInt(first);
+        out.writeInt(second);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeLong(date == null ? Long.MIN_VALUE : date.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static <T> void writeNamed(DataOutput out, Collection<T> items, Function<T, Integer> id,
+                                       Function<T, String> name) throws IOException {
+        if (items == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(items.size());
+        for (T item : items) {
+            out.writeInt(id.apply(item));
+            writeString(out, name.apply(item));
+        }
+    }
+
+    private static <T> Set<T> readNamed(ByteBuffer in, BiFunctionIntString<T> factory) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        Set<T> items = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            items.add(factory.apply(in.getInt(), readString(in)));
+        }
+        return items;
+    }
+
+    private static void writeIds(DataOutput out, IdSet ids) throws IOException {
+        IdSet values = ids == null ? new IdSet() : ids;
+        out.writeInt(values.size());
+        for (int id : values.toIntArray()) {
+            out.writeInt(id);
+        }
+    }
+
+    private static IdSet readIds(ByteBuffer in) {
+        int[] ids = new int[in.getInt()];
+        in.asIntBuffer().get(ids);
+        in.position(in.position() + ids.length * Integer.BYTES);
+        return IdSet.wrap(ids);
+    }
+
+    @FunctionalInterface
+    private interface RecordBody {
+        void write(DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface BiFunctionIntString<T> {
+        T apply(int id, String name);
+    }
+
+    @RequiredArgsConstructor
+    private static class Capture {
+        private final CompletableFuture<Long> segment;
+        private final int lastFilmId;
+        private final int lastUserId;
+        private final List<Film> films;
+        private final List<User> users;
+    }
+
+    // пары (владелец, идентификатор) из записей журнала; пара с нечетным числом записей переключается
+    private static class Toggles {
+        private long[] pairs = new long[1024];
+        private int size;
+
+        void add(int owner, int id) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size * 2);
+            }
+            pairs[size++] = (long) owner << 32 | (id & 0xFFFFFFFFL);
+        }
+
+        void apply(BiConsumer<Integer, IdSet> toggle) {
+            Arrays.sort(pairs, 0, size);
+            int i = 0;
+            while (i < size) {
+                int owner = (int) (pairs[i] >>> 32);
+                IdSet ids = new IdSet();
+                while (i < size && (int) (pairs[i] >>> 32) == owner) {
+                    int j = i;
+                    while (j < size && pairs[j] == pairs[i]) {
+                        j++;
+                    }
+                    if ((j - i) % 2 == 1) {
+                        ids.add((int) pairs[i]);
+                    }
+                    i = j;
+                }
+                if (!ids.isEmpty()) {
+                    toggle.accept(owner, ids);
+                }
+            }
+        }
+    }
+}
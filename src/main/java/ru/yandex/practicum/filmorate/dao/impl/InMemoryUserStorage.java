@@ -1,24 +1,171 @@
 package ru.yandex.practicum.filmorate.dao.impl;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
 @Component("inMemoryUserStorage")
 public class InMemoryUserStorage extends BaseModelStorage<User> implements UserStorage {
+    private final InMemoryFilmStorage filmStorage;
+    private volatile StorageJournal journal = StorageJournal.NONE;
+
+    public InMemoryUserStorage(@Qualifier("inMemoryFilmStorage") InMemoryFilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    public void setJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    // набор друзей не меняется на месте, а заменяется копией под блокировкой пользователя,
+    // поэтому читатели без блокировки видят либо старый, либо новый набор
+    @Override
+    protected void prepare(User user) {
+        user.setFriends(user.getFriends() == null ? new IdSet() : IdSet.copyOf(user.getFriends()));
+    }
+
+    // друзья меняются только через addFriend и removeFriend, обновление пользователя их не затрагивает
+    @Override
+    protected void merge(User existing, User updated) {
+        updated.setFriends(existing.getFriends());
+    }
+
+    @Override
+    protected void checkWritable() {
+        journal.checkWritable();
+    }
+
+    @Override
+    protected CompletableFuture<Void> created(User user) {
+        return journal.userCreated(user);
+    }
+
+    @Override
+    protected CompletableFuture<Void> updated(User user) {
+        return journal.userUpdated(user);
+    }
+
+    @Override
+    protected CompletableFuture<Void> removed(int userId) {
+        return journal.userRemoved(userId);
+    }
+
     @Override
     public void addFriend(User user, User friend) {
-        user.getFriends().add(friend.getId());
+        await(addFriend(user.getId(), friend.getId()));
+    }
+
+    @Override
+    public List<User> createAll(List<User> users) {
+        users.forEach(this::create);
+        return users;
+    }
+
+    @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(id -> getById(id).isPresent())
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void addFriends(List<Friendship> friendships) {
+        // записи пачки попадают в журнал вместе, ожидание долговечности одно на всю пачку
+        await(CompletableFuture.allOf(friendships.stream()
+                .map(friendship -> addFriend(friendship.getUserId(), friendship.getFriendId()))
+                .toArray(CompletableFuture[]::new)));
     }
 
     @Override
     public void removeFriend(User user, User friend) {
-        user.getFriends().remove(friend.getId());
+        await(removeFriend(user.getId(), friend.getId()));
     }
 
     @Override
-    @Deprecated
+    public Map<Integer, List<Integer>> getFollowerIds(Collection<Integer> userIds) {
+        Map<Integer, List<Integer>> followers = new HashMap<>();
+        IdSet authorIds = IdSet.copyOf(userIds);
+        models().forEach(user -> user.getFriends().intersect(authorIds).forEachInt(friendId ->
+                followers.computeIfAbsent(friendId, id -> new ArrayList<>()).add(user.getId())));
+        return followers;
+    }
+
+    // копии пользователей с текущими наборами друзей для снимка; вызывается под lockedAll
+    List<User> copies() {
+        return models().stream().map(user -> {
+            User copy = User.builder()
+                    .email(user.getEmail())
+                    .login(user.getLogin())
+                    .name(user.getName())
+                    .birthday(user.getBirthday())
+                    .friends(user.getFriends())
+                    .build();
+            copy.setId(user.getId());
+            return copy;
+        }).collect(Collectors.toList());
+    }
+
+    // переключает перечисленных друзей: так применяются дружбы, накопленные при чтении журнала
+    void toggleFriends(int userId, IdSet friendIds) {
+        locked(userId, () -> {
+            getById(userId).ifPresent(stored -> stored.setFriends(stored.getFriends().symmetricDifference(friendIds)));
+            return null;
+        });
+    }
+
+    // удаление повторяет каскад в БД: пропадают лайки пользователя и он сам из друзей других пользователей.
+    // Каждое снятие пишется в журнал отдельной записью, поэтому при восстановлении запись об удалении
+    // убирает только самого пользователя
+    @Override
     public void removeUser(int userId) {
-        throw new UnsupportedOperationException("Реализация метода существует только при работе с БД");
+        if (remove(userId) == null) {
+            return;
+        }
+        filmStorage.removeLikes(userId);
+        List<Integer> followerIds = getFollowerIds(List.of(userId)).getOrDefault(userId, List.of());
+        await(CompletableFuture.allOf(followerIds.stream()
+                .map(followerId -> removeFriend(followerId, userId))
+                .toArray(CompletableFuture[]::new)));
+    }
+
+    // запись об удалении пользователя при чтении журнала: ссылки на него сняты предыдущими записями
+    void restoreRemoval(int userId) {
+        remove(userId);
+    }
+
+    private CompletableFuture<Void> addFriend(int userId, int friendId) {
+        return locked(userId, () -> {
+            checkWritable();
+            User stored = getById(userId).orElse(null);
+            if (stored == null || stored.getFriends().contains(friendId)) {
+                return DURABLE;
+            }
+            stored.setFriends(stored.getFriends().with(friendId));
+            return journal.friendAdded(userId, friendId);
+        });
+    }
+
+    private CompletableFuture<Void> removeFriend(int userId, int friendId) {
+        return locked(userId, () -> {
+            checkWritable();
+            User stored = getById(userId).orElse(null);
+            if (stored == null || !stored.getFriends().contains(friendId)) {
+                return DURABLE;
+            }
+            stored.setFriends(stored.getFriends().without(friendId));
+            return journal.friendRemoved(userId, friendId);
+        });
     }
 }
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+// кэш справочника: отдельные записи по идентификатору и полный список, с ограничением размера и временем жизни
+public class ReferenceDataCache<T> {
+    private static final String ALL = "all";
+
+    private final Cache<Integer, Versioned<T>> byId;
+    private final Cache<String, Versioned<List<T>>> all;
+    // увеличивается при каждом сбросе; значение, загруженное до сброса, но записанное после него,
+    // остается со старой версией и при чтении считается отсутствующим
+    private final AtomicLong version = new AtomicLong();
+
+    public ReferenceDataCache(long maxSize, Duration ttl) {
+        byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        all = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    public List<T> getAll(Supplier<List<T>> loader) {
+        long current = version.get();
+        Versioned<List<T>> cached = all.getIfPresent(ALL);
+        if (cached != null && cached.version >= current) {
+            return cached.value;
+        }
+        List<T> loaded = List.copyOf(loader.get());
+        put(all, ALL, loaded, current);
+        return loaded;
+    }
+
+    // отсутствующие записи не кэшируются, чтобы новая запись справочника была видна сразу
+    public Optional<T> getById(int id, IntFunction<Optional<T>> loader) {
+        long current = version.get();
+        Versioned<T> cached = byId.getIfPresent(id);
+        if (cached != null && cached.version >= current) {
+            return Optional.of(cached.value);
+        }
+        Optional<T> loaded = loader.apply(id);
+        loaded.ifPresent(value -> put(byId, id, value, current));
+        return loaded;
+    }
+
+    public void invalidateAll() {
+        version.incrementAndGet();
+        byId.invalidateAll();
+        all.invalidateAll();
+    }
+
+    // статистика попаданий, промахов и вытеснений публикуется в метриках cache.* с тегом cache
+    public void bindTo(MeterRegistry registry, String name) {
+        CaffeineCacheMetrics.monitor(registry, byId, name + ".byId");
+        CaffeineCacheMetrics.monitor(registry, all, name + ".all");
+    }
+
+    public CacheStats stats() {
+        return byId.stats().plus(all.stats());
+    }
+
+    // версия запоминается до загрузки, поэтому более старая загрузка не затирает более новую
+    private static <K, V> void put(Cache<K, Versioned<V>> cache, K key, V value, long version) {
+        cache.asMap().merge(key, new Versioned<>(value, version),
+                (cached, loaded) -> cached.version > loaded.version ? cached : loaded);
+    }
+
+    private static class Versioned<V> {
+        private final V value;
+        private final long version;
+
+        Versioned(V value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
@@ -3,38 +3,57 @@ package ru.yandex.practicum.filmorate.dao.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.ReviewStorage;
 import ru.yandex.practicum.filmorate.exception.ReviewInsertDataBaseException;
 import ru.yandex.practicum.filmorate.exception.ReviewNotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
+import ru.yandex.practicum.filmorate.model.ReviewVoteResult;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Component("reviewDbStorage")
 @Slf4j
 @RequiredArgsConstructor
 public class ReviewDbStorage implements ReviewStorage {
 
+    // полезность хранится в столбце useful и меняется в одной транзакции с оценками отзыва
+    private static final String REVIEW_COLUMNS = "r.review_id AS reviewId, " +
+            "r.content AS content, " +
+            "r.is_positive AS isPositive, " +
+            "r.creator_user_id AS userId, " +
+            "r.reviewed_film_id AS filmId, " +
+            "r.useful AS useful ";
+
+    // максимальное количество строк в одном запросе IN (...) и в одной пачке batchUpdate
+    private static final int BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     @Override
     public Review getById(long reviewId) {
-        String sqlQuery = "SELECT r.review_id AS reviewId, " +
-                "r.content AS content, " +
-                "r.is_positive AS isPositive, " +
-                "r.creator_user_id AS userId, " +
-                "r.reviewed_film_id AS filmId, " +
-                "COALESCE(SUM(rl.score), 0) AS useful " +
-                "FROM review AS r LEFT JOIN review_like AS rl ON r.review_id = rl.review_id " +
-                "WHERE r.review_id = ? " +
-                "GROUP BY r.review_id, r.content, r.is_positive, r.creator_user_id, r.reviewed_film_id;";
+        String sqlQuery = "SELECT " + REVIEW_COLUMNS +
+                "FROM review AS r " +
+                "WHERE r.review_id = ?;";
 
         final List<Review> reviews = jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeReview(rs), reviewId);
         if (reviews.size() != 1) {
@@ -47,16 +66,11 @@ public class ReviewDbStorage implements ReviewStorage {
 
     @Override
     public List<Review> getReviewsByFilmId(int filmId, int count) {
-        String sqlQuery = "SELECT r.review_id AS reviewId, " +
-                "r.content AS content, " +
-                "r.is_positive AS isPositive, " +
-                "r.creator_user_id AS userId, " +
-                "r.reviewed_film_id AS filmId, " +
-                "COALESCE(SUM(rl.score), 0) AS useful " +
-                "FROM review AS r LEFT JOIN review_like AS rl ON r.review_id = rl.review_id " +
+        // чтение идет по индексу review_film_useful_idx без сортировки
+        String sqlQuery = "SELECT " + REVIEW_COLUMNS +
+                "FROM review AS r " +
                 "WHERE r.reviewed_film_id = ? " +
-                "GROUP BY r.review_id, r.content, r.is_positive, r.creator_user_id, r.reviewed_film_id " +
-                "ORDER BY useful DESC, reviewId " +
+                "ORDER BY r.useful DESC, r.review_id " +
                 "LIMIT ?;";
 
         return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeReview(rs), filmId, count);
@@ -64,15 +78,9 @@ public class ReviewDbStorage implements ReviewStorage {
 
     @Override
     public List<Review> getReviewsByAllFilms(int count) {
-        String sqlQuery = "SELECT r.review_id AS reviewId, " +
-                "r.content AS content, " +
-                "r.is_positive AS isPositive, " +
-                "r.creator_user_id AS userId, " +
-                "r.reviewed_film_id AS filmId, " +
-                "COALESCE(SUM(rl.score), 0) AS useful " +
-                "FROM review AS r LEFT JOIN review_like AS rl ON r.review_id = rl.review_id " +
-                "GROUP BY r.review_id, r.content, r.is_positive, r.creator_user_id, r.reviewed_film_id " +
-                "ORDER BY 6 DESC, 1 " +
+        String sqlQuery = "SELECT " + REVIEW_COLUMNS +
+                "FROM review AS r " +
+                "ORDER BY r.useful DESC, r.review_id " +
                 "LIMIT ?;";
 
         return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeReview(rs), count);
@@ -111,12 +119,81 @@ public class ReviewDbStorage implements ReviewStorage {
     }
 
     @Override
+    @Transactional
     public void likeReview(long reviewId, int userId, int i) {
-        String reviewLikeSqlQuery = "INSERT INTO review_like (review_id, user_id, score) VALUES (?, ?, ?);";
+        // обновление полезности блокирует строку отзыва до конца транзакции, поэтому одновременные оценки
+        // одного отзыва применяются по очереди и разница с прежней оценкой считается верно
+        String usefulSqlQuery = "UPDATE review " +
+                "SET useful = useful + ? - COALESCE((SELECT score FROM review_like WHERE review_id = ? AND user_id = ?), 0) " +
+                "WHERE review_id = ?;";
+        if (jdbcTemplate.update(usefulSqlQuery, i, reviewId, userId, reviewId) == 0) {
+            log.error("Отзыв с ID {} не существует", reviewId);
+            throw new ReviewNotFoundException(String.format("Отзыв с ID %d не существует", reviewId));
+        }
 
+        String reviewLikeSqlQuery = "MERGE INTO review_like (review_id, user_id, score) KEY (review_id, user_id) " +
+                "VALUES (?, ?, ?);";
         jdbcTemplate.update(reviewLikeSqlQuery, reviewId, userId, i);
     }
 
+    @Override
+    @Transactional
+    public ReviewVoteResult voteAll(List<ReviewVote> votes) {
+        // отзыв -> пользователь -> оценка; при повторной оценке в пачке действует последняя.
+        // Отзывы упорядочены, чтобы блокировать их в одном порядке с другими пачками
+        Map<Long, Map<Integer, Integer>> scores = new TreeMap<>();
+        for (ReviewVote vote : votes) {
+            scores.computeIfAbsent(vote.getReviewId(), id -> new LinkedHashMap<>())
+                    .put(vote.getUserId(), vote.getIsPositive() ? 1 : -1);
+        }
+        Set<Long> reviewIds = lockReviews(scores.keySet());
+        Set<Integer> userIds = findUsers(scores.values().stream()
+                .flatMap(reviewScores -> reviewScores.keySet().stream())
+                .collect(Collectors.toSet()));
+        scores.keySet().retainAll(reviewIds);
+        scores.values().forEach(reviewScores -> reviewScores.keySet().retainAll(userIds));
+
+        List<Object[]> pairs = new ArrayList<>();
+        scores.forEach((reviewId, reviewScores) ->
+                reviewScores.keySet().forEach(userId -> pairs.add(new Object[]{reviewId, userId})));
+        Map<Long, Integer> deltas = new TreeMap<>();
+        scores.forEach((reviewId, reviewScores) ->
+                deltas.put(reviewId, reviewScores.values().stream().mapToInt(Integer::intValue).sum()));
+        // условие по review_id позволяет искать оценки по первичному ключу, а не сравнивать каждую строку с парами
+        String oldScoresSqlQuery = "SELECT review_id, user_id, score FROM review_like " +
+                "WHERE review_id IN (:reviewIds) AND (review_id, user_id) IN (:pairs);";
+        for (int from = 0; from < pairs.size(); from += BATCH_SIZE) {
+            List<Object[]> chunk = pairs.subList(from, Math.min(from + BATCH_SIZE, pairs.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource("pairs", chunk)
+                    .addValue("reviewIds", chunk.stream().map(pair -> pair[0]).distinct().collect(Collectors.toList()));
+            namedParameterJdbcTemplate.query(oldScoresSqlQuery, params, rs -> {
+                deltas.merge(rs.getLong("review_id"), -rs.getInt("score"), Integer::sum);
+            });
+        }
+
+        String reviewLikeSqlQuery = "MERGE INTO review_like (review_id, user_id, score) KEY (review_id, user_id) " +
+                "VALUES (?, ?, ?);";
+        jdbcTemplate.batchUpdate(reviewLikeSqlQuery, pairs, BATCH_SIZE, (stmt, pair) -> {
+            long reviewId = (Long) pair[0];
+            int userId = (Integer) pair[1];
+            stmt.setLong(1, reviewId);
+            stmt.setInt(2, userId);
+            stmt.setInt(3, scores.get(reviewId).get(userId));
+        });
+
+        String usefulSqlQuery = "UPDATE review SET useful = useful + ? WHERE review_id = ?;";
+        List<Map.Entry<Long, Integer>> changed = deltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(usefulSqlQuery, changed, BATCH_SIZE, (stmt, delta) -> {
+            stmt.setInt(1, delta.getValue());
+            stmt.setLong(2, delta.getKey());
+        });
+
+        log.info("Применено оценок отзывов: {}, пропущено: {}", pairs.size(), votes.size() - pairs.size());
+        return new ReviewVoteResult(pairs.size(), votes.size() - pairs.size());
+    }
+
     @Override
     public void removeReview(long reviewId) {
         String reviewSqlQuery = "DELETE FROM review WHERE review_id = ?;";
@@ -125,10 +202,45 @@ public class ReviewDbStorage implements ReviewStorage {
     }
 
     @Override
+    @Transactional
     public void removeLike(long reviewId, int userId, int i) {
         String removeLikeSqlQuery = "DELETE FROM review_like WHERE review_id =? AND user_id = ? AND score = ?;";
 
-        jdbcTemplate.update(removeLikeSqlQuery, reviewId, userId, i);
+        int deletedRowsCount = jdbcTemplate.update(removeLikeSqlQuery, reviewId, userId, i);
+        if (deletedRowsCount > 0) {
+            updateUseful(reviewId, -i);
+        }
+    }
+
+    private void updateUseful(long reviewId, int delta) {
+        String usefulSqlQuery = "UPDATE review SET useful = useful + ? WHERE review_id = ?;";
+
+        jdbcTemplate.update(usefulSqlQuery, delta, reviewId);
+    }
+
+    // блокирует существующие отзывы до конца транзакции, чтобы их оценки не менялись параллельно
+    private Set<Long> lockReviews(Collection<Long> ids) {
+        String sqlQuery = "SELECT review_id FROM review WHERE review_id IN (:reviewIds) ORDER BY review_id FOR UPDATE;";
+        List<Long> reviewIds = new ArrayList<>(ids);
+        Set<Long> existing = new HashSet<>();
+        for (int from = 0; from < reviewIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = reviewIds.subList(from, Math.min(from + BATCH_SIZE, reviewIds.size()));
+            existing.addAll(namedParameterJdbcTemplate.queryForList(sqlQuery,
+                    new MapSqlParameterSource("reviewIds", chunk), Long.class));
+        }
+        return existing;
+    }
+
+    private Set<Integer> findUsers(Collection<Integer> ids) {
+        String sqlQuery = "SELECT user_id FROM filmorate_user WHERE user_id IN (:userIds);";
+        List<Integer> userIds = new ArrayList<>(ids);
+        Set<Integer> existing = new HashSet<>();
+        for (int from = 0; from < userIds.size(); from += BATCH_SIZE) {
+            List<Integer> chunk = userIds.subList(from, Math.min(from + BATCH_SIZE, userIds.size()));
+            existing.addAll(namedParameterJdbcTemplate.queryForList(sqlQuery,
+                    new MapSqlParameterSource("userIds", chunk), Integer.class));
+        }
+        return existing;
     }
 
     private Review makeReview(ResultSet rs) throws SQLException {
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.concurrent.CompletableFuture;
+
+// Журнал изменений хранилищ в памяти. Методы вызываются под блокировкой изменяемой модели, поэтому порядок записей
+// одной модели совпадает с порядком изменений. Возвращаемая запись завершается, когда изменение стало долговечным
+public interface StorageJournal {
+    StorageJournal NONE = new StorageJournal() {
+    };
+
+    // бросает исключение, если журнал больше не принимает записи; хранилища проверяют это до изменения
+    default void checkWritable() {
+    }
+
+    default CompletableFuture<Void> filmCreated(Film film) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    default CompletableFuture<Void> filmUpdated(Film film) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    default CompletableFuture<Void> filmRemoved(int filmId) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    // лайки и друзья записываются, только если действительно изменились
+    default CompletableFuture<Void> likeAdded(int filmId, int userId) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    default CompletableFuture<Void> likeRemoved(int filmId, int userId) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    default CompletableFuture<Void> userCreated(User user) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    default CompletableFuture<Void> userUpdated(User user) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    default CompletableFuture<Void> userRemoved(int userId) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    default CompletableFuture<Void> friendAdded(int userId, int friendId) {
+        return BaseModelStorage.DURABLE;
+    }
+
+    default CompletableFuture<Void> friendRemoved(int userId, int friendId) {
+        return BaseModelStorage.DURABLE;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.TimelineStorage;
+import ru.yandex.practicum.filmorate.model.TimelineEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Component("timelineDbStorage")
+@Slf4j
+@RequiredArgsConstructor
+public class TimelineDbStorage implements TimelineStorage {
+    private static final int CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Override
+    public void stream(Consumer<TimelineEntry> consumer) {
+        // удаление из друзей могло не успеть сохраниться, поэтому записи сверяются с текущими друзьями
+        String sqlQuery =
+                "SELECT t.user_id, t.event_id, t.author_id " +
+                        "FROM timeline AS t " +
+                        "JOIN friend AS f ON f.user_id = t.user_id AND f.friend_user_id = t.author_id " +
+                        "ORDER BY t.user_id, t.event_id";
+
+        jdbcTemplate.query(sqlQuery, rs -> {
+            consumer.accept(new TimelineEntry(rs.getInt("user_id"), rs.getInt("event_id"), rs.getInt("author_id")));
+        });
+    }
+
+    // БД, в которой отметки еще нет, продолжает с последнего события в сохраненных лентах
+    @Override
+    public int getLastEventId() {
+        String sqlQuery =
+                "SELECT COALESCE((SELECT last_event_id FROM timeline_state WHERE state_id = 1), " +
+                        "(SELECT MAX(event_id) FROM timeline), 0)";
+
+        return jdbcTemplate.queryForObject(sqlQuery, Integer.class);
+    }
+
+    @Override
+    @Transactional
+    public void replace(Collection<Integer> userIds, List<TimelineEntry> entries, int lastEventId) {
+        String deleteSqlQuery =
+                "DELETE FROM timeline " +
+                        "WHERE user_id IN (:userIds)";
+        List<Integer> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+            namedParameterJdbcTemplate.update(deleteSqlQuery, new MapSqlParameterSource("userIds", chunk));
+        }
+
+        // пользователи и события, удаленные после рассылки, пропускаются, чтобы не нарушить внешние ключи
+        String insertSqlQuery =
+                "INSERT INTO timeline (user_id, event_id, author_id) " +
+                        "SELECT u.user_id, e.event_id, ? " +
+                        "FROM filmorate_user AS u, event AS e " +
+                        "WHERE u.user_id = ? AND e.event_id = ?";
+        jdbcTemplate.batchUpdate(insertSqlQuery, entries, CHUNK_SIZE, (stmt, entry) -> {
+            stmt.setInt(1, entry.getAuthorId());
+            stmt.setInt(2, entry.getUserId());
+            stmt.setInt(3, entry.getEventId());
+        });
+
+        String stateSqlQuery =
+                "MERGE INTO timeline_state (state_id, last_event_id) KEY (state_id) " +
+                        "VALUES (1, ?)";
+        jdbcTemplate.update(stateSqlQuery, lastEventId);
+        log.debug("Сохранены ленты друзей {} пользователей, записей: {}", ids.size(), entries.size());
+    }
+}
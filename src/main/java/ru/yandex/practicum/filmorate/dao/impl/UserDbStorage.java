@@ -2,34 +2,93 @@ package ru.yandex.practicum.filmorate.dao.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component("userDbStorage")
 @Slf4j
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
+    private static final int BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     @Override
     public List<User> get() {
         String sqlQuery =
                 "SELECT * " +
-                        "FROM filmorate_user ";
+                        "FROM filmorate_user " +
+                        "ORDER BY user_id";
 
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeUser(rs));
+        List<User> users = jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeUser(rs));
+        loadAllFriends(users);
+        return users;
+    }
+
+    @Override
+    public List<User> getPage(int afterId, int limit) {
+        String sqlQuery =
+                "SELECT * " +
+                        "FROM filmorate_user " +
+                        "WHERE user_id > ? " +
+                        "ORDER BY user_id " +
+                        "LIMIT ?";
+
+        List<User> users = jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeUser(rs), afterId, limit);
+        if (!users.isEmpty()) {
+            loadFriends(users, new MapSqlParameterSource("userIds", new ArrayList<>(mapById(users).keySet())));
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> getByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlQuery =
+                "SELECT * " +
+                        "FROM filmorate_user " +
+                        "WHERE user_id IN (:userIds) " +
+                        "ORDER BY user_id";
+        // идентификаторы сортируются, чтобы пачки шли по возрастанию и результат оставался упорядоченным
+        List<Integer> idList = ids.stream().distinct().sorted().collect(Collectors.toList());
+        List<User> users = new ArrayList<>();
+        for (int from = 0; from < idList.size(); from += BATCH_SIZE) {
+            List<Integer> chunk = idList.subList(from, Math.min(from + BATCH_SIZE, idList.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource("userIds", chunk);
+            List<User> chunkUsers = namedParameterJdbcTemplate.query(sqlQuery, params, (rs, rowNum) -> makeUser(rs));
+            loadFriends(chunkUsers, params);
+            users.addAll(chunkUsers);
+        }
+        return users;
     }
 
     @Override
@@ -39,6 +98,7 @@ public class UserDbStorage implements UserStorage {
                         "FROM filmorate_user " +
                         "WHERE user_id = ?";
         List<User> users = jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeUser(rs), id);
+        users.forEach(user -> user.setFriends(getFriendsByUserId(user.getId())));
 
         // обрабатываем результат выполнения запроса
         if (users.isEmpty()) {
@@ -77,6 +137,65 @@ public class UserDbStorage implements UserStorage {
         return createdUser;
     }
 
+    @Override
+    @Transactional
+    public List<User> createAll(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        String userSqlQuery =
+                "INSERT INTO filmorate_user (email, login, name, birth_dt) " +
+                        "VALUES (?, ?, ?, ?)";
+        jdbcTemplate.execute(connection -> connection.prepareStatement(userSqlQuery, new String[]{"user_id"}),
+                (PreparedStatementCallback<Void>) stmt -> {
+                    for (User user : users) {
+                        stmt.setString(1, user.getEmail());
+                        stmt.setString(2, user.getLogin());
+                        stmt.setString(3, user.getName());
+                        stmt.setDate(4, Date.valueOf(user.getBirthday()));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+
+                    // ключи возвращаются в порядке строк пачки; при несовпадении числа ключей пачка откатывается
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        int count = 0;
+                        while (keys.next()) {
+                            if (count < users.size()) {
+                                users.get(count).setId(keys.getInt(1));
+                            }
+                            count++;
+                        }
+                        if (count != users.size()) {
+                            throw new DataRetrievalFailureException(String.format(
+                                    "Получено ключей %d для %d пользователей", count, users.size()));
+                        }
+                    }
+                    return null;
+                });
+        users.forEach(user -> user.setFriends(new IdSet()));
+
+        log.info("В базу данных добавлено пользователей: {}", users.size());
+        return users;
+    }
+
+    @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        Set<Integer> existingIds = new HashSet<>();
+        List<Integer> idList = new ArrayList<>(ids);
+        String sqlQuery =
+                "SELECT user_id " +
+                        "FROM filmorate_user " +
+                        "WHERE user_id IN (:userIds)";
+        for (int from = 0; from < idList.size(); from += BATCH_SIZE) {
+            List<Integer> chunk = idList.subList(from, Math.min(from + BATCH_SIZE, idList.size()));
+            namedParameterJdbcTemplate.query(sqlQuery, new MapSqlParameterSource("userIds", chunk), rs -> {
+                existingIds.add(rs.getInt("user_id"));
+            });
+        }
+        return existingIds;
+    }
+
     @Override
     public Optional<User> update(User user) {
         String userSqlQuery =
@@ -109,6 +228,18 @@ public class UserDbStorage implements UserStorage {
         jdbcTemplate.update(sqlQuery, user.getId(), friend.getId());
     }
 
+    @Override
+    @Transactional
+    public void addFriends(List<Friendship> friendships) {
+        String sqlQuery =
+                "MERGE INTO friend (user_id, friend_user_id) " +
+                        "VALUES (?, ?)";
+        jdbcTemplate.batchUpdate(sqlQuery, friendships, BATCH_SIZE, (stmt, friendship) -> {
+            stmt.setInt(1, friendship.getUserId());
+            stmt.setInt(2, friendship.getFriendId());
+        });
+    }
+
     @Override
     public void removeFriend(User user, User friend) {
         String sqlQuery =
@@ -118,7 +249,41 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    public Map<Integer, List<Integer>> getFollowerIds(Collection<Integer> userIds) {
+        Map<Integer, List<Integer>> followers = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return followers;
+        }
+        String sqlQuery =
+                "SELECT user_id, friend_user_id " +
+                        "FROM friend " +
+                        "WHERE friend_user_id IN (:userIds)";
+
+        namedParameterJdbcTemplate.query(sqlQuery, new MapSqlParameterSource("userIds", userIds), rs -> {
+            followers.computeIfAbsent(rs.getInt("friend_user_id"), id -> new ArrayList<>())
+                    .add(rs.getInt("user_id"));
+        });
+        return followers;
+    }
+
+    @Override
+    @Transactional
     public void removeUser(int userId) {
+        // лайки пользователя удаляются каскадно, поэтому счетчики фильмов уменьшаются заранее
+        String likeCountSqlQuery =
+                "UPDATE film " +
+                        "SET like_count = like_count - 1 " +
+                        "WHERE film_id IN (SELECT film_id FROM film_like WHERE user_id = ?)";
+        jdbcTemplate.update(likeCountSqlQuery, userId);
+
+        // так же заранее снимаются оценки пользователя с полезности отзывов
+        String usefulSqlQuery =
+                "UPDATE review AS r " +
+                        "SET useful = useful - (SELECT rl.score FROM review_like AS rl " +
+                        "WHERE rl.review_id = r.review_id AND rl.user_id = ?) " +
+                        "WHERE review_id IN (SELECT review_id FROM review_like WHERE user_id = ?)";
+        jdbcTemplate.update(usefulSqlQuery, userId, userId);
+
         String sqlQuery =
                 "DELETE FROM filmorate_user " +
                         "WHERE user_id = ?";
@@ -132,18 +297,62 @@ public class UserDbStorage implements UserStorage {
                 .email(rs.getString("email"))
                 .login(rs.getString("login"))
                 .birthday(rs.getDate("birth_dt").toLocalDate())
-                .friends(getFriendsByUserId(userId))
+                .friends(new IdSet())
                 .build();
         user.setId(userId);
         return user;
     }
 
-    private HashSet<Integer> getFriendsByUserId(int userId) {
+    private void loadAllFriends(List<User> users) {
+        String sqlQuery =
+                "SELECT user_id, friend_user_id " +
+                        "FROM friend " +
+                        "ORDER BY user_id, friend_user_id";
+
+        Map<Integer, User> usersById = mapById(users);
+        jdbcTemplate.query(sqlQuery, rs -> {
+            addFriend(usersById, rs);
+        });
+    }
+
+    // друзья загружаются одним запросом для всей выборки пользователей
+    private void loadFriends(List<User> users, MapSqlParameterSource params) {
+        String sqlQuery =
+                "SELECT user_id, friend_user_id " +
+                        "FROM friend " +
+                        "WHERE user_id IN (:userIds) " +
+                        "ORDER BY user_id, friend_user_id";
+
+        Map<Integer, User> usersById = mapById(users);
+        namedParameterJdbcTemplate.query(sqlQuery, params, rs -> {
+            addFriend(usersById, rs);
+        });
+    }
+
+    private Map<Integer, User> mapById(List<User> users) {
+        Map<Integer, User> usersById = new LinkedHashMap<>();
+        users.forEach(user -> usersById.put(user.getId(), user));
+        return usersById;
+    }
+
+    private void addFriend(Map<Integer, User> usersById, ResultSet rs) throws SQLException {
+        User user = usersById.get(rs.getInt("user_id"));
+        if (user != null) {
+            user.getFriends().add(rs.getInt("friend_user_id"));
+        }
+    }
+
+    // идентификаторы читаются по возрастанию и добавляются в конец массива без сдвигов
+    private IdSet getFriendsByUserId(int userId) {
         String sql =
                 "SELECT friend_user_id " +
                         "FROM friend " +
-                        "WHERE user_id = ?";
-        List<Integer> friends = jdbcTemplate.queryForList(sql, Integer.class, userId);
-        return new HashSet<>(friends);
+                        "WHERE user_id = ? " +
+                        "ORDER BY friend_user_id";
+        IdSet friends = new IdSet();
+        jdbcTemplate.query(sql, rs -> {
+            friends.add(rs.getInt("friend_user_id"));
+        }, userId);
+        return friends;
     }
 }
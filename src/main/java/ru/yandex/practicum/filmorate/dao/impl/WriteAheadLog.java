@@ -0,0 +1,322 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал упреждающей записи из пронумерованных сегментов wal-<номер>.log. Запись: длина, CRC32 и тело.
+// Групповая фиксация: записи ставятся в очередь, один поток пишет в файл все накопившиеся записи
+// и делает один fsync на пачку, после чего завершает их ожидания. Пока идет fsync, очередь копит следующую пачку.
+// Оборванная при падении последняя запись отбрасывается при чтении по длине или контрольной сумме,
+// нулевая длина (хвост файла, заполненный нулями) означает конец сегмента.
+// При ошибке записи сегмент обрезается до последней зафиксированной пачки, и журнал перестает принимать записи:
+// хранилища после этого работают только на чтение до перезапуска
+@Slf4j
+public class WriteAheadLog implements AutoCloseable {
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final long POLL_MILLIS = 100;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final int maxBatch;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private final CRC32 crc = new CRC32();
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile boolean running;
+    private Thread writerThread;
+    private FileChannel channel;
+    private long segment;
+    // размер текущего сегмента после последней успешной фиксации
+    private long committedSize;
+    private volatile IOException failure;
+
+    public WriteAheadLog(Path directory, boolean fsync, int maxBatch) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.maxBatch = maxBatch;
+    }
+
+    // номера сегментов в каталоге по возрастанию
+    public static List<Long> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // передает тела записей сегментов начиная с fromSegment; возвращает номер последнего сегмента или -1
+    public static long replay(Path directory, long fromSegment, Consumer<ByteBuffer> consumer) throws IOException {
+        long last = -1;
+        CRC32 crc = new CRC32();
+        for (long number : segments(directory)) {
+            last = number;
+            if (number < fromSegment) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, number), StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (mapped.remaining() >= HEADER_BYTES) {
+                    int length = mapped.getInt();
+                    int checksum = mapped.getInt();
+                    if (length == 0) {
+                        // пустых записей не бывает: дальше только нули, недописанные при падении
+                        break;
+                    }
+                    if (length < 0 || length > mapped.remaining()) {
+                        log.warn("Сегмент журнала {} оборван на позиции {}", number, mapped.position() - HEADER_BYTES);
+                        break;
+                    }
+                    ByteBuffer body = mapped.slice();
+                    body.limit(length);
+                    crc.reset();
+                    crc.update(body.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        log.warn("Контрольная сумма записи сегмента {} не совпала на позиции {}",
+                                number, mapped.position() - HEADER_BYTES);
+                        break;
+                    }
+                    consumer.accept(body);
+                    mapped.position(mapped.position() + length);
+                }
+            }
+        }
+        return last;
+    }
+
+    // начинает запись в новый сегмент с номером segment
+    public void open(long segment) throws IOException {
+        Files.createDirectories(directory);
+        this.segment = segment;
+        channel = openSegment(segment);
+        committedSize = channel.size();
+        running = true;
+        writerThread = new Thread(this::writeLoop, "wal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // завершается, когда запись записана (и при включенном fsync сброшена на диск)
+    public CompletableFuture<Void> append(byte[] record) {
+        Entry entry = new Entry(record);
+        if (!running || failure != null) {
+            entry.commit.completeExceptionally(rejection());
+            return entry.commit;
+        }
+        queue.add(entry);
+        return entry.commit;
+    }
+
+    // переключает запись на следующий сегмент: все записи, добавленные до вызова, остаются в прежних сегментах.
+    // Возвращает номер нового сегмента
+    public CompletableFuture<Long> rotate() {
+        Entry entry = new Entry(null);
+        CompletableFuture<Long> rotated = entry.commit.thenApply(ignored -> entry.rotatedTo);
+        if (!running || failure != null) {
+            entry.commit.completeExceptionally(rejection());
+            return rotated;
+        }
+        queue.add(entry);
+        return rotated;
+    }
+
+    // вызывается хранилищами перед изменением, чтобы после ошибки записи не менять состояние без журнала
+    public void checkWritable() {
+        if (failure != null) {
+            throw rejection();
+        }
+    }
+
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (long number : segments(directory)) {
+            if (number < segment) {
+                Files.deleteIfExists(segmentPath(directory, number));
+            }
+        }
+    }
+
+    // дописывает очередь и закрывает текущий сегмент
+    @Override
+    public void close() {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // записи, добавленные одновременно с закрытием, уже не будут записаны
+        List<Entry> rejected = new ArrayList<>();
+        queue.drainTo(rejected);
+        rejected.forEach(entry -> entry.commit.completeExceptionally(rejection()));
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия сегмента журнала {}: {}", segment, e.getMessage());
+        }
+        log.info("Журнал закрыт: записей {}, пачек {}", records.get(), batches.get());
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        if (failure != null) {
+            batch.forEach(entry -> entry.commit.completeExceptionally(rejection()));
+            return;
+        }
+        // записи пачки, еще не сброшенные на диск
+        List<Entry> pending = new ArrayList<>(batch.size());
+        try {
+            for (Entry entry : batch) {
+                if (entry.record == null) {
+                    commit(pending);
+                    channel.close();
+                    channel = openSegment(++segment);
+                    committedSize = 0;
+                    entry.rotatedTo = segment;
+                    entry.commit.complete(null);
+                    continue;
+                }
+                put(entry.record);
+                pending.add(entry);
+            }
+            commit(pending);
+            batches.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            fail(e instanceof IOException ? (IOException) e : new IOException(e));
+            batch.stream()
+                    .filter(entry -> !entry.commit.isDone())
+                    .forEach(entry -> entry.commit.completeExceptionally(new UncheckedIOException(failure)));
+        }
+    }
+
+    // недописанная пачка отрезается, чтобы следующий запуск не принял ее хвост за оборванную последнюю запись
+    // и прочитал все зафиксированные записи до нее
+    private void fail(IOException e) {
+        log.error("Ошибка записи в журнал, сегмент {}; журнал остановлен: {}", segment, e.getMessage());
+        failure = e;
+        buffer.clear();
+        try {
+            if (channel.isOpen()) {
+                channel.truncate(committedSize);
+                channel.force(false);
+            }
+        } catch (IOException truncateError) {
+            log.error("Не удалось обрезать сегмент журнала {} до {} байт: {}", segment, committedSize,
+                    truncateError.getMessage());
+        }
+    }
+
+    private IllegalStateException rejection() {
+        return failure != null
+                ? new IllegalStateException("Журнал остановлен после ошибки записи", failure)
+                : new IllegalStateException("Журнал закрыт");
+    }
+
+    private void put(byte[] record) throws IOException {
+        crc.reset();
+        crc.update(record);
+        if (buffer.remaining() < HEADER_BYTES + record.length) {
+            flush();
+        }
+        if (buffer.remaining() < HEADER_BYTES + record.length) {
+            // запись больше буфера пишется напрямую
+            ByteBuffer large = ByteBuffer.allocate(HEADER_BYTES + record.length);
+            large.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+            while (large.hasRemaining()) {
+                channel.write(large);
+            }
+            return;
+        }
+        buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+    }
+
+    private void commit(List<Entry> pending) throws IOException {
+        flush();
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        committedSize = channel.size();
+        records.addAndGet(pending.size());
+        pending.forEach(entry -> entry.commit.complete(null));
+        pending.clear();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // в тестах переопределяется, чтобы имитировать ошибки записи
+    FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, number, SUFFIX));
+    }
+
+    private static class Entry {
+        // null - отметка о переключении сегмента
+        private final byte[] record;
+        private final CompletableFuture<Void> commit = new CompletableFuture<>();
+        private long rotatedTo;
+
+        private Entry(byte[] record) {
+            this.record = record;
+        }
+    }
+}
@@ -4,7 +4,8 @@ import org.springframework.core.convert.converter.Converter;
 
 public enum SearchCategoryType {
     TITLE,
-    DIRECTOR;
+    DIRECTOR,
+    DESCRIPTION;
 
     public static class StringToEnumConverter implements Converter<String, SearchCategoryType> {
         @Override
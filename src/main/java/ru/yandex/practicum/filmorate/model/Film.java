@@ -29,7 +29,9 @@ public class Film extends BaseModel {
     @Positive
     private int duration;
     @JsonIgnore
-    private Set<Integer> likes;
+    private IdSet likes;
+    @JsonIgnore
+    private int likeCount;
     private Set<Genre> genres;
     private MPA mpa;
     private Set<Director> directors;
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Friendship {
+
+    @NotNull(message = "friendship notnull")
+    private Integer userId;  //идентификатор пользователя
+    @NotNull(message = "friendship notnull")
+    private Integer friendId;  //идентификатор добавляемого в друзья
+}
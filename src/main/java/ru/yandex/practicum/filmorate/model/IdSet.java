@@ -0,0 +1,253 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Множество идентификаторов в отсортированном массиве int: 4 байта на элемент вместо ~50 у HashSet<Integer>.
+// Проверка вхождения - двоичный поиск, пересечение и объединение - слиянием отсортированных массивов.
+// Идентификаторы из БД обычно приходят по возрастанию, поэтому добавление в конец не сдвигает массив
+public class IdSet extends AbstractSet<Integer> {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ids;
+    private int size;
+
+    public IdSet() {
+        this(EMPTY, 0);
+    }
+
+    private IdSet(int[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    // массив вызывающего копируется: изменения в нем не затрагивают множество
+    public static IdSet of(int... ids) {
+        return wrap(ids.clone());
+    }
+
+    // множество забирает массив себе, и вызывающий больше не должен его менять; уже отсортированный массив
+    // без повторов (например, прочитанный из снимка) используется без копирования
+    public static IdSet wrap(int[] ids) {
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i - 1] >= ids[i]) {
+                int[] sorted = IntStream.of(ids).sorted().distinct().toArray();
+                return new IdSet(sorted, sorted.length);
+            }
+        }
+        return new IdSet(ids, ids.length);
+    }
+
+    public static IdSet copyOf(Collection<Integer> ids) {
+        if (ids instanceof IdSet) {
+            IdSet other = (IdSet) ids;
+            return new IdSet(Arrays.copyOf(other.ids, other.size), other.size);
+        }
+        return wrap(ids.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    public boolean add(int id) {
+        if (size == 0 || ids[size - 1] < id) {
+            grow();
+            ids[size++] = id;
+            return true;
+        }
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        grow();
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        ids[position] = id;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean add(Integer id) {
+        return add(id.intValue());
+    }
+
+    public boolean remove(int id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position < 0) {
+            return false;
+        }
+        removeAt(position);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && remove(((Integer) o).intValue());
+    }
+
+    @Override
+    public void clear() {
+        ids = EMPTY;
+        size = 0;
+    }
+
+    // копия с добавленным идентификатором: для хранилищ, которые заменяют множество целиком,
+    // а не меняют его на месте под читателями
+    public IdSet with(int id) {
+        if (contains(id)) {
+            return this;
+        }
+        IdSet copy = new IdSet(Arrays.copyOf(ids, size + 1), size);
+        copy.add(id);
+        return copy;
+    }
+
+    public IdSet without(int id) {
+        if (!contains(id)) {
+            return this;
+        }
+        IdSet copy = new IdSet(Arrays.copyOf(ids, size), size);
+        copy.remove(id);
+        return copy;
+    }
+
+    public IdSet intersect(IdSet other) {
+        IdSet smaller = size <= other.size ? this : other;
+        IdSet larger = smaller == this ? other : this;
+        int[] result = new int[smaller.size];
+        int count = 0;
+        // при сильной разнице в размерах двоичный поиск по большему множеству дешевле слияния
+        if (smaller.size * 32 < larger.size) {
+            for (int i = 0; i < smaller.size; i++) {
+                if (larger.contains(smaller.ids[i])) {
+                    result[count++] = smaller.ids[i];
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < smaller.size && j < larger.size) {
+                if (smaller.ids[i] < larger.ids[j]) {
+                    i++;
+                } else if (smaller.ids[i] > larger.ids[j]) {
+                    j++;
+                } else {
+                    result[count++] = smaller.ids[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return new IdSet(result, count);
+    }
+
+    public IdSet union(IdSet other) {
+        int[] result = new int[size + other.size];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || i < size && ids[i] < other.ids[j]) {
+                result[count++] = ids[i++];
+            } else if (i == size || other.ids[j] < ids[i]) {
+                result[count++] = other.ids[j++];
+            } else {
+                result[count++] = ids[i++];
+                j++;
+            }
+        }
+        return new IdSet(result, count);
+    }
+
+    // идентификаторы ровно одного из множеств: переключает в этом множестве все идентификаторы другого
+    public IdSet symmetricDifference(IdSet other) {
+        int[] result = new int[size + other.size];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || i < size && ids[i] < other.ids[j]) {
+                result[count++] = ids[i++];
+            } else if (i == size || other.ids[j] < ids[i]) {
+                result[count++] = other.ids[j++];
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return new IdSet(result, count);
+    }
+
+    public void forEachInt(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(ids[i]);
+        }
+    }
+
+    public IntStream intStream() {
+        return Arrays.stream(ids, 0, size);
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private boolean removable;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Integer next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                removable = true;
+                return ids[next++];
+            }
+
+            @Override
+            public void remove() {
+                if (!removable) {
+                    throw new IllegalStateException();
+                }
+                removeAt(--next);
+                removable = false;
+            }
+        };
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+    }
+
+    private void grow() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewVote {
+
+    @NotNull(message = "review notnull")
+    private Long reviewId;  //идентификатор отзыва
+    @NotNull(message = "review notnull")
+    private Integer userId;  //идентификатор оценившего пользователя
+    @NotNull(message = "review notnull")
+    @JsonProperty("isPositive")
+    private Boolean isPositive;  //лайк или дизлайк
+}
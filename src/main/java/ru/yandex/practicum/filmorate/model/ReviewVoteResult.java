@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ReviewVoteResult {
+
+    private int applied;  //количество примененных оценок
+    private int skipped;  //повторы в пачке и оценки несуществующих отзывов или пользователей
+}
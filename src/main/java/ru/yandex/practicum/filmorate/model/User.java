@@ -9,7 +9,6 @@ import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Past;
 import java.time.LocalDate;
-import java.util.Set;
 
 @Data
 @Builder
@@ -28,6 +27,6 @@ public class User extends BaseModel {
     @Past
     private LocalDate birthday;
     @JsonIgnore
-    private Set<Integer> friends;
+    private IdSet friends;
 }
 
@@ -13,9 +13,13 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class DirectorService {
-    @Qualifier("directorDbStorage")
+    @Qualifier("cachedDirectorStorage")
     @NonNull
     private final DirectorStorage directorStorage;
+    @NonNull
+    private final PopularFilmsIndex popularFilmsIndex;
+    @NonNull
+    private final FilmSearchIndex filmSearchIndex;
 
     public List<Director> get() {
         return directorStorage.get();
@@ -31,11 +35,16 @@ public class DirectorService {
 
     public Director update(Director director) {
         getIfDirectorExists(director.getId());
-        return directorStorage.udpate(director).get();
+        Director updatedDirector = directorStorage.udpate(director).get();
+        popularFilmsIndex.updateDirector(updatedDirector);
+        filmSearchIndex.updateDirector(updatedDirector);
+        return updatedDirector;
     }
 
     public void delete(int id) {
         directorStorage.delete(id);
+        popularFilmsIndex.removeDirector(id);
+        filmSearchIndex.removeDirector(id);
     }
 
     public Director getIfDirectorExists(int id) {
@@ -7,25 +7,73 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.EventStorage;
 import ru.yandex.practicum.filmorate.enums.ActionType;
+import ru.yandex.practicum.filmorate.exception.UserValidationException;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.enums.EventType;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EventService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     @Qualifier("eventDbStorage")
     @NonNull
     private final EventStorage eventStorage;
+    @NonNull
+    private final EventWriter eventWriter;
+    @NonNull
+    private final FriendsTimeline friendsTimeline;
+    @NonNull
+    private final ValidateService validateService;
 
     public List<Event> findByUserId(int userId) {
+        eventWriter.flush(userId);
         return eventStorage.getByUserId(userId);
     }
 
-    public Event createEvent(int userId, ActionType actionType, EventType eventType, long entityId) {
-        return eventStorage.create(userId, eventType, actionType, entityId);
+    public void streamByUserId(int userId, Long since, Long before, Integer limit, Consumer<Event> consumer) {
+        validateService.validateFeedPage(since, before, limit);
+        eventWriter.flush(userId);
+        eventStorage.streamByUserId(userId, since, before, limit == null ? null : Math.min(limit, MAX_PAGE_SIZE),
+                consumer);
+    }
+
+    // страница ленты друзей от новых событий к старым, читается из буфера ленты без обхода событий всех друзей
+    public List<Event> findFriendsFeed(int userId, Integer beforeId, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0) {
+            throw new UserValidationException("Параметр limit должен быть положительным числом");
+        }
+        // события друзей попадают в ленту после фоновой записи их пачки; ждать ради них всю очередь
+        // на каждом чтении ленты не стоит
+        List<Integer> eventIds = friendsTimeline.page(userId, beforeId, Math.min(pageSize, MAX_PAGE_SIZE));
+
+        // события, удаленные вместе с автором, пропускаются
+        Map<Integer, Event> eventsById = eventStorage.getByIds(eventIds).stream()
+                .collect(Collectors.toMap(Event::getEventId, Function.identity()));
+        return eventIds.stream()
+                .map(eventsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // событие записывается в БД асинхронно, время события фиксируется в момент вызова
+    public void createEvent(int userId, ActionType actionType, EventType eventType, long entityId) {
+        eventWriter.enqueue(Event.builder()
+                .userId(userId)
+                .eventType(eventType)
+                .actionType(actionType)
+                .entityId(entityId)
+                .eventDateTime(System.currentTimeMillis())
+                .build());
     }
 }
@@ -0,0 +1,215 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.EventStorage;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+// Фоновая запись событий ленты: события ставятся в ограниченную очередь и пишутся в БД пачками одним потоком.
+// Когда очередь заполнена, добавление ждет не дольше flushTimeout, после чего событие пишется в потоке запроса.
+// При остановке приложения очередь дописывается до конца.
+@Component
+@Slf4j
+public class EventWriter implements SmartLifecycle {
+    private static final long POLL_MILLIS = 100;
+
+    private final EventStorage eventStorage;
+    private final FriendsTimeline friendsTimeline;
+    private final BlockingQueue<Event> queue;
+    private final int batchSize;
+    private final Duration flushTimeout;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    // автор -> число его событий, поставленных в очередь, но еще не записанных и не разосланных
+    private final Map<Integer, Integer> pending = new ConcurrentHashMap<>();
+    private final Object writtenMonitor = new Object();
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public EventWriter(@Qualifier("eventDbStorage") EventStorage eventStorage,
+                       FriendsTimeline friendsTimeline,
+                       @Value("${filmorate.events.queue-capacity:10000}") int queueCapacity,
+                       @Value("${filmorate.events.batch-size:500}") int batchSize,
+                       @Value("${filmorate.events.flush-timeout:5s}") Duration flushTimeout) {
+        this.eventStorage = eventStorage;
+        this.friendsTimeline = friendsTimeline;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushTimeout = flushTimeout;
+    }
+
+    public void enqueue(Event event) {
+        // счетчик увеличивается до постановки в очередь, чтобы flush(userId) не пропустил событие
+        pending.merge(event.getUserId(), 1, Integer::sum);
+        enqueued.incrementAndGet();
+        boolean queued;
+        try {
+            queued = queue.offer(event, flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            // событие не теряем: пишем его сразу
+            log.warn("Очередь событий ленты заполнена, событие пишется синхронно: {}", event);
+            write(List.of(event));
+        }
+    }
+
+    // дожидается записи всех событий, добавленных до вызова
+    public void flush() {
+        long target = enqueued.get();
+        await(() -> written.get() >= target);
+    }
+
+    // дожидается записи только событий пользователя, чтобы его лента отражала только что совершенные действия.
+    // Если событий пользователя в очереди нет, возвращается сразу; иначе ждет, пока писатель дойдет до них,
+    // но не дольше flushTimeout - тогда лента отдается без них
+    public void flush(int userId) {
+        await(() -> !pending.containsKey(userId));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeLoop, "event-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        // поток не прерываем, чтобы не оборвать запись пачки в БД: он завершится после очередного ожидания очереди
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(flushTimeout.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drain();
+        log.info("Запись событий ленты остановлена, записано событий: {}", written.get());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // останавливаемся после веб-сервера, чтобы записать события последних запросов
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 2048;
+    }
+
+    private void await(BooleanSupplier done) {
+        if (done.getAsBoolean()) {
+            return;
+        }
+        if (!running) {
+            drain();
+            return;
+        }
+        long deadline = System.nanoTime() + flushTimeout.toNanos();
+        synchronized (writtenMonitor) {
+            while (!done.getAsBoolean()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    log.warn("Не дождались записи событий ленты за {}, в очереди событий: {}", flushTimeout,
+                            queue.size());
+                    return;
+                }
+                try {
+                    writtenMonitor.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            try {
+                Event first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    List<Event> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // поток писателя единственный, поэтому никакая ошибка пачки не должна его завершать
+                log.error("Ошибка записи пачки событий ленты", e);
+            }
+        }
+    }
+
+    private synchronized void drain() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    private void write(List<Event> batch) {
+        // рассылаем до отметки о записи, чтобы после flush() события были и в лентах друзей
+        try {
+            friendsTimeline.fanOut(create(batch));
+        } catch (RuntimeException e) {
+            log.warn("События не разосланы в ленты друзей: {}", e.getMessage());
+        } finally {
+            // отметка о записи ставится и для неудачной пачки, иначе flush() ждал бы ее до таймаута
+            written.addAndGet(batch.size());
+            for (Event event : batch) {
+                pending.computeIfPresent(event.getUserId(), (userId, count) -> count == 1 ? null : count - 1);
+            }
+            synchronized (writtenMonitor) {
+                writtenMonitor.notifyAll();
+            }
+        }
+    }
+
+    // ошибки пула и транзакций - не DataAccessException, поэтому перехватываются все исключения времени выполнения
+    private List<Event> create(List<Event> batch) {
+        try {
+            eventStorage.createAll(batch);
+            return batch;
+        } catch (RuntimeException e) {
+            // пачка целиком откатывается из-за одной ошибочной строки (например, пользователь уже удален),
+            // поэтому пишем события по одному и пропускаем только ошибочные
+            log.warn("Ошибка пакетной записи {} событий, пишем по одному: {}", batch.size(), e.getMessage());
+            List<Event> created = new ArrayList<>(batch.size());
+            for (Event event : batch) {
+                try {
+                    eventStorage.createAll(List.of(event));
+                    created.add(event);
+                } catch (RuntimeException eventException) {
+                    log.warn("Событие {} не записано: {}", event, eventException.getMessage());
+                }
+            }
+            return created;
+        }
+    }
+}
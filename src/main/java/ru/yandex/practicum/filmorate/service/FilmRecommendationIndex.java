@@ -0,0 +1,391 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.model.IdSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Коллаборативная фильтрация по лайкам: для пользователя находятся K ближайших соседей по мере Жаккара,
+// рекомендуются фильмы соседей, которые пользователь еще не лайкал, с весом, равным сумме схожестей.
+// Лайки хранятся отсортированными массивами идентификаторов, рекомендации считаются при первом запросе, кэшируются
+// и сбрасываются только у пользователей, которых затронуло изменение лайков.
+@Component
+@Slf4j
+public class FilmRecommendationIndex implements SmartLifecycle {
+    private static final int[] EMPTY = new int[0];
+
+    private final FilmStorage filmStorage;
+    private final int neighboursCount;
+    private final int maxInvalidatedLikers;
+    private final int maxScannedLikers;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // пользователь -> отсортированные идентификаторы понравившихся фильмов; массивы не меняются на месте,
+    // поэтому рекомендации считаются по ним без блокировки
+    private final Map<Integer, int[]> userLikes = new ConcurrentHashMap<>();
+    // фильм -> отсортированные идентификаторы лайкнувших пользователей
+    private final Map<Integer, int[]> filmLikers = new ConcurrentHashMap<>();
+    private final Map<Integer, Recommendation> recommendations = new HashMap<>();
+    // сосед -> пользователи, в рекомендации которых он входит
+    private final Map<Integer, Set<Integer>> neighbourOf = new HashMap<>();
+    // номер изменения, после которого рекомендации пользователя сброшены
+    private final Map<Integer, Long> invalidatedAt = new HashMap<>();
+    // номер последнего изменения лайков популярного фильма, лайкнувших который не сбрасывали по одному
+    private final Map<Integer, Long> likersChangedAt = new HashMap<>();
+    // номер последнего изменения, меняется под блокировкой записи
+    private long generation;
+    private long allInvalidatedAt;
+    private volatile boolean ready;
+    private volatile boolean running;
+
+    public FilmRecommendationIndex(@Qualifier("filmStorage") @NonNull FilmStorage filmStorage,
+                                   @Value("${filmorate.recommendations.neighbours:10}") int neighboursCount,
+                                   @Value("${filmorate.recommendations.max-invalidated-likers:1000}")
+                                   int maxInvalidatedLikers,
+                                   @Value("${filmorate.recommendations.max-scanned-likers:1000}")
+                                   int maxScannedLikers) {
+        this.filmStorage = filmStorage;
+        this.neighboursCount = neighboursCount;
+        this.maxInvalidatedLikers = maxInvalidatedLikers;
+        this.maxScannedLikers = maxScannedLikers;
+    }
+
+    // выборка лайков идет без блокировки, поэтому при запуске индекс строится до веб-сервера;
+    // рекомендации здесь не считаются: на всех пользователей это слишком долго, их заполняет recommend()
+    public void rebuild() {
+        Map<Integer, IdSet> allLikes = filmStorage.getAllLikes();
+        lock.writeLock().lock();
+        try {
+            generation++;
+            userLikes.clear();
+            filmLikers.clear();
+            invalidateAll();
+            Map<Integer, List<Integer>> likesByUser = new HashMap<>();
+            allLikes.forEach((filmId, likers) -> {
+                filmLikers.put(filmId, likers.toIntArray());
+                likers.forEachInt(userId ->
+                        likesByUser.computeIfAbsent(userId, id -> new ArrayList<>()).add(filmId));
+            });
+            likesByUser.forEach((userId, filmIds) -> userLikes.put(userId, toSortedArray(filmIds)));
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс рекомендаций построен, пользователей с лайками: {}", userLikes.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 512;
+    }
+
+    // идентификаторы рекомендованных фильмов по убыванию веса
+    public List<Integer> recommend(int userId) {
+        long computedAt;
+        lock.readLock().lock();
+        try {
+            Recommendation cached = recommendations.get(userId);
+            if (cached != null && isFresh(userId, cached)) {
+                return asList(cached.filmIds);
+            }
+            computedAt = generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // промах кэша считается без блокировки, чтобы не останавливать остальные чтения и лайки
+        Recommendation computed = compute(userId, computedAt);
+
+        lock.writeLock().lock();
+        try {
+            Recommendation cached = recommendations.get(userId);
+            if (cached != null && isFresh(userId, cached)) {
+                return asList(cached.filmIds);
+            }
+            // если за время расчета рекомендации пользователя сбросили, результат отдается, но не кэшируется
+            if (Math.max(allInvalidatedAt, invalidatedAt.getOrDefault(userId, 0L)) <= computedAt
+                    && isFresh(userId, computed)) {
+                store(userId, computed);
+            }
+            return asList(computed.filmIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addLike(int filmId, int userId) {
+        lock.writeLock().lock();
+        try {
+            int[] likes = userLikes.getOrDefault(userId, EMPTY);
+            if (Arrays.binarySearch(likes, filmId) >= 0) {
+                return;
+            }
+            generation++;
+            userLikes.put(userId, insert(likes, filmId));
+            filmLikers.put(filmId, insert(filmLikers.getOrDefault(filmId, EMPTY), userId));
+
+            // схожесть пользователя с теми, кто не лайкал фильм, только уменьшилась, и в их соседи он попасть
+            // не может; пересчитываем его самого, лайкнувших этот фильм и тех, у кого он уже в соседях
+            invalidate(userId);
+            invalidateLikers(filmId);
+            invalidateNeighbourOf(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeLike(int filmId, int userId) {
+        lock.writeLock().lock();
+        try {
+            int[] likes = userLikes.getOrDefault(userId, EMPTY);
+            if (Arrays.binarySearch(likes, filmId) < 0) {
+                return;
+            }
+            generation++;
+            // после снятия лайка схожесть с теми, кто не лайкал фильм, может вырасти,
+            // поэтому пересчитываем всех пользователей с общими лайками, включая лайкнувших этот фильм
+            invalidate(userId);
+            for (int likedFilmId : likes) {
+                invalidateLikers(likedFilmId);
+            }
+            invalidateNeighbourOf(userId);
+
+            userLikes.put(userId, delete(likes, filmId));
+            filmLikers.put(filmId, delete(filmLikers.get(filmId), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // удаление фильмов и пользователей редкое, поэтому сбрасываем все рекомендации
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            int[] likers = filmLikers.remove(filmId);
+            if (likers != null) {
+                for (int userId : likers) {
+                    userLikes.computeIfPresent(userId, (id, likes) -> delete(likes, filmId));
+                }
+            }
+            invalidateAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            int[] likes = userLikes.remove(userId);
+            if (likes != null) {
+                for (int filmId : likes) {
+                    filmLikers.computeIfPresent(filmId, (id, likers) -> delete(likers, userId));
+                }
+            }
+            invalidateAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // не меняет состояние индекса; массивы берутся из конкурентных отображений и могут быть чуть устаревшими,
+    // такой результат отсекается при сохранении по номеру изменения
+    private Recommendation compute(int userId, long computedAt) {
+        int[] likes = userLikes.getOrDefault(userId, EMPTY);
+
+        // размер пересечения с каждым пользователем, у которого есть общие лайки
+        Map<Integer, Integer> intersections = new HashMap<>();
+        for (int filmId : likes) {
+            // у популярного фильма просматривается равномерная выборка лайкнувших, чтобы один фильм
+            // не определял время расчета; выборка зависит только от массива и пересчитывается вместе с ним
+            int[] likers = filmLikers.getOrDefault(filmId, EMPTY);
+            int step = likers.length > maxScannedLikers
+                    ? (likers.length + maxScannedLikers - 1) / maxScannedLikers
+                    : 1;
+            for (int i = 0; i < likers.length; i += step) {
+                if (likers[i] != userId) {
+                    intersections.merge(likers[i], 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<Integer, Double>> similarities = new ArrayList<>();
+        intersections.forEach((otherId, intersection) -> {
+            int union = likes.length + userLikes.getOrDefault(otherId, EMPTY).length - intersection;
+            similarities.add(Map.entry(otherId, (double) intersection / Math.max(union, 1)));
+        });
+        similarities.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        List<Map.Entry<Integer, Double>> nearest =
+                similarities.subList(0, Math.min(neighboursCount, similarities.size()));
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Map.Entry<Integer, Double> neighbour : nearest) {
+            for (int filmId : userLikes.getOrDefault(neighbour.getKey(), EMPTY)) {
+                if (Arrays.binarySearch(likes, filmId) < 0) {
+                    scores.merge(filmId, neighbour.getValue(), Double::sum);
+                }
+            }
+        }
+        int[] recommended = scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+
+        int[] neighbourIds = nearest.stream().mapToInt(Map.Entry::getKey).toArray();
+        return new Recommendation(recommended, neighbourIds, computedAt);
+    }
+
+    private void store(int userId, Recommendation recommendation) {
+        unlink(userId);
+        for (int neighbourId : recommendation.neighbourIds) {
+            neighbourOf.computeIfAbsent(neighbourId, id -> new HashSet<>()).add(userId);
+        }
+        recommendations.put(userId, recommendation);
+    }
+
+    // рекомендации лайкнувших популярный фильм сбрасываются лениво: при чтении сверяются с его изменениями
+    private boolean isFresh(int userId, Recommendation recommendation) {
+        if (likersChangedAt.isEmpty()) {
+            return true;
+        }
+        for (int filmId : userLikes.getOrDefault(userId, EMPTY)) {
+            Long changedAt = likersChangedAt.get(filmId);
+            if (changedAt != null && changedAt > recommendation.computedAt) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void invalidate(int userId) {
+        unlink(userId);
+        invalidatedAt.put(userId, generation);
+    }
+
+    private void unlink(int userId) {
+        Recommendation recommendation = recommendations.remove(userId);
+        if (recommendation != null) {
+            for (int neighbourId : recommendation.neighbourIds) {
+                Set<Integer> users = neighbourOf.get(neighbourId);
+                if (users != null) {
+                    users.remove(userId);
+                    if (users.isEmpty()) {
+                        neighbourOf.remove(neighbourId);
+                    }
+                }
+            }
+        }
+    }
+
+    // у популярного фильма слишком много лайкнувших, чтобы сбрасывать их по одному на каждый лайк
+    private void invalidateLikers(int filmId) {
+        int[] likers = filmLikers.getOrDefault(filmId, EMPTY);
+        if (likers.length > maxInvalidatedLikers) {
+            likersChangedAt.put(filmId, generation);
+            return;
+        }
+        for (int likerId : likers) {
+            invalidate(likerId);
+        }
+    }
+
+    private void invalidateNeighbourOf(int userId) {
+        Set<Integer> users = neighbourOf.get(userId);
+        if (users != null) {
+            new ArrayList<>(users).forEach(this::invalidate);
+        }
+    }
+
+    private void invalidateAll() {
+        recommendations.clear();
+        neighbourOf.clear();
+        invalidatedAt.clear();
+        likersChangedAt.clear();
+        allInvalidatedAt = generation;
+    }
+
+    private static int[] toSortedArray(Collection<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+
+    private static int[] insert(int[] sorted, int value) {
+        int position = -Arrays.binarySearch(sorted, value) - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static int[] delete(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, sorted.length - position - 1);
+        return result;
+    }
+
+    private static List<Integer> asList(int[] ids) {
+        List<Integer> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static class Recommendation {
+        private final int[] filmIds;
+        private final int[] neighbourIds;
+        // номер изменения, по состоянию на которое посчитаны рекомендации
+        private final long computedAt;
+
+        Recommendation(int[] filmIds, int[] neighbourIds, long computedAt) {
+            this.filmIds = filmIds;
+            this.neighbourIds = neighbourIds;
+            this.computedAt = computedAt;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.enums.SearchCategoryType;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// Инвертированный индекс для поиска фильмов по словам из названия, описания и имен режиссеров.
+// Слово запроса совпадает со словом фильма, если является его префиксом; точное совпадение весит больше.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FilmSearchIndex implements SmartLifecycle {
+    private static final Pattern DELIMITERS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Map<SearchCategoryType, Integer> WEIGHTS = Map.of(
+            SearchCategoryType.TITLE, 3,
+            SearchCategoryType.DIRECTOR, 2,
+            SearchCategoryType.DESCRIPTION, 1);
+
+    @Qualifier("filmStorage")
+    @NonNull
+    private final FilmStorage filmStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final Map<SearchCategoryType, TreeMap<String, Set<Integer>>> postings =
+            new EnumMap<>(SearchCategoryType.class);
+    private volatile boolean ready;
+    private volatile boolean running;
+
+    // как и PopularFilmsIndex, перестраивается при запуске до веб-сервера: выборка фильмов идет без блокировки
+    public void rebuild() {
+        List<Film> allFilms = filmStorage.get();
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            allFilms.forEach(this::index);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс фильмов построен, фильмов: {}", allFilms.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 512;
+    }
+
+    // возвращает идентификаторы фильмов, содержащих все слова запроса, с их релевантностью
+    public Map<Integer, Integer> search(String query, Set<SearchCategoryType> categories) {
+        List<String> terms = tokenize(query);
+        Map<Integer, Integer> scores = new HashMap<>();
+        if (terms.isEmpty() || categories.isEmpty()) {
+            return scores;
+        }
+
+        lock.readLock().lock();
+        try {
+            boolean first = true;
+            for (String term : terms) {
+                Map<Integer, Integer> termScores = scoreTerm(term, categories);
+                if (first) {
+                    scores.putAll(termScores);
+                    first = false;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((filmId, score) -> score + termScores.get(filmId));
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+            return scores;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(Film film) {
+        lock.writeLock().lock();
+        try {
+            unindex(film.getId());
+            index(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            unindex(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateDirector(Director director) {
+        lock.writeLock().lock();
+        try {
+            documents.values().stream()
+                    .filter(document -> document.directors.containsKey(director.getId()))
+                    .collect(Collectors.toList())
+                    .forEach(document -> {
+                        unindex(document.filmId);
+                        document.directors.put(director.getId(), director.getName());
+                        index(document);
+                    });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            documents.values().stream()
+                    .filter(document -> document.directors.containsKey(directorId))
+                    .collect(Collectors.toList())
+                    .forEach(document -> {
+                        unindex(document.filmId);
+                        document.directors.remove(directorId);
+                        index(document);
+                    });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        return Arrays.stream(DELIMITERS.split(text.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private Map<Integer, Integer> scoreTerm(String term, Set<SearchCategoryType> categories) {
+        Map<Integer, Integer> termScores = new HashMap<>();
+        for (SearchCategoryType category : categories) {
+            TreeMap<String, Set<Integer>> categoryPostings = postings.get(category);
+            if (categoryPostings == null) {
+                continue;
+            }
+            int weight = WEIGHTS.get(category);
+            categoryPostings.subMap(term, true, term + Character.MAX_VALUE, true).forEach((token, filmIds) -> {
+                int score = token.equals(term) ? 2 * weight : weight;
+                filmIds.forEach(filmId -> termScores.merge(filmId, score, Math::max));
+            });
+        }
+        return termScores;
+    }
+
+    private void index(Film film) {
+        Map<Integer, String> directors = new LinkedHashMap<>();
+        if (film.getDirectors() != null) {
+            film.getDirectors().forEach(director -> directors.put(director.getId(), director.getName()));
+        }
+        index(new Document(film.getId(), film.getName(), film.getDescription(), directors));
+    }
+
+    private void index(Document document) {
+        documents.put(document.filmId, document);
+        document.tokens().forEach((category, tokens) -> tokens.forEach(token ->
+                postings.computeIfAbsent(category, c -> new TreeMap<>())
+                        .computeIfAbsent(token, t -> new HashSet<>())
+                        .add(document.filmId)));
+    }
+
+    private void unindex(int filmId) {
+        Document document = documents.remove(filmId);
+        if (document == null) {
+            return;
+        }
+        document.tokens().forEach((category, tokens) -> {
+            TreeMap<String, Set<Integer>> categoryPostings = postings.get(category);
+            tokens.forEach(token -> {
+                Set<Integer> filmIds = categoryPostings.get(token);
+                filmIds.remove(filmId);
+                if (filmIds.isEmpty()) {
+                    categoryPostings.remove(token);
+                }
+            });
+        });
+    }
+
+    private static class Document {
+        private final int filmId;
+        private final String name;
+        private final String description;
+        private final Map<Integer, String> directors;
+
+        Document(int filmId, String name, String description, Map<Integer, String> directors) {
+            this.filmId = filmId;
+            this.name = name;
+            this.description = description;
+            this.directors = directors;
+        }
+
+        Map<SearchCategoryType, Collection<String>> tokens() {
+            Map<SearchCategoryType, Collection<String>> tokens = new EnumMap<>(SearchCategoryType.class);
+            tokens.put(SearchCategoryType.TITLE, tokenize(name));
+            tokens.put(SearchCategoryType.DESCRIPTION, tokenize(description));
+            tokens.put(SearchCategoryType.DIRECTOR, directors.values().stream()
+                    .flatMap(directorName -> tokenize(directorName).stream())
+                    .collect(Collectors.toSet()));
+            return tokens;
+        }
+    }
+}
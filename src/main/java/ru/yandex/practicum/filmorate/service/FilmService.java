@@ -7,40 +7,92 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.FilmStorage;
 import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.enums.SearchCategoryType;
 import ru.yandex.practicum.filmorate.enums.SortCategoryType;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.FilmValidationException;
 import ru.yandex.practicum.filmorate.exception.SortByValidationException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FilmService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
-    @Qualifier("filmDbStorage")
+    @Qualifier("filmStorage")
     @NonNull
     private final FilmStorage filmStorage;
-    @Qualifier("userDbStorage")
+    @Qualifier("userStorage")
     @NonNull
     private final UserStorage userStorage;
     @NonNull
     private final DirectorService directorService;
+    @NonNull
+    private final PopularFilmsIndex popularFilmsIndex;
+    @NonNull
+    private final FilmSearchIndex filmSearchIndex;
+    @NonNull
+    private final FilmRecommendationIndex filmRecommendationIndex;
 
     public List<Film> findAll() {
         return filmStorage.get();
     }
 
-    public List<Film> searchFilms(String query, Boolean director, Boolean film) {
-        return filmStorage.search(query, director, film)
+    public List<Film> findPage(Integer afterId, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0) {
+            throw new FilmValidationException("Параметр limit должен быть положительным числом");
+        }
+        return filmStorage.getPage(afterId == null ? 0 : afterId, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    // выгружает все фильмы страницами по первичному ключу, не собирая весь каталог в памяти
+    public void streamAll(Consumer<Film> consumer) {
+        int afterId = 0;
+        List<Film> page;
+        do {
+            page = filmStorage.getPage(afterId, MAX_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == MAX_PAGE_SIZE);
+    }
+
+    public List<Film> searchFilms(String query, Boolean director, Boolean film, Boolean description) {
+        Set<SearchCategoryType> categories = EnumSet.noneOf(SearchCategoryType.class);
+        if (director) categories.add(SearchCategoryType.DIRECTOR);
+        if (film) categories.add(SearchCategoryType.TITLE);
+        if (description) categories.add(SearchCategoryType.DESCRIPTION);
+
+        // пустой запрос или запрос без категорий индекс не обрабатывает, отдаем его БД как раньше
+        if (!filmSearchIndex.isReady() || query.isBlank() || categories.isEmpty()) {
+            return filmStorage.search(query, director, film, description)
+                    .stream()
+                    .sorted(this::compare)
+                    .collect(Collectors.toList());
+        }
+
+        Map<Integer, Integer> scores = filmSearchIndex.search(query, categories);
+        return filmStorage.getByIds(scores.keySet())
                 .stream()
-                .sorted(this::compare)
+                .sorted(Comparator.<Film>comparingInt(f -> scores.get(f.getId())).reversed()
+                        .thenComparing(this::compare)
+                        .thenComparingInt(Film::getId))
                 .collect(Collectors.toList());
     }
 
@@ -49,23 +101,44 @@ public class FilmService {
     }
 
     public Film createFilm(Film film) {
-        film.setLikes(new HashSet<>());
-        return filmStorage.create(film);
+        film.setLikes(new IdSet());
+        Film createdFilm = filmStorage.create(film);
+        if (createdFilm != null) {
+            popularFilmsIndex.put(createdFilm);
+            filmSearchIndex.put(createdFilm);
+        }
+        return createdFilm;
+    }
+
+    public List<Film> createFilms(List<Film> films) {
+        List<Film> createdFilms = filmStorage.createAll(films);
+        createdFilms.forEach(film -> {
+            popularFilmsIndex.put(film);
+            filmSearchIndex.put(film);
+        });
+        log.debug("Создано фильмов: {}", createdFilms.size());
+        return createdFilms;
     }
 
     public Film updateFilm(Film film) {
         if (film.getLikes() == null) {
-            film.setLikes(new HashSet<>());
+            film.setLikes(new IdSet());
         }
-        return filmStorage.update(film).orElseThrow(()
+        Film updatedFilm = filmStorage.update(film).orElseThrow(()
                 -> new FilmNotFoundException("Фильм с ID = " + film.getId() + " не найден."));
+        popularFilmsIndex.put(updatedFilm);
+        filmSearchIndex.put(updatedFilm);
+        return updatedFilm;
     }
 
     public void addLike(int filmId, int userId) {
         Film film = checkFilmId(filmId);
         User user = checkUserId(userId);
 
-        filmStorage.addLike(film, user);
+        if (filmStorage.addLike(film, user)) {
+            popularFilmsIndex.addLike(filmId);
+        }
+        filmRecommendationIndex.addLike(filmId, userId);
 
         log.debug("Добавлен лайк от пользователя ID = {} в фильм: {}", userId, film);
     }
@@ -74,13 +147,19 @@ public class FilmService {
         Film film = checkFilmId(filmId);
         User user = checkUserId(userId);
 
-        filmStorage.removeLike(film, user);
+        if (filmStorage.removeLike(film, user)) {
+            popularFilmsIndex.removeLike(filmId);
+        }
+        filmRecommendationIndex.removeLike(filmId, userId);
 
         log.debug("Удален лайк от пользователя ID = {} в фильме: {}", userId, film);
     }
 
     public List<Film> getTop(int count, int genreId, int year) {
         log.info("Получаем список из {} популярных фильмов, жанр {}, год {}", count, genreId, year);
+        if (popularFilmsIndex.isReady()) {
+            return popularFilmsIndex.getTop(count, genreId, year);
+        }
         return filmStorage.getPopularByGenreAndYear(count, genreId, year);
     }
 
@@ -109,6 +188,9 @@ public class FilmService {
         Film film = checkFilmId(filmId);
 
         filmStorage.removeFilm(filmId);
+        popularFilmsIndex.remove(filmId);
+        filmSearchIndex.remove(filmId);
+        filmRecommendationIndex.removeFilm(filmId);
 
         log.debug("Удален фильм: {}", film);
     }
@@ -122,7 +204,7 @@ public class FilmService {
     }
 
     private int compare(Film f0, Film f1) {
-        return -1 * (f0.getLikes().size() - f1.getLikes().size()); //обратный порядок
+        return Integer.compare(f1.getLikeCount(), f0.getLikeCount()); //обратный порядок
     }
 
     private User checkUserId(int id) {
@@ -0,0 +1,338 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.EventStorage;
+import ru.yandex.practicum.filmorate.dao.TimelineStorage;
+import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.TimelineEntry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Ленты друзей с рассылкой при записи: записанное событие сразу добавляется в ленты всех, у кого автор в друзьях,
+// поэтому чтение страницы не зависит от числа друзей. Лента - кольцевой буфер последних capacity событий.
+// Изменившиеся ленты периодически сохраняются в БД вместе с последним разосланным событием и загружаются при старте,
+// а события, записанные после него, рассылаются повторно.
+@Component
+@Slf4j
+public class FriendsTimeline implements SmartLifecycle {
+    private static final int CATCH_UP_PAGE_SIZE = 1000;
+
+    private final UserStorage userStorage;
+    private final EventStorage eventStorage;
+    private final TimelineStorage timelineStorage;
+    private final int capacity;
+    private final Duration persistInterval;
+
+    private final Map<Integer, Timeline> timelines = new ConcurrentHashMap<>();
+    // пользователи, чьи ленты изменились после последнего сохранения
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    // последнее разосланное событие, в том числе без подписчиков, и последнее сохраненное вместе с лентами
+    private final AtomicInteger fannedOutEventId = new AtomicInteger();
+    private volatile int persistedEventId;
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    public FriendsTimeline(@Qualifier("userStorage") @NonNull UserStorage userStorage,
+                           @Qualifier("eventDbStorage") @NonNull EventStorage eventStorage,
+                           @Qualifier("timelineDbStorage") @NonNull TimelineStorage timelineStorage,
+                           @Value("${filmorate.timeline.capacity:500}") int capacity,
+                           @Value("${filmorate.timeline.persist-interval:30s}") Duration persistInterval) {
+        this.userStorage = userStorage;
+        this.eventStorage = eventStorage;
+        this.timelineStorage = timelineStorage;
+        this.capacity = capacity;
+        this.persistInterval = persistInterval;
+    }
+
+    // вызывается после записи событий в БД, когда им уже присвоены идентификаторы
+    public void fanOut(List<Event> events) {
+        Set<Integer> authorIds = events.stream()
+                .filter(event -> event.getEventId() > 0)
+                .map(Event::getUserId)
+                .collect(Collectors.toSet());
+        if (authorIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Integer>> followers = userStorage.getFollowerIds(authorIds);
+        int lastEventId = 0;
+        for (Event event : events) {
+            if (event.getEventId() <= 0) {
+                continue;
+            }
+            for (int followerId : followers.getOrDefault(event.getUserId(), List.of())) {
+                add(followerId, event.getEventId(), event.getUserId());
+            }
+            lastEventId = Math.max(lastEventId, event.getEventId());
+        }
+        // отметка сдвигается после добавления в ленты: сохраненная отметка не обгоняет сохраненные ленты
+        fannedOutEventId.accumulateAndGet(lastEventId, Math::max);
+    }
+
+    // в ленту попадают последние события нового друга
+    public void addFriend(int userId, int friendId) {
+        eventStorage.getLastByUserId(friendId, capacity)
+                .forEach(event -> add(userId, event.getEventId(), friendId));
+    }
+
+    // при загрузке дружб последние события каждого нового друга читаются один раз для всех, кто его добавил
+    public void addFriends(List<Friendship> friendships) {
+        Map<Integer, List<Integer>> usersByFriendId = friendships.stream()
+                .collect(Collectors.groupingBy(Friendship::getFriendId,
+                        Collectors.mapping(Friendship::getUserId, Collectors.toList())));
+        usersByFriendId.forEach((friendId, userIds) -> {
+            List<Event> events = eventStorage.getLastByUserId(friendId, capacity);
+            for (int userId : userIds) {
+                events.forEach(event -> add(userId, event.getEventId(), friendId));
+            }
+        });
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        Timeline timeline = timelines.get(userId);
+        if (timeline != null && timeline.removeAuthor(friendId)) {
+            dirty.add(userId);
+        }
+    }
+
+    // события удаленного пользователя удаляются из БД каскадно, в чужих лентах они пропускаются при чтении
+    public void removeUser(int userId) {
+        timelines.remove(userId);
+        dirty.remove(userId);
+    }
+
+    // идентификаторы событий от новых к старым, меньшие beforeId
+    public List<Integer> page(int userId, Integer beforeId, int limit) {
+        Timeline timeline = timelines.get(userId);
+        if (timeline == null) {
+            return List.of();
+        }
+        return timeline.page(beforeId == null ? Integer.MAX_VALUE : beforeId, limit);
+    }
+
+    public void load() {
+        timelines.clear();
+        dirty.clear();
+        int afterId = timelineStorage.getLastEventId();
+        fannedOutEventId.set(afterId);
+        persistedEventId = afterId;
+        int[] loaded = {0};
+        timelineStorage.stream(entry -> {
+            timeline(entry.getUserId()).add(entry.getEventId(), entry.getAuthorId());
+            loaded[0]++;
+        });
+
+        // повторно разосланные события, уже попавшие в ленты, буфер отбрасывает
+        int caughtUp = 0;
+        List<Event> page;
+        do {
+            page = eventStorage.getPage(afterId, CATCH_UP_PAGE_SIZE);
+            fanOut(page);
+            caughtUp += page.size();
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getEventId();
+            }
+        } while (page.size() == CATCH_UP_PAGE_SIZE);
+        log.info("Ленты друзей загружены: лент {}, записей {}, разослано новых событий {}",
+                timelines.size(), loaded[0], caughtUp);
+    }
+
+    public void persist() {
+        // отметка читается до копирования лент, поэтому все события до нее в копию уже попали
+        int lastEventId = fannedOutEventId.get();
+        if (dirty.isEmpty() && lastEventId == persistedEventId) {
+            return;
+        }
+        // отметки снимаются до копирования лент: изменения во время сохранения попадут в следующее
+        List<Integer> userIds = new ArrayList<>(dirty);
+        dirty.removeAll(userIds);
+        List<TimelineEntry> entries = new ArrayList<>();
+        for (int userId : userIds) {
+            Timeline timeline = timelines.get(userId);
+            if (timeline != null) {
+                timeline.collect(userId, entries);
+            }
+        }
+        try {
+            timelineStorage.replace(userIds, entries, lastEventId);
+            persistedEventId = lastEventId;
+        } catch (RuntimeException e) {
+            // ошибки пула и транзакций - не DataAccessException; исключение не выпускаем, иначе планировщик
+            // молча отменит все следующие сохранения
+            dirty.addAll(userIds);
+            log.warn("Ленты друзей {} пользователей не сохранены: {}", userIds.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        load();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "timeline-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::persist, persistInterval.toMillis(), persistInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(persistInterval.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        persist();
+        log.info("Ленты друзей сохранены");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // запускаемся раньше и останавливаемся позже EventWriter, чтобы принять и сохранить события,
+    // которые он дописывает при остановке
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    private void add(int userId, int eventId, int authorId) {
+        if (timeline(userId).add(eventId, authorId)) {
+            dirty.add(userId);
+        }
+    }
+
+    private Timeline timeline(int userId) {
+        return timelines.computeIfAbsent(userId, id -> new Timeline(capacity));
+    }
+
+    // Кольцевой буфер идентификаторов событий по возрастанию вместе с их авторами.
+    // Массивы растут по мере заполнения до capacity, после чего новое событие вытесняет самое старое.
+    private static class Timeline {
+        private static final int INITIAL_SIZE = 16;
+
+        private final int capacity;
+        private int[] eventIds;
+        private int[] authorIds;
+        // позиция самого старого события
+        private int head;
+        private int size;
+
+        Timeline(int capacity) {
+            this.capacity = capacity;
+            this.eventIds = new int[Math.min(INITIAL_SIZE, capacity)];
+            this.authorIds = new int[eventIds.length];
+        }
+
+        synchronized boolean add(int eventId, int authorId) {
+            // обычно событие новее всех в ленте и просто дописывается в конец
+            int position = size;
+            while (position > 0 && eventIds[index(position - 1)] >= eventId) {
+                if (eventIds[index(position - 1)] == eventId) {
+                    return false;
+                }
+                position--;
+            }
+            if (size == eventIds.length) {
+                if (size < capacity) {
+                    grow();
+                } else if (position == 0) {
+                    return false;
+                } else {
+                    head = index(1);
+                    size--;
+                    position--;
+                }
+            }
+            for (int i = size; i > position; i--) {
+                eventIds[index(i)] = eventIds[index(i - 1)];
+                authorIds[index(i)] = authorIds[index(i - 1)];
+            }
+            eventIds[index(position)] = eventId;
+            authorIds[index(position)] = authorId;
+            size++;
+            return true;
+        }
+
+        synchronized boolean removeAuthor(int authorId) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int from = index(i);
+                if (authorIds[from] != authorId) {
+                    int to = index(kept++);
+                    eventIds[to] = eventIds[from];
+                    authorIds[to] = authorIds[from];
+                }
+            }
+            boolean changed = kept != size;
+            size = kept;
+            return changed;
+        }
+
+        synchronized List<Integer> page(int beforeId, int limit) {
+            // двоичный поиск первого события, не меньшего beforeId
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (eventIds[index(middle)] < beforeId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            List<Integer> result = new ArrayList<>(Math.min(limit, low));
+            for (int i = low - 1; i >= 0 && result.size() < limit; i--) {
+                result.add(eventIds[index(i)]);
+            }
+            return result;
+        }
+
+        synchronized void collect(int userId, List<TimelineEntry> entries) {
+            for (int i = 0; i < size; i++) {
+                entries.add(new TimelineEntry(userId, eventIds[index(i)], authorIds[index(i)]));
+            }
+        }
+
+        private void grow() {
+            int length = Math.min(capacity, eventIds.length * 2);
+            int[] grownEventIds = new int[length];
+            int[] grownAuthorIds = new int[length];
+            for (int i = 0; i < size; i++) {
+                grownEventIds[i] = eventIds[index(i)];
+                grownAuthorIds[i] = authorIds[index(i)];
+            }
+            eventIds = grownEventIds;
+            authorIds = grownAuthorIds;
+            head = 0;
+        }
+
+        private int index(int i) {
+            return (head + i) % eventIds.length;
+        }
+    }
+}
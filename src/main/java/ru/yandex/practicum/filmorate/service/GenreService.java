@@ -13,7 +13,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class GenreService {
 
-    @Qualifier("genreDbStorage")
+    @Qualifier("cachedGenreStorage")
     private final GenreStorage genreStorage;
 
     public List<Genre> findAll() {
@@ -12,7 +12,7 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class MPAService {
-    @Qualifier("mpaDbStorage")
+    @Qualifier("cachedMPAStorage")
     private final MPAStorage mpaStorage;
 
     public List<MPA> findAll() {
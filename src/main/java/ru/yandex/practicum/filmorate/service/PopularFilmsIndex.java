@@ -0,0 +1,269 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Рейтинг популярных фильмов в памяти: для каждой пары (жанр, год) хранится набор фильмов,
+// упорядоченный по количеству лайков. Нулевой жанр или год означает "любой".
+// Индекс хранит собственные копии фильмов без лайков и отдает наружу только копии.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PopularFilmsIndex implements SmartLifecycle {
+    private static final int ANY = 0;
+
+    @Qualifier("filmStorage")
+    @NonNull
+    private final FilmStorage filmStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Film> films = new HashMap<>();
+    private final Map<Long, TreeSet<Long>> buckets = new HashMap<>();
+    private volatile boolean ready;
+    private volatile boolean running;
+
+    // выборка всех фильмов идет без блокировки индекса, поэтому перестраивать его можно только пока нет
+    // изменений: при запуске это делается до того, как веб-сервер начнет принимать запросы
+    public void rebuild() {
+        List<Film> allFilms = filmStorage.get();
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            buckets.clear();
+            allFilms.forEach(film -> index(copyOf(film)));
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс популярных фильмов построен, фильмов: {}", allFilms.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // после восстановления хранилищ в памяти, но раньше веб-сервера
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 512;
+    }
+
+    public List<Film> getTop(int count, int genreId, int year) {
+        lock.readLock().lock();
+        try {
+            List<Film> top = new ArrayList<>();
+            TreeSet<Long> bucket = buckets.get(bucketKey(genreId, year));
+            if (bucket == null) {
+                return top;
+            }
+            Iterator<Long> ranks = bucket.iterator();
+            while (ranks.hasNext() && top.size() < count) {
+                top.add(copyOf(films.get(filmIdOf(ranks.next()))));
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(Film updated) {
+        Film film = copyOf(updated);
+        lock.writeLock().lock();
+        try {
+            Film indexed = films.get(film.getId());
+            if (indexed != null) {
+                unindex(indexed);
+                // число лайков меняется только через addLike и removeLike, обновление фильма его не затрагивает
+                film.setLikeCount(indexed.getLikeCount());
+            }
+            index(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            Film indexed = films.get(filmId);
+            if (indexed != null) {
+                unindex(indexed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // индекс хранит только число лайков: вызывается, когда хранилище подтвердило, что лайк действительно добавлен
+    public void addLike(int filmId) {
+        changeLikeCount(filmId, 1);
+    }
+
+    public void removeLike(int filmId) {
+        changeLikeCount(filmId, -1);
+    }
+
+    // лайки удаленного пользователя удаляются из БД каскадно, поэтому число лайков его фильмов перечитывается
+    public void refresh(Collection<Integer> filmIds) {
+        if (filmIds.isEmpty()) {
+            return;
+        }
+        List<Film> refreshed = filmStorage.getByIds(filmIds);
+        lock.writeLock().lock();
+        try {
+            // в отличие от put число лайков берется из хранилища
+            refreshed.forEach(film -> {
+                Film indexed = films.get(film.getId());
+                if (indexed != null) {
+                    unindex(indexed);
+                    index(copyOf(film));
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateDirector(Director director) {
+        lock.writeLock().lock();
+        try {
+            films.values().stream().filter(film -> film.getDirectors() != null).forEach(film -> {
+                Set<Director> directors = new LinkedHashSet<>();
+                film.getDirectors().forEach(filmDirector ->
+                        directors.add(filmDirector.getId() == director.getId() ? director : filmDirector));
+                film.setDirectors(directors);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            films.values().stream().filter(film -> film.getDirectors() != null).forEach(film -> {
+                Set<Director> directors = new LinkedHashSet<>(film.getDirectors());
+                directors.removeIf(director -> director.getId() == directorId);
+                film.setDirectors(directors);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void changeLikeCount(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Film indexed = films.get(filmId);
+            if (indexed != null) {
+                unindex(indexed);
+                indexed.setLikeCount(indexed.getLikeCount() + delta);
+                index(indexed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(Film film) {
+        films.put(film.getId(), film);
+        long rank = rankOf(film);
+        bucketKeys(film).forEach(key -> buckets.computeIfAbsent(key, k -> new TreeSet<>()).add(rank));
+    }
+
+    private void unindex(Film film) {
+        films.remove(film.getId());
+        long rank = rankOf(film);
+        bucketKeys(film).forEach(key -> {
+            TreeSet<Long> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(rank);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        });
+    }
+
+    private Set<Long> bucketKeys(Film film) {
+        Set<Integer> genreIds = new HashSet<>();
+        genreIds.add(ANY);
+        if (film.getGenres() != null) {
+            film.getGenres().stream().map(Genre::getId).forEach(genreIds::add);
+        }
+        Set<Integer> years = new HashSet<>();
+        years.add(ANY);
+        if (film.getReleaseDate() != null) {
+            years.add(film.getReleaseDate().getYear());
+        }
+
+        Set<Long> keys = new HashSet<>();
+        genreIds.forEach(genreId -> years.forEach(year -> keys.add(bucketKey(genreId, year))));
+        return keys;
+    }
+
+    private static Film copyOf(Film film) {
+        Film copy = Film.builder()
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .likeCount(film.getLikeCount())
+                .genres(film.getGenres() == null ? null : new LinkedHashSet<>(film.getGenres()))
+                .mpa(film.getMpa())
+                .directors(film.getDirectors() == null ? null : new LinkedHashSet<>(film.getDirectors()))
+                .build();
+        copy.setId(film.getId());
+        return copy;
+    }
+
+    private static long bucketKey(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    // по возрастанию ранга: сначала больше лайков, при равенстве - меньший идентификатор
+    private static long rankOf(Film film) {
+        return ((long) (Integer.MAX_VALUE - film.getLikeCount()) << 32) | film.getId();
+    }
+
+    private static int filmIdOf(long rank) {
+        return (int) rank;
+    }
+}
@@ -6,7 +6,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.ReviewStorage;
+import ru.yandex.practicum.filmorate.exception.ReviewValidationException;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
+import ru.yandex.practicum.filmorate.model.ReviewVoteResult;
 
 import java.util.List;
 
@@ -14,6 +17,7 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class ReviewService {
+    private static final int MAX_BULK_VOTES = 10_000;
 
     @Qualifier("reviewDbStorage")
     @NonNull
@@ -53,6 +57,18 @@ public class ReviewService {
         }
     }
 
+    public ReviewVoteResult voteAll(List<ReviewVote> votes) {
+        if (votes.size() > MAX_BULK_VOTES) {
+            throw new ReviewValidationException("За один запрос можно передать не более " + MAX_BULK_VOTES + " оценок");
+        }
+        for (ReviewVote vote : votes) {
+            if (vote == null || vote.getReviewId() == null || vote.getUserId() == null || vote.getIsPositive() == null) {
+                throw new ReviewValidationException("Поля 'reviewId', 'userId' и 'isPositive' оценки не должны быть пустыми");
+            }
+        }
+        return reviewStorage.voteAll(votes);
+    }
+
     public void removeReview(long reviewId) {
         reviewStorage.removeReview(reviewId);
     }
@@ -9,49 +9,88 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.FilmStorage;
 import ru.yandex.practicum.filmorate.dao.UserStorage;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
-    @Qualifier("userDbStorage")
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    @Qualifier("userStorage")
     @NonNull
     private final UserStorage userStorage;
 
-    @Qualifier("filmDbStorage")
+    @Qualifier("filmStorage")
     @NonNull
     private final FilmStorage filmStorage;
 
+    @NonNull
+    private final PopularFilmsIndex popularFilmsIndex;
+
+    @NonNull
+    private final FilmRecommendationIndex filmRecommendationIndex;
+
+    @NonNull
+    private final FriendsTimeline friendsTimeline;
+
     public List<User> findAll() {
         return userStorage.get();
     }
 
+    public List<User> findPage(Integer afterId, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0) {
+            throw new UserValidationException("Параметр limit должен быть положительным числом");
+        }
+        return userStorage.getPage(afterId == null ? 0 : afterId, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    // выгружает всех пользователей страницами по первичному ключу, не собирая всю таблицу в памяти
+    public void streamAll(Consumer<User> consumer) {
+        int afterId = 0;
+        List<User> page;
+        do {
+            page = userStorage.getPage(afterId, MAX_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == MAX_PAGE_SIZE);
+    }
+
     public User findById(int userId) {
         return checkUserId(userId);
     }
 
     public List<User> getFriends(int userId) {
         User user = checkUserId(userId);
-        Set<Integer> friendIds = user.getFriends();
 
-        return friendIds.stream()
-                .map(this::checkUserId)
-                .collect(Collectors.toList());
+        return userStorage.getByIds(user.getFriends());
     }
 
     public User createUser(User user) {
-        user.setFriends(new HashSet<>());
+        user.setFriends(new IdSet());
         return userStorage.create(user);
     }
 
+    public List<User> createUsers(List<User> users) {
+        List<User> createdUsers = userStorage.createAll(users);
+        log.debug("Создано пользователей: {}", createdUsers.size());
+        return createdUsers;
+    }
+
     public User updateUser(User user) {
         if (user.getFriends() == null) {
-            user.setFriends(new HashSet<>());
+            user.setFriends(new IdSet());
         }
         return userStorage.update(user).orElseThrow(()
                 -> new UserNotFoundException("Пользователь с ID = " + user.getId() + " не найден."));
@@ -62,15 +101,35 @@ public class UserService {
         User friend = checkUserId(friendId);
 
         userStorage.addFriend(user, friend);
+        friendsTimeline.addFriend(userId, friendId);
 
         log.debug("Добавлен в друзья пользователь ID = {} пользователю: {}", friendId, user);
     }
 
+    // существование всех пользователей пачки проверяется одним запросом, пачка записывается целиком или не записывается
+    public void addFriends(List<Friendship> friendships) {
+        Set<Integer> userIds = new HashSet<>();
+        friendships.forEach(friendship -> {
+            userIds.add(friendship.getUserId());
+            userIds.add(friendship.getFriendId());
+        });
+        userIds.removeAll(userStorage.findExistingIds(userIds));
+        if (!userIds.isEmpty()) {
+            throw new UserNotFoundException("Пользователи с ID = " + new TreeSet<>(userIds) + " не найдены.");
+        }
+
+        userStorage.addFriends(friendships);
+        friendsTimeline.addFriends(friendships);
+
+        log.debug("Добавлено дружб: {}", friendships.size());
+    }
+
     public void removeFriend(int userId, int friendId) {
         User user = checkUserId(userId);
         User friend = checkUserId(friendId);
 
         userStorage.removeFriend(user, friend);
+        friendsTimeline.removeFriend(userId, friendId);
 
         log.debug("Удален из друзей пользователь ID = {} у пользователя: {}", friendId, user);
     }
@@ -79,26 +138,35 @@ public class UserService {
         User user = checkUserId(userId);
         User otherUser = checkUserId(otherUserId);
 
-        Set<Integer> commonFriendIds = new HashSet<>(user.getFriends());
-        Set<Integer> otherUserFriendIds = otherUser.getFriends();
+        // пересечение отсортированных массивов без упаковки идентификаторов в Integer
+        IdSet commonFriendIds = user.getFriends().intersect(otherUser.getFriends());
 
-        commonFriendIds.retainAll(otherUserFriendIds);
-
-        return commonFriendIds.stream()
-                .map(this::checkUserId)
-                .collect(Collectors.toList());
+        return userStorage.getByIds(commonFriendIds);
     }
 
     public void removeUser(int userId) {
         User user = checkUserId(userId);
+        IdSet likedFilmIds = filmStorage.getLikedFilmIds(userId);
 
         userStorage.removeUser(userId);
+        popularFilmsIndex.refresh(likedFilmIds);
+        filmRecommendationIndex.removeUser(userId);
+        friendsTimeline.removeUser(userId);
 
         log.debug("Удален пользователь {}", user);
     }
 
     public List<Film> getFilmRecommendations(int userId) {
         checkUserId(userId);
+        if (filmRecommendationIndex.isReady()) {
+            List<Integer> filmIds = filmRecommendationIndex.recommend(userId);
+            Map<Integer, Film> films = new HashMap<>();
+            filmStorage.getByIds(filmIds).forEach(film -> films.put(film.getId(), film));
+            // сохраняем порядок рекомендаций, фильмы, удаленные после расчета, пропускаем
+            List<Film> recommended = new ArrayList<>();
+            filmIds.stream().map(films::get).filter(Objects::nonNull).forEach(recommended::add);
+            return recommended;
+        }
         try {
             return filmStorage.getFilmRecommendations(userId);
         } catch (EmptyResultDataAccessException e) {
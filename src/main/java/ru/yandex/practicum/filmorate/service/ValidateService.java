@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.FilmValidationException;
+import ru.yandex.practicum.filmorate.exception.UserValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 
@@ -26,4 +27,14 @@ public class ValidateService {
                     "Дата релиза должна быть больше 28 декабря 1895 года - день рождения кино");
         }
     }
+
+    // ленту пользователя отдает потоковый ответ, поэтому параметры проверяются до его создания
+    public void validateFeedPage(Long since, Long before, Integer limit) {
+        if (limit != null && limit <= 0) {
+            throw new UserValidationException("Параметр limit должен быть положительным числом");
+        }
+        if (since != null && before != null && since >= before) {
+            throw new UserValidationException("Параметр since должен быть меньше before");
+        }
+    }
 }
\ No newline at end of file
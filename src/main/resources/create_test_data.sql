@@ -67,6 +67,9 @@ values (2,4);
 insert into film_like (film_id, user_id)
 values (3,3);
 
+update film f
+set like_count = (select count(*) from film_like fl where fl.film_id = f.film_id);
+
 insert into director (name)
 values('Director1'),
       ('Director2'),
@@ -118,6 +121,9 @@ insert into review_like (review_id, user_id, score) values (6, 1, 1);
 insert into review_like (review_id, user_id, score) values (6, 2, 1);
 insert into review_like (review_id, user_id, score) values (6, 3, 1);
 
+update review r
+set useful = (select coalesce(sum(rl.score), 0) from review_like rl where rl.review_id = r.review_id);
+
 insert into event (user_id, event_type, action_type, entity_id, event_dttm)
 values (1,'LIKE','ADD',1,now());
 insert into event (user_id, event_type, action_type, entity_id, event_dttm)
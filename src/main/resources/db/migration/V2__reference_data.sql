@@ -0,0 +1,12 @@
+insert into genre (name) values ('Комедия');
+insert into genre (name) values ('Драма');
+insert into genre (name) values ('Мультфильм');
+insert into genre (name) values ('Триллер');
+insert into genre (name) values ('Документальный');
+insert into genre (name) values ('Боевик');
+
+insert into rating (name) values ('G');
+insert into rating (name) values ('PG');
+insert into rating (name) values ('PG-13');
+insert into rating (name) values ('R');
+insert into rating (name) values ('NC-17');
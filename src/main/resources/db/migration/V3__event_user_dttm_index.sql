@@ -0,0 +1,2 @@
+-- Лента пользователя выбирается по user_id и упорядочивается по времени события
+CREATE INDEX IF NOT EXISTS event_user_dttm_idx ON event (user_id, event_dttm, event_id);
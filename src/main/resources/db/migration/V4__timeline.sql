@@ -0,0 +1,7 @@
+-- Сохраненные ленты друзей: идентификаторы событий, разосланных подписчикам при записи
+CREATE TABLE IF NOT EXISTS timeline (
+  user_id integer REFERENCES filmorate_user (user_id) ON DELETE CASCADE ON UPDATE CASCADE,
+  event_id integer REFERENCES event (event_id) ON DELETE CASCADE ON UPDATE CASCADE,
+  author_id integer,
+  PRIMARY KEY (user_id, event_id)
+);
@@ -0,0 +1,8 @@
+-- Полезность отзыва хранится в самом отзыве и меняется вместе с оценками, а не считается по review_like при чтении
+ALTER TABLE review ADD COLUMN IF NOT EXISTS useful integer DEFAULT 0 NOT NULL;
+
+UPDATE review r
+SET useful = (SELECT COALESCE(SUM(rl.score), 0) FROM review_like rl WHERE rl.review_id = r.review_id);
+
+CREATE INDEX IF NOT EXISTS review_film_useful_idx ON review (reviewed_film_id, useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS review_useful_idx ON review (useful DESC, review_id);
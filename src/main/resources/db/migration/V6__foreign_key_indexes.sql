@@ -0,0 +1,12 @@
+-- Индексы для выборок и каскадных удалений по внешним ключам, которые не покрываются первичными ключами.
+-- review.reviewed_film_id и event.user_id уже покрыты review_film_useful_idx и event_user_dttm_idx
+CREATE INDEX IF NOT EXISTS film_like_user_idx ON film_like (user_id, film_id);
+CREATE INDEX IF NOT EXISTS friend_friend_user_idx ON friend (friend_user_id, user_id);
+CREATE INDEX IF NOT EXISTS film_x_genre_genre_idx ON film_x_genre (genre_id, film_id);
+CREATE INDEX IF NOT EXISTS film_x_director_director_idx ON film_x_director (director_id, film_id);
+CREATE INDEX IF NOT EXISTS review_creator_idx ON review (creator_user_id);
+CREATE INDEX IF NOT EXISTS review_like_user_idx ON review_like (user_id, review_id);
+CREATE INDEX IF NOT EXISTS timeline_event_idx ON timeline (event_id);
+
+-- популярные фильмы за год выбираются по диапазону дат релиза
+CREATE INDEX IF NOT EXISTS film_release_dt_idx ON film (release_dt);
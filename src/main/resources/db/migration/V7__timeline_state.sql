@@ -0,0 +1,6 @@
+-- Последнее событие, разосланное в ленты друзей к моменту их сохранения: при старте рассылаются только
+-- более поздние события, даже если у их авторов нет подписчиков и в ленты они не попали
+CREATE TABLE IF NOT EXISTS timeline_state (
+  state_id integer PRIMARY KEY,
+  last_event_id integer NOT NULL
+);
@@ -0,0 +1,7 @@
+-- Число лайков хранится в самом фильме и меняется вместе с film_like, а не считается при чтении популярных
+ALTER TABLE film ADD COLUMN IF NOT EXISTS like_count integer DEFAULT 0 NOT NULL;
+
+UPDATE film f
+SET like_count = (SELECT COUNT(*) FROM film_like fl WHERE fl.film_id = f.film_id);
+
+CREATE INDEX IF NOT EXISTS film_like_count_idx ON film (like_count DESC, film_id);
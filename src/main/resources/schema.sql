@@ -1,3 +1,5 @@
+DROP TABLE IF EXISTS timeline_state;
+DROP TABLE IF EXISTS timeline;
 DROP TABLE IF EXISTS friend;
 DROP TABLE IF EXISTS film_like;
 DROP TABLE IF EXISTS film_x_genre;
@@ -27,15 +29,21 @@ CREATE TABLE IF NOT EXISTS film (
   description varchar,
   release_dt date,
   duration integer,
-  rating_id integer REFERENCES rating (rating_id)
+  rating_id integer REFERENCES rating (rating_id),
+  like_count integer DEFAULT 0 NOT NULL
 );
 
+CREATE INDEX IF NOT EXISTS film_like_count_idx ON film (like_count DESC, film_id);
+CREATE INDEX IF NOT EXISTS film_release_dt_idx ON film (release_dt);
+
 CREATE TABLE IF NOT EXISTS film_x_genre (
   film_id integer REFERENCES film (film_id) ON DELETE CASCADE ON UPDATE CASCADE,
   genre_id integer REFERENCES genre (genre_id),
   PRIMARY KEY (film_id, genre_id)
 );
 
+CREATE INDEX IF NOT EXISTS film_x_genre_genre_idx ON film_x_genre (genre_id, film_id);
+
 CREATE TABLE IF NOT EXISTS filmorate_user (
   user_id integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
   email varchar,
@@ -50,6 +58,8 @@ CREATE TABLE IF NOT EXISTS film_like (
   PRIMARY KEY (film_id, user_id)
 );
 
+CREATE INDEX IF NOT EXISTS film_like_user_idx ON film_like (user_id, film_id);
+
 CREATE TABLE IF NOT EXISTS friend (
   user_id integer REFERENCES filmorate_user (user_id) ON DELETE CASCADE ON UPDATE CASCADE,
   friend_user_id integer REFERENCES filmorate_user (user_id) ON DELETE CASCADE ON UPDATE CASCADE,
@@ -57,15 +67,22 @@ CREATE TABLE IF NOT EXISTS friend (
   PRIMARY KEY (user_id, friend_user_id)
 );
 
+CREATE INDEX IF NOT EXISTS friend_friend_user_idx ON friend (friend_user_id, user_id);
+
 
 CREATE TABLE review (
   review_id integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
   creator_user_id integer REFERENCES filmorate_user (user_id) ON DELETE CASCADE ON UPDATE CASCADE,
   reviewed_film_id integer REFERENCES film (film_id) ON DELETE CASCADE ON UPDATE CASCADE,
   content varchar,
-  is_positive boolean
+  is_positive boolean,
+  useful integer DEFAULT 0 NOT NULL
 );
 
+CREATE INDEX IF NOT EXISTS review_film_useful_idx ON review (reviewed_film_id, useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS review_useful_idx ON review (useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS review_creator_idx ON review (creator_user_id);
+
 CREATE TABLE review_like (
   review_id integer REFERENCES review (review_id) ON DELETE CASCADE ON UPDATE CASCADE,
   user_id integer REFERENCES filmorate_user (user_id) ON DELETE CASCADE ON UPDATE CASCADE,
@@ -73,6 +90,8 @@ CREATE TABLE review_like (
   PRIMARY KEY (review_id, user_id)
 );
 
+CREATE INDEX IF NOT EXISTS review_like_user_idx ON review_like (user_id, review_id);
+
 CREATE TABLE director (
   director_id integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
   name varchar
@@ -84,6 +103,8 @@ CREATE TABLE film_x_director (
   PRIMARY KEY (film_id, director_id)
 );
 
+CREATE INDEX IF NOT EXISTS film_x_director_director_idx ON film_x_director (director_id, film_id);
+
 CREATE TABLE event (
   event_id integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
   user_id integer REFERENCES filmorate_user (user_id) ON DELETE CASCADE ON UPDATE CASCADE,
@@ -92,3 +113,19 @@ CREATE TABLE event (
   entity_id integer,
   event_dttm timestamp
 );
+
+CREATE INDEX IF NOT EXISTS event_user_dttm_idx ON event (user_id, event_dttm, event_id);
+
+CREATE TABLE timeline (
+  user_id integer REFERENCES filmorate_user (user_id) ON DELETE CASCADE ON UPDATE CASCADE,
+  event_id integer REFERENCES event (event_id) ON DELETE CASCADE ON UPDATE CASCADE,
+  author_id integer,
+  PRIMARY KEY (user_id, event_id)
+);
+
+CREATE INDEX IF NOT EXISTS timeline_event_idx ON timeline (event_id);
+
+CREATE TABLE timeline_state (
+  state_id integer PRIMARY KEY,
+  last_event_id integer NOT NULL
+);
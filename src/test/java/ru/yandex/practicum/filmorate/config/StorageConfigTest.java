@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.dao.impl.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.dao.impl.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+@SpringBootTest(properties = StorageConfig.PROPERTY + "=in-memory")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class StorageConfigTest {
+    @Qualifier("filmStorage")
+    private final FilmStorage filmStorage;
+    @Qualifier("userStorage")
+    private final UserStorage userStorage;
+    private final InMemoryUserStorage inMemoryUserStorage;
+    private final UserService userService;
+
+    @Test
+    public void testInMemoryStoragesWiredIntoServices() {
+        assertInstanceOf(InMemoryFilmStorage.class, filmStorage);
+        assertInstanceOf(InMemoryUserStorage.class, userStorage);
+
+        User user = userService.createUser(User.builder()
+                .email("memory@yandex.ru")
+                .login("memory")
+                .name("memory")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+
+        assertEquals(Optional.of(user), inMemoryUserStorage.getById(user.getId()));
+        userService.removeUser(user.getId());
+        assertEquals(Optional.empty(), inMemoryUserStorage.getById(user.getId()));
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.jdbc.SqlGroup;
+import ru.yandex.practicum.filmorate.dao.impl.CachedGenreStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@SqlGroup({
+        @Sql(scripts = "classpath:schema.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+        @Sql(scripts = "classpath:create_test_data.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class StorageMetricsAspectTest {
+    private final FilmDbStorage filmDbStorage;
+    private final CachedGenreStorage cachedGenreStorage;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    void testStorageCallsAreTimed() {
+        long before = count("getById");
+        double rowsBefore = rows("get");
+
+        filmDbStorage.getById(1);
+        filmDbStorage.getById(-1);
+        filmDbStorage.get();
+
+        assertEquals(before + 2, count("getById"));
+        assertEquals(rowsBefore + 3, rows("get"));
+    }
+
+    @Test
+    void testReferenceCachesArePublished() {
+        cachedGenreStorage.getById(1);
+        cachedGenreStorage.getById(1);
+
+        assertNotNull(meterRegistry.find("cache.gets").tags("cache", "genres.byId", "result", "hit").functionCounter());
+        assertTrue(meterRegistry.find("cache.gets").tags("cache", "genres.byId", "result", "hit")
+                .functionCounter().count() >= 1);
+    }
+
+    private double rows(String method) {
+        DistributionSummary rows = meterRegistry.find(StorageMetricsAspect.ROWS)
+                .tags("storage", "FilmDbStorage", "method", method)
+                .summary();
+        return rows == null ? 0 : rows.totalAmount();
+    }
+
+    private long count(String method) {
+        Timer timer = meterRegistry.find(StorageMetricsAspect.TIMER)
+                .tags("storage", "FilmDbStorage", "method", method, "outcome", "success")
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -269,7 +269,7 @@ class FilmControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
 
-        verify(filmService, times(1)).searchFilms(query, false, true);
+        verify(filmService, times(1)).searchFilms(query, false, true, false);
     }
 
     @Test
@@ -282,7 +282,7 @@ class FilmControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
 
-        verify(filmService, times(1)).searchFilms(query, true, false);
+        verify(filmService, times(1)).searchFilms(query, true, false, false);
     }
 
     @Test
@@ -295,7 +295,7 @@ class FilmControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
 
-        verify(filmService, times(1)).searchFilms(query, true, true);
+        verify(filmService, times(1)).searchFilms(query, true, true, false);
     }
 
     @Test
@@ -308,6 +308,62 @@ class FilmControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
 
-        verify(filmService, times(1)).searchFilms(query, false, false);
+        verify(filmService, times(1)).searchFilms(query, false, false, false);
     }
-}
\ No newline at end of file
+
+    @Test
+    @SneakyThrows
+    void testSearchDescription() {
+        String query = "film";
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/films/search?query=" + query + "&by=description"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray());
+
+        verify(filmService, times(1)).searchFilms(query, false, false, true);
+    }
+
+    @Test
+    @SneakyThrows
+    void testCreateFilmsFromArrayAndNdjson() {
+        int[] nextId = {1};
+        when(filmService.createFilms(any())).thenAnswer(invocation -> {
+            List<Film> films = invocation.getArgument(0);
+            films.forEach(film -> film.setId(nextId[0]++));
+            return films;
+        });
+        Film first = Film.builder().name("first").description("description").releaseDate(LocalDate.of(2000, 1, 1)).duration(100).build();
+        Film second = Film.builder().name("second").description("description").releaseDate(LocalDate.of(2001, 1, 1)).duration(90).build();
+
+        mockMvc.perform(post("/films/bulk").contentType("application/json")
+                        .content(objectMapper.writeValueAsString(List.of(first, second))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0]").value(1))
+                .andExpect(jsonPath("$[1]").value(2));
+
+        mockMvc.perform(post("/films/bulk").contentType("application/x-ndjson")
+                        .content(objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second) + "\n"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[0]").value(3))
+                .andExpect(jsonPath("$[1]").value(4));
+
+        verify(filmService, times(2)).createFilms(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void testCreateFilmsWithInvalidFilm() {
+        Film valid = Film.builder().name("name").description("description").releaseDate(LocalDate.of(2000, 1, 1)).duration(100).build();
+        Film invalid = Film.builder().description("description").releaseDate(LocalDate.of(2000, 1, 1)).duration(100).build();
+
+        mockMvc.perform(post("/films/bulk").contentType("application/json")
+                        .content(objectMapper.writeValueAsString(List.of(valid, invalid))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/films/bulk").contentType("application/json").content("[{\"name\": "))
+                .andExpect(status().isBadRequest());
+
+        verify(filmService, never()).createFilms(any());
+    }
+}
@@ -12,6 +12,9 @@ import org.springframework.test.context.jdbc.SqlConfig;
 import org.springframework.test.context.jdbc.SqlGroup;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
+
+import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -201,4 +204,58 @@ class ReviewControllerTest {
                 .andExpect(content().contentType("application/json"))
                 .andExpect(jsonPath("$.useful").value("-1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldKeepUsefulWhenVoterRemoved() throws Exception {
+        mockMvc.perform(delete("/users/{id}", 4))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/reviews/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value("3"));
+
+        mockMvc.perform(get("/reviews?count=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].reviewId").value("1"))
+                .andExpect(jsonPath("$[0].useful").value("3"))
+                .andExpect(jsonPath("$[1].reviewId").value("2"));
+    }
+
+    @Test
+    void shouldSwitchVoteIdempotently() throws Exception {
+        mockMvc.perform(put("/reviews/{id}/dislike/{userId}", 6, 1))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/reviews/{id}/dislike/{userId}", 6, 1))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/reviews/6"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value("1"));
+
+        mockMvc.perform(put("/reviews/{id}/like/{userId}", 10, 1))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldApplyVotesInBulk() throws Exception {
+        List<ReviewVote> votes = List.of(
+                new ReviewVote(6L, 4, true),
+                new ReviewVote(6L, 1, true),
+                new ReviewVote(6L, 1, false),
+                new ReviewVote(3L, 1, true),
+                new ReviewVote(99L, 1, true),
+                new ReviewVote(6L, 99, true));
+
+        mockMvc.perform(post("/reviews/votes")
+                        .content(objectMapper.writeValueAsString(votes))
+                        .contentType("application/json"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value("3"))
+                .andExpect(jsonPath("$.skipped").value("3"));
+
+        mockMvc.perform(get("/reviews/6"))
+                .andExpect(jsonPath("$.useful").value("2"));
+        mockMvc.perform(get("/reviews/3"))
+                .andExpect(jsonPath("$.useful").value("0"));
+    }
+}
@@ -8,10 +8,13 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.yandex.practicum.filmorate.enums.ActionType;
 import ru.yandex.practicum.filmorate.enums.EventType;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.EventService;
 import ru.yandex.practicum.filmorate.service.UserService;
@@ -19,19 +22,27 @@ import ru.yandex.practicum.filmorate.service.UserService;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -238,14 +249,78 @@ class UserControllerTest {
         int userId = 1;
 
         when(userService.findById(userId)).thenReturn(null);
-        when(eventService.findByUserId(userId)).thenReturn(Collections.emptyList());
 
-        mockMvc.perform(get("/users/" + userId + "/feed"))
+        MvcResult result = mockMvc.perform(get("/users/" + userId + "/feed"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
 
         verify(userService).findById(userId);
-        verify(eventService).findByUserId(userId);
+        verify(eventService).streamByUserId(eq(userId), isNull(), isNull(), isNull(), any());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testGetEventsStreamsPage() {
+        int userId = 1;
+        doAnswer(invocation -> {
+            Consumer<Event> consumer = invocation.getArgument(4);
+            consumer.accept(Event.builder().eventId(1).userId(userId).eventDateTime(1000L).build());
+            consumer.accept(Event.builder().eventId(2).userId(userId).eventDateTime(2000L).build());
+            return null;
+        }).when(eventService).streamByUserId(eq(userId), eq(1000L), eq(3000L), eq(2), any());
+
+        MvcResult result = mockMvc.perform(get("/users/" + userId + "/feed")
+                        .param("since", "1000")
+                        .param("before", "3000")
+                        .param("limit", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].eventId").value(1))
+                .andExpect(jsonPath("$[1].timestamp").value(2000));
+    }
+
+    @Test
+    @SneakyThrows
+    public void testGetEventsWithNonPositiveLimit() {
+        mockMvc.perform(get("/users/1/feed").param("limit", "0"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(eventService);
+    }
+
+    @Test
+    @SneakyThrows
+    public void testGetEventsWithSinceNotBeforeBefore() {
+        mockMvc.perform(get("/users/1/feed")
+                        .param("since", "3000")
+                        .param("before", "3000"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(eventService);
+    }
+
+    @Test
+    @SneakyThrows
+    public void testGetFriendsEvents() {
+        int userId = 1;
+        when(eventService.findFriendsFeed(userId, 10, 5))
+                .thenReturn(List.of(Event.builder().eventId(9).userId(2).build()));
+
+        mockMvc.perform(get("/users/" + userId + "/feed/friends")
+                        .param("beforeId", "10")
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].eventId").value(9));
+
+        verify(userService).findById(userId);
     }
 
     @Test
@@ -271,4 +346,46 @@ class UserControllerTest {
         mockMvc.perform(get("/users" + userId + "/recommendations"))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    @Test
+    @SneakyThrows
+    public void testCreateUsersFromNdjson() {
+        int[] nextId = {1};
+        when(userService.createUsers(any())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            users.forEach(user -> user.setId(nextId[0]++));
+            return users;
+        });
+        User first = User.builder().email("first@yandex.ru").login("first").birthday(LocalDate.of(2000, 1, 1)).build();
+        User second = User.builder().email("second@yandex.ru").login("second").birthday(LocalDate.of(2000, 1, 1)).build();
+
+        mockMvc.perform(post("/users/bulk").contentType("application/x-ndjson")
+                        .content(objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[0]").value(1))
+                .andExpect(jsonPath("$[1]").value(2));
+
+        mockMvc.perform(post("/users/bulk").contentType("application/json")
+                        .content("[{\"email\": \"wrong\", \"login\": \"login\"}]"))
+                .andExpect(status().isBadRequest());
+
+        verify(userService, times(1)).createUsers(any());
+    }
+
+    @Test
+    @SneakyThrows
+    public void testAddFriendsWithAndWithoutEvents() {
+        String friendships = objectMapper.writeValueAsString(List.of(new Friendship(1, 2), new Friendship(2, 3)));
+
+        mockMvc.perform(post("/users/friends/bulk").contentType("application/json").content(friendships))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(2));
+        verify(eventService).createEvent(1, ActionType.ADD, EventType.FRIEND, 2);
+        verify(eventService).createEvent(2, ActionType.ADD, EventType.FRIEND, 3);
+
+        mockMvc.perform(post("/users/friends/bulk?events=false").contentType("application/json").content(friendships))
+                .andExpect(status().isOk());
+        verify(userService, times(2)).addFriends(List.of(new Friendship(1, 2), new Friendship(2, 3)));
+        verify(eventService, times(2)).createEvent(anyInt(), any(), any(), anyLong());
+    }
+}
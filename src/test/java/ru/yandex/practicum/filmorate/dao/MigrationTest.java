@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationTest {
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:migration" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void testMigrationsKeepDataOnRestart() {
+        migrate();
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, name, birth_dt) " +
+                "VALUES ('test@test.test', 'login', 'name', '2000-01-01')");
+
+        // повторный запуск приложения не должен удалять данные
+        migrate();
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM filmorate_user", Integer.class));
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM genre", Integer.class));
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rating", Integer.class));
+    }
+
+    @Test
+    void testExistingSchemaIsBaselined() {
+        // БД, созданная до перехода на миграции через исходные schema.sql и data.sql
+        jdbcTemplate.execute("RUNSCRIPT FROM 'classpath:migration/baseline_schema.sql'");
+        jdbcTemplate.execute("RUNSCRIPT FROM 'classpath:data.sql' CHARSET 'UTF-8'");
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, name, birth_dt) " +
+                "VALUES ('first@test.test', 'first', 'first', '2000-01-01'), " +
+                "('second@test.test', 'second', 'second', '2000-01-01')");
+        jdbcTemplate.update("INSERT INTO film (name, description, release_dt, duration, rating_id) " +
+                "VALUES ('film', 'description', '2000-01-01', 100, 1)");
+        jdbcTemplate.update("INSERT INTO film_like (film_id, user_id) VALUES (1, 1), (1, 2)");
+
+        migrate();
+
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM genre", Integer.class));
+        // счетчик лайков добавляется миграцией и заполняется по существующим лайкам
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE film_id = 1", Integer.class));
+        List<String> indexes = jdbcTemplate.queryForList("SELECT index_name FROM information_schema.indexes " +
+                "WHERE table_schema = 'PUBLIC'", String.class);
+        assertTrue(indexes.contains("FILM_LIKE_COUNT_IDX"), indexes.toString());
+    }
+
+    @Test
+    void testForeignKeyIndexesCreated() {
+        migrate();
+
+        List<String> indexes = jdbcTemplate.queryForList("SELECT index_name FROM information_schema.indexes " +
+                "WHERE table_schema = 'PUBLIC'", String.class);
+        assertTrue(indexes.containsAll(List.of("FILM_LIKE_USER_IDX", "FRIEND_FRIEND_USER_IDX",
+                "FILM_X_GENRE_GENRE_IDX", "FILM_X_DIRECTOR_DIRECTOR_IDX", "REVIEW_CREATOR_IDX",
+                "REVIEW_LIKE_USER_IDX", "TIMELINE_EVENT_IDX", "FILM_RELEASE_DT_IDX")), indexes.toString());
+    }
+
+    private void migrate() {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("2")
+                .load()
+                .migrate();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.dao.DirectorStorage;
+import ru.yandex.practicum.filmorate.model.Director;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachedDirectorStorageTest {
+    private final DirectorStorage directorStorage = Mockito.mock(DirectorStorage.class);
+    private final CachedDirectorStorage cachedDirectorStorage =
+            new CachedDirectorStorage(directorStorage, 10, Duration.ofMinutes(1));
+
+    private final Director director = new Director(1, "Director1");
+
+    @Test
+    void getByIdIsCached() {
+        when(directorStorage.getById(1)).thenReturn(Optional.of(director));
+
+        assertEquals(Optional.of(director), cachedDirectorStorage.getById(1));
+        assertEquals(Optional.of(director), cachedDirectorStorage.getById(1));
+
+        verify(directorStorage, times(1)).getById(1);
+        assertEquals(1, cachedDirectorStorage.getCache().stats().hitCount());
+        assertEquals(1, cachedDirectorStorage.getCache().stats().missCount());
+    }
+
+    @Test
+    void missingDirectorIsNotCached() {
+        when(directorStorage.getById(2)).thenReturn(Optional.empty());
+
+        cachedDirectorStorage.getById(2);
+        cachedDirectorStorage.getById(2);
+
+        verify(directorStorage, times(2)).getById(2);
+    }
+
+    @Test
+    void updateInvalidatesCache() {
+        Director renamed = new Director(1, "Renamed");
+        when(directorStorage.getById(1)).thenReturn(Optional.of(director), Optional.of(renamed));
+        when(directorStorage.get()).thenReturn(List.of(director), List.of(renamed));
+        when(directorStorage.udpate(renamed)).thenReturn(Optional.of(renamed));
+
+        cachedDirectorStorage.getById(1);
+        cachedDirectorStorage.get();
+        cachedDirectorStorage.udpate(renamed);
+
+        assertEquals(Optional.of(renamed), cachedDirectorStorage.getById(1));
+        assertEquals(List.of(renamed), cachedDirectorStorage.get());
+    }
+
+    @Test
+    void deleteInvalidatesCache() {
+        when(directorStorage.get()).thenReturn(List.of(director), List.of());
+
+        assertEquals(List.of(director), cachedDirectorStorage.get());
+        cachedDirectorStorage.delete(1);
+
+        assertEquals(List.of(), cachedDirectorStorage.get());
+        verify(directorStorage, times(2)).get();
+    }
+
+    @Test
+    void valueLoadedBeforeInvalidationIsReloaded() {
+        Director renamed = new Director(1, "Renamed");
+        // загрузка старого значения пересекается с обновлением режиссера в другом запросе
+        when(directorStorage.getById(1)).thenAnswer(invocation -> {
+            cachedDirectorStorage.getCache().invalidateAll();
+            return Optional.of(director);
+        }).thenReturn(Optional.of(renamed));
+        when(directorStorage.get()).thenAnswer(invocation -> {
+            cachedDirectorStorage.getCache().invalidateAll();
+            return List.of(director);
+        }).thenReturn(List.of(renamed));
+
+        assertEquals(Optional.of(director), cachedDirectorStorage.getById(1));
+        assertEquals(Optional.of(renamed), cachedDirectorStorage.getById(1));
+        assertEquals(Optional.of(renamed), cachedDirectorStorage.getById(1));
+        assertEquals(List.of(director), cachedDirectorStorage.get());
+        assertEquals(List.of(renamed), cachedDirectorStorage.get());
+        assertEquals(List.of(renamed), cachedDirectorStorage.get());
+
+        verify(directorStorage, times(2)).getById(1);
+        verify(directorStorage, times(2)).get();
+    }
+}
@@ -12,8 +12,11 @@ import ru.yandex.practicum.filmorate.enums.ActionType;
 import ru.yandex.practicum.filmorate.enums.EventType;
 import ru.yandex.practicum.filmorate.model.*;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -56,6 +59,47 @@ class EventDbStorageTest {
         assertEquals(2, events.size());
     }
 
+    @Test
+    public void testCreateAllAssignsIds() {
+        List<Event> events = List.of(event(2, 1_000), event(3, 2_000));
+
+        eventDbStorage.createAll(events);
+
+        assertEquals(3, events.get(0).getEventId());
+        assertEquals(4, events.get(1).getEventId());
+        assertEquals(List.of(3, 4), eventDbStorage.getPage(2, 10).stream()
+                .map(Event::getEventId).collect(Collectors.toList()));
+        assertEquals(2, eventDbStorage.getByIds(List.of(1, 4, 999)).size());
+    }
+
+    @Test
+    public void testGetLastByUserId() {
+        long start = System.currentTimeMillis() + 60_000;
+        eventDbStorage.createAll(List.of(event(2, start), event(2, start + 1_000), event(2, start + 2_000)));
+
+        List<Long> times = eventDbStorage.getLastByUserId(2, 2).stream()
+                .map(Event::getEventDateTime).collect(Collectors.toList());
+
+        assertEquals(List.of(start + 2_000, start + 1_000), times);
+    }
+
+    @Test
+    public void testStreamByUserIdOrdersAndFiltersByTime() {
+        long start = System.currentTimeMillis() + 60_000;
+        eventDbStorage.createAll(List.of(
+                event(2, start + 2_000),
+                event(2, start),
+                event(2, start + 1_000),
+                event(3, start + 1_000)));
+
+        assertEquals(List.of(start, start + 1_000, start + 2_000), stream(2, null, null, null));
+        assertEquals(List.of(start + 1_000, start + 2_000), stream(2, start + 1_000, null, null));
+        assertEquals(List.of(start, start + 1_000), stream(2, null, start + 2_000, null));
+        assertEquals(List.of(start), stream(2, null, null, 1));
+        assertEquals(List.of(start + 1_000), stream(2, start + 500, start + 1_500, 10));
+        assertTrue(stream(4, null, null, null).isEmpty());
+    }
+
 
     @Test
     public void testCreateEvent() {
@@ -74,4 +118,20 @@ class EventDbStorageTest {
         assertEquals(entityId, createdEvent.getEntityId());
     }
 
+    private List<Long> stream(int userId, Long since, Long before, Integer limit) {
+        List<Long> times = new ArrayList<>();
+        eventDbStorage.streamByUserId(userId, since, before, limit, event -> times.add(event.getEventDateTime()));
+        return times;
+    }
+
+    private Event event(int userId, long eventDateTime) {
+        return Event.builder()
+                .userId(userId)
+                .eventType(EventType.FRIEND)
+                .actionType(ActionType.ADD)
+                .entityId(1)
+                .eventDateTime(eventDateTime)
+                .build();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.jdbc.SqlGroup;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@SqlGroup({
+        @Sql(scripts = "classpath:schema.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+        @Sql(scripts = "classpath:create_test_data.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmDbStorageQueryCountTest {
+    // выборка фильмов + жанры + режиссеры; лайки не загружаются
+    private static final int EXPECTED_QUERIES = 3;
+
+    private final DataSource dataSource;
+
+    private StatementCountingDataSource countingDataSource;
+    private FilmDbStorage filmDbStorage;
+
+    @BeforeEach
+    void setUp() {
+        countingDataSource = new StatementCountingDataSource(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(countingDataSource);
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate),
+                new CachedGenreStorage(new GenreDbStorage(jdbcTemplate), 100, Duration.ofMinutes(1)),
+                new CachedMPAStorage(new MPADbStorage(jdbcTemplate), 100, Duration.ofMinutes(1)),
+                new CachedDirectorStorage(new DirectorDbStorage(jdbcTemplate), 100, Duration.ofMinutes(1)));
+        // прогрев кэша справочников
+        filmDbStorage.get();
+    }
+
+    @Test
+    void testGetDoesNotDependOnFilmsCount() {
+        int queriesForFewFilms = countQueries(() -> filmDbStorage.get());
+
+        for (int i = 0; i < 20; i++) {
+            filmDbStorage.create(Film.builder()
+                    .name("Film " + i)
+                    .description("description " + i)
+                    .releaseDate(LocalDate.of(2000 + i, 1, 1))
+                    .duration(100)
+                    .mpa(new MPA(1, "G"))
+                    .genres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")))
+                    .directors(Set.of(new Director(1, "Director1")))
+                    .build());
+        }
+
+        int queriesForManyFilms = countQueries(() -> filmDbStorage.get());
+
+        assertEquals(23, filmDbStorage.get().size());
+        assertEquals(EXPECTED_QUERIES, queriesForFewFilms);
+        assertEquals(queriesForFewFilms, queriesForManyFilms);
+    }
+
+    @Test
+    void testSelectionsUseConstantNumberOfQueries() {
+        assertEquals(EXPECTED_QUERIES, countQueries(() -> filmDbStorage.getById(3).orElseThrow()));
+        assertEquals(EXPECTED_QUERIES, countQueries(() -> filmDbStorage.search("Director2", true, true, false)));
+        assertEquals(EXPECTED_QUERIES, countQueries(() -> filmDbStorage.getFilmsByDirector(2)));
+        assertEquals(EXPECTED_QUERIES, countQueries(() -> filmDbStorage.getPopularByGenreAndYear(10, 0, 0)));
+        assertEquals(EXPECTED_QUERIES, countQueries(() -> filmDbStorage.getCommonFilms(1, 2)));
+        assertEquals(EXPECTED_QUERIES, countQueries(() -> filmDbStorage.getFilmRecommendations(3)));
+    }
+
+    @Test
+    void testHydratedFilmMatchesStoredData() {
+        Film film = filmDbStorage.getById(3).orElseThrow();
+
+        assertEquals("PG-13", film.getMpa().getName());
+        assertEquals(List.of(2, 4, 5), film.getGenres().stream().map(Genre::getId).collect(Collectors.toList()));
+        assertEquals(List.of(2, 3), film.getDirectors().stream().map(Director::getId).collect(Collectors.toList()));
+        // лайки не читаются и при получении фильма по идентификатору, число лайков берется из like_count
+        assertNull(film.getLikes());
+        assertEquals(1, film.getLikeCount());
+        assertNull(filmDbStorage.getByIds(List.of(3)).get(0).getLikes());
+        assertEquals(1, filmDbStorage.getByIds(List.of(3)).get(0).getLikeCount());
+    }
+
+    @Test
+    void testUpdateWritesOnlyChangedLinks() {
+        Film film = filmDbStorage.getById(3).orElseThrow();
+
+        // чтение текущих связей и числа лайков + обновление фильма
+        assertEquals(2, countQueries(() -> filmDbStorage.update(film).orElseThrow()));
+
+        film.setGenres(Set.of(new Genre(2, null), new Genre(4, null), new Genre(1, null)));
+        film.setDirectors(Set.of(new Director(2, null), new Director(3, null)));
+        // плюс по одной пачке вставки и удаления жанров
+        Film updated = countQueriesResult(() -> filmDbStorage.update(film).orElseThrow(), 4);
+
+        assertEquals(List.of(1, 2, 4), updated.getGenres().stream().map(Genre::getId).collect(Collectors.toList()));
+        assertEquals("PG-13", updated.getMpa().getName());
+        // лайки при обновлении не читаются, число лайков берется из like_count
+        assertNull(updated.getLikes());
+        assertEquals(1, updated.getLikeCount());
+
+        Film stored = filmDbStorage.getById(3).orElseThrow();
+        assertEquals(List.of(1, 2, 4), stored.getGenres().stream().map(Genre::getId).collect(Collectors.toList()));
+        assertEquals(List.of(2, 3), stored.getDirectors().stream().map(Director::getId).collect(Collectors.toList()));
+    }
+
+    private <T> T countQueriesResult(Supplier<T> action, int expectedQueries) {
+        countingDataSource.reset();
+        T result = action.get();
+        assertEquals(expectedQueries, countingDataSource.getCount());
+        return result;
+    }
+
+    private int countQueries(Supplier<?> action) {
+        countingDataSource.reset();
+        action.get();
+        return countingDataSource.getCount();
+    }
+
+    private static class StatementCountingDataSource extends DelegatingDataSource {
+        private final AtomicInteger statements = new AtomicInteger();
+
+        StatementCountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                            statements.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+
+        void reset() {
+            statements.set(0);
+        }
+
+        int getCount() {
+            return statements.get();
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Сценарии, общие для всех реализаций FilmStorage. Наследник перед каждым тестом заполняет хранилище
+// данными create_test_data.sql: три фильма, лайки пользователей 1-4 и режиссеры Director1-Director3
+abstract class FilmStorageContractTest {
+
+    protected abstract FilmStorage storage();
+
+    @Test
+    public void testGetFilms() {
+        Collection<Film> films = storage().get();
+        assertEquals(3, films.size());
+    }
+
+    @Test
+    public void testGetPage() {
+        List<Film> firstPage = storage().getPage(0, 2);
+        assertEquals(2, firstPage.size());
+        assertEquals(1, firstPage.get(0).getId());
+        assertEquals(2, firstPage.get(1).getId());
+
+        List<Film> secondPage = storage().getPage(2, 2);
+        assertEquals(1, secondPage.size());
+        assertEquals(3, secondPage.get(0).getId());
+        assertEquals(3, secondPage.get(0).getGenres().size());
+
+        assertTrue(storage().getPage(3, 2).isEmpty());
+    }
+
+    @Test
+    public void testGetFilmById() {
+        Optional<Film> filmOptional = storage().getById(1);
+
+        assertTrue(filmOptional.isPresent());
+        Film film = filmOptional.get();
+        assertEquals(1, film.getId());
+        assertEquals("1 film", film.getName());
+        assertEquals("1 film desc", film.getDescription());
+        assertEquals(LocalDate.of(2022, 01, 01), film.getReleaseDate());
+        assertEquals(180, film.getDuration());
+        assertEquals(1, film.getMpa().getId());
+        assertEquals("G", film.getMpa().getName());
+        assertEquals(1, film.getGenres().size());
+        assertEquals(1, film.getDirectors().size());
+
+    }
+
+    @Test
+    public void testGetFilmByIdNotFound() {
+        Optional<Film> film = storage().getById(999);
+
+        assertTrue(film.isEmpty());
+    }
+
+    @Test
+    public void testCreateFilm() {
+        Film film = Film.builder()
+                .name("New Film")
+                .releaseDate(LocalDate.of(2022, 01, 01))
+                .mpa(new MPA(1, "G"))
+                .genres(new HashSet<>(Arrays.asList(new Genre(1, "Комедия"), new Genre(2, "Драма"))))
+                .directors(new HashSet<>(Arrays.asList(
+                        new Director(1, "Режиссер1"),
+                        new Director(2, "Режиссер2"))))
+                .build();
+        Film createdFilm = storage().create(film);
+        assertNotNull(createdFilm);
+        assertTrue(createdFilm.getId() > 0);
+        assertEquals(film.getName(), createdFilm.getName());
+        assertEquals(film.getMpa().getId(), createdFilm.getMpa().getId());
+        assertEquals(film.getMpa().getName(), createdFilm.getMpa().getName());
+        assertEquals(film.getGenres().size(), createdFilm.getGenres().size());
+        assertEquals(film.getDirectors().size(), createdFilm.getDirectors().size());
+    }
+
+    @Test
+    public void testUpdateFilm() {
+        Film film = storage().getById(1).orElse(null);
+        assertNotNull(film);
+        film.setName("Updated Film");
+
+        Optional<Film> updatedFilmOptional = storage().update(film);
+        assertTrue(updatedFilmOptional.isPresent());
+        assertEquals(film.getName(), updatedFilmOptional.get().getName());
+    }
+
+    @Test
+    public void testUpdateFilmNotFound() {
+        Film film = Film.builder()
+                .name("New Film")
+                .releaseDate(LocalDate.of(2022, 01, 01))
+                .mpa(new MPA(1, "G"))
+                .genres(new HashSet<>(Arrays.asList(new Genre(1, "Комедия"), new Genre(2, "Драма"))))
+                .directors(new HashSet<>(Arrays.asList(
+                        new Director(1, "Режиссер1"),
+                        new Director(2, "Режиссер2"))))
+                .build();
+        film.setId(999);
+
+        Optional<Film> updatedFilm = storage().update(film);
+
+        assertTrue(updatedFilm.isEmpty());
+    }
+
+    @Test
+    public void testAddLike() {
+        Film film = storage().getById(3).orElse(null);
+        assertNotNull(film);
+
+        User user = User.builder()
+                .email("test1@test.test")
+                .login("login1")
+                .name("name1")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+        user.setId(1);
+
+        storage().addLike(film, user);
+        Film filmWithLike = storage().getById(3).orElse(null);
+        assertNotNull(filmWithLike);
+
+        assertEquals(2, filmWithLike.getLikeCount());
+        assertTrue(storage().getLikedFilmIds(1).contains(3));
+    }
+
+    @Test
+    public void testRemoveLike() {
+        Film film = storage().getById(1).orElse(null);
+        assertNotNull(film);
+
+        User user = User.builder()
+                .email("test1@test.test")
+                .login("login1")
+                .name("name1")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+        user.setId(1);
+
+        storage().removeLike(film, user);
+        Film filmWithoutLike = storage().getById(1).orElse(null);
+        assertNotNull(filmWithoutLike);
+
+        assertEquals(3, filmWithoutLike.getLikeCount());
+        assertFalse(storage().getLikedFilmIds(1).contains(1));
+    }
+
+    @Test
+    public void testLikeCountFollowsLikes() {
+        Film film = storage().getById(3).orElse(null);
+        assertNotNull(film);
+        assertEquals(1, film.getLikeCount());
+
+        User user = User.builder()
+                .email("test1@test.test")
+                .login("login1")
+                .name("name1")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+        user.setId(1);
+
+        storage().addLike(film, user);
+        storage().addLike(film, user);
+        assertEquals(2, storage().getById(3).get().getLikeCount());
+
+        storage().removeLike(film, user);
+        storage().removeLike(film, user);
+        assertEquals(1, storage().getById(3).get().getLikeCount());
+    }
+
+    @Test
+    void testPopularOrderedByLikeCount() {
+        List<Film> films = storage().getPopularByGenreAndYear(2, 0, 0);
+
+        assertEquals(2, films.size());
+        assertEquals(1, films.get(0).getId());
+        assertEquals(2, films.get(1).getId());
+    }
+
+    @Test
+    void getDirectorsOfFilm() {
+        List<Film> films1 = (List<Film>) storage().getFilmsByDirector(1);
+        assertEquals(films1.size(), 1);
+
+        List<Film> films2 = (List<Film>) storage().getFilmsByDirector(2);
+        assertEquals(films2.size(), 2);
+    }
+
+    @Test
+    void testgetPopularByGenreAndYear() {
+        Collection<Film> films = storage().getPopularByGenreAndYear(10, 2, 2020);
+        assertEquals(1, films.size());
+        assertEquals(3, ((List<Film>)films).get(0).getId());
+    }
+
+    @Test
+    void testgetPopularByGenre() {
+        Collection<Film> films = storage().getPopularByGenreAndYear(10, 3, 0);
+        assertEquals(1, films.size());
+        assertEquals(1, ((List<Film>)films).get(0).getId());
+    }
+
+    @Test
+    void testgetPopularByYear() {
+        Collection<Film> films = storage().getPopularByGenreAndYear(10, 0, 2021);
+        assertEquals(1, films.size());
+        assertEquals(2, ((List<Film>)films).get(0).getId());
+    }
+
+    @Test
+    void testgetPopular() {
+        Collection<Film> films = storage().getPopularByGenreAndYear(10, 0, 0);
+        assertEquals(3, films.size());
+        assertEquals(List.of(1, 2, 3), films.stream().map(Film::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRemoveFilm() {
+        Film film = storage().getById(1).orElse(null);
+        assertNotNull(film);
+
+        storage().removeFilm(1);
+        film = storage().getById(1).orElse(null);
+        assertNull(film);
+    }
+
+    @Test
+    public void testGetCommonFilms() {
+        Collection<Film> films = storage().getCommonFilms(1, 2);
+        assertEquals(2, films.size());
+    }
+
+    @Test
+    public void testGetFilmRecommendations() {
+        Film expectedFilm = listed(2).orElseThrow();
+        Collection<Film> films = storage().getFilmRecommendations(3);
+        Film actualFilm = films.iterator().next();
+
+        assertEquals(1, films.size());
+        assertEquals(expectedFilm, actualFilm);
+    }
+
+    @Test
+    void getFilmsByDirector() {
+        assertTrue(storage().getFilmsByDirector(2).size() == 2,
+                "Количество фильмов режиссера с id = 2 в БД не совпадает с добавленным количеством фильмов " +
+                        "в БД этого режиссера");
+
+        assertTrue(storage().getFilmsByDirector(3333).isEmpty(),
+                "Из БД получены фильмы несуществующего режиссера");
+    }
+
+    @Test
+    void testSearchByTitle() {
+        Collection<Film> films = storage().search("2 film", false, true, false);
+        assertEquals(1, films.size());
+        assertEquals(films.stream().findFirst(), listed(2));
+    }
+
+    @Test
+    void testSearchByDirector() {
+        Collection<Film> films = storage().search("Director2", true, false, false);
+        assertEquals(2, films.size());
+        assertEquals(films.stream().findFirst(), listed(2));
+        assertEquals(films.stream().skip(films.size() - 1).findFirst(), listed(3));
+    }
+
+    @Test
+    void testSearchByBoth() {
+        Collection<Film> filmsByDirector = storage().search("Director2", true, true, false);
+        assertEquals(2, filmsByDirector.size());
+        assertEquals(filmsByDirector.stream().findFirst(), listed(2));
+        assertEquals(filmsByDirector.stream().skip(filmsByDirector.size() - 1).findFirst(), listed(3));
+
+        Collection<Film> filmsByTitle = storage().search("2 film", true, true, false);
+        assertEquals(1, filmsByTitle.size());
+        assertEquals(filmsByTitle.stream().findFirst(), listed(2));
+    }
+
+    @Test
+    void testSearchByDescription() {
+        assertEquals(List.of(3), storage().search("3 FILM DESC", false, false, true).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        assertEquals(3, storage().search("desc", false, false, true).size());
+        assertTrue(storage().search("unknown", false, false, true).isEmpty());
+        assertEquals(List.of(2), storage().search("2 film desc", true, false, true).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testSearchByBothEmpty() {
+        Collection<Film> filmsByDirector = storage().search("unknown", true, true, false);
+        assertEquals(0, filmsByDirector.size());
+    }
+
+    // выборки списком в FilmDbStorage, в отличие от getById, лайки не загружают
+    private Optional<Film> listed(int filmId) {
+        return storage().getByIds(List.of(filmId)).stream().findFirst();
+    }
+}
@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Общие сценарии FilmStorageContractTest и проверки индексов хранилища в памяти
+// на данных, повторяющих create_test_data.sql
+class InMemoryFilmStorageTest extends FilmStorageContractTest {
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+
+    @BeforeEach
+    void setUp() {
+        filmStorage.create(film("1 film", LocalDate.of(2022, 1, 1), 180, new MPA(1, "G"),
+                Set.of(3), Set.of(1), Set.of(1, 2, 3, 4)));
+        filmStorage.create(film("2 film", LocalDate.of(2021, 1, 1), 120, new MPA(2, "PG"),
+                Set.of(1), Set.of(2), Set.of(1, 2, 4)));
+        filmStorage.create(film("3 film", LocalDate.of(2020, 1, 1), 150, new MPA(3, "PG-13"),
+                Set.of(2, 4, 5), Set.of(3, 2), Set.of(3)));
+    }
+
+    @Override
+    protected FilmStorage storage() {
+        return filmStorage;
+    }
+
+    @Test
+    void testPopularByGenreAndYear() {
+        assertEquals(List.of(3), ids(filmStorage.getPopularByGenreAndYear(10, 2, 2020)));
+        assertEquals(List.of(1), ids(filmStorage.getPopularByGenreAndYear(10, 3, 0)));
+        assertEquals(List.of(2), ids(filmStorage.getPopularByGenreAndYear(10, 0, 2021)));
+        assertTrue(filmStorage.getPopularByGenreAndYear(10, 2, 2021).isEmpty());
+    }
+
+    @Test
+    void testPopularFollowsLikes() {
+        filmStorage.addLike(filmStorage.getById(3).orElseThrow(), user(1));
+        filmStorage.addLike(filmStorage.getById(3).orElseThrow(), user(2));
+        filmStorage.addLike(filmStorage.getById(3).orElseThrow(), user(4));
+        filmStorage.removeLike(filmStorage.getById(1).orElseThrow(), user(1));
+
+        // у фильмов 1 и 2 по три лайка, выше фильм с меньшим идентификатором
+        assertEquals(4, filmStorage.getById(3).orElseThrow().getLikeCount());
+        assertEquals(List.of(3, 1, 2), ids(filmStorage.getPopularByGenreAndYear(10, 0, 0)));
+    }
+
+    @Test
+    void testGetFilmsByDirector() {
+        assertEquals(List.of(1), ids(filmStorage.getFilmsByDirector(1)));
+        assertEquals(List.of(2, 3), ids(filmStorage.getFilmsByDirector(2)));
+        assertTrue(filmStorage.getFilmsByDirector(3333).isEmpty());
+    }
+
+    @Test
+    void testUpdateMovesFilmBetweenIndexes() {
+        Film update = film("3 film", LocalDate.of(2021, 6, 1), 150, new MPA(3, "PG-13"),
+                Set.of(1), Set.of(1), Set.of());
+        update.setId(3);
+        filmStorage.update(update);
+
+        assertEquals(List.of(1, 3), ids(filmStorage.getFilmsByDirector(1)));
+        assertEquals(List.of(2), ids(filmStorage.getFilmsByDirector(2)));
+        assertEquals(List.of(2, 3), ids(filmStorage.getPopularByGenreAndYear(10, 1, 2021)));
+        assertTrue(filmStorage.getPopularByGenreAndYear(10, 2, 0).isEmpty());
+        // обновление не меняет лайки
+        assertEquals(1, filmStorage.getById(3).orElseThrow().getLikeCount());
+    }
+
+    @Test
+    void testRemoveFilmUpdatesIndexes() {
+        filmStorage.removeFilm(1);
+
+        assertTrue(filmStorage.getById(1).isEmpty());
+        assertTrue(filmStorage.getFilmsByDirector(1).isEmpty());
+        assertEquals(List.of(2, 3), ids(filmStorage.getPopularByGenreAndYear(10, 0, 0)));
+        assertEquals(List.of(2), ids(filmStorage.getCommonFilms(1, 2)));
+    }
+
+    @Test
+    void testGetCommonFilmsOrderedByPopularity() {
+        assertEquals(List.of(1, 2), ids(filmStorage.getCommonFilms(1, 2)));
+        assertEquals(List.of(1), ids(filmStorage.getCommonFilms(1, 3)));
+    }
+
+    @Test
+    void testGetFilmRecommendationsWithoutSimilarUsers() {
+        assertEquals(List.of(2), ids(filmStorage.getFilmRecommendations(3)));
+        assertTrue(filmStorage.getFilmRecommendations(1).isEmpty());
+        assertTrue(filmStorage.getFilmRecommendations(100).isEmpty());
+    }
+
+    @Test
+    void testSearch() {
+        assertEquals(List.of(2), ids(filmStorage.search("2 film", false, true, false)));
+        assertEquals(List.of(2, 3), ids(filmStorage.search("director2", true, false, false)));
+        assertEquals(List.of(2, 3), ids(filmStorage.search("Director2", true, true, false)));
+        assertEquals(List.of(2), ids(filmStorage.search("2 FILM", true, true, false)));
+        assertTrue(filmStorage.search("unknown", true, true, false).isEmpty());
+        assertEquals(List.of(3), ids(filmStorage.search("3 FILM DESC", false, false, true)));
+        assertEquals(List.of(1, 2, 3), ids(filmStorage.search("desc", false, false, true)));
+        assertTrue(filmStorage.search("unknown", false, false, true).isEmpty());
+    }
+
+    private List<Integer> ids(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    private Film film(String name, LocalDate releaseDate, int duration, MPA mpa, Set<Integer> genreIds,
+                      Set<Integer> directorIds, Set<Integer> likes) {
+        return Film.builder()
+                .name(name)
+                .description(name + " desc")
+                .releaseDate(releaseDate)
+                .duration(duration)
+                .mpa(mpa)
+                .genres(genreIds.stream().map(id -> new Genre(id, null)).collect(Collectors.toSet()))
+                .directors(directorIds.stream().map(id -> new Director(id, "Director" + id))
+                        .collect(Collectors.toSet()))
+                .likes(IdSet.copyOf(likes))
+                .build();
+    }
+
+    private User user(int id) {
+        User user = User.builder()
+                .email("user" + id + "@yandex.ru")
+                .login("user" + id)
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+        user.setId(id);
+        return user;
+    }
+}
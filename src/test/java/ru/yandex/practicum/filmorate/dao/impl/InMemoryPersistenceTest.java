@@ -0,0 +1,250 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Каждый «запуск» - новые хранилища, восстановленные из каталога предыдущего; close() имитирует падение без снимка
+class InMemoryPersistenceTest {
+    @TempDir
+    Path directory;
+
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryUserStorage userStorage;
+    private InMemoryPersistence persistence;
+
+    @AfterEach
+    void tearDown() {
+        persistence.close();
+    }
+
+    @Test
+    void testRecoverFromLogOnly() {
+        start();
+        User first = userStorage.create(user("first"));
+        User second = userStorage.create(user("second"));
+        userStorage.addFriend(first, second);
+        Film film = filmStorage.create(film("film", Set.of(1, 2)));
+        filmStorage.addLike(film, first);
+        filmStorage.addLike(film, second);
+        filmStorage.removeLike(film, first);
+        film.setName("renamed");
+        filmStorage.update(film);
+
+        restart();
+
+        Film restored = filmStorage.getById(film.getId()).orElseThrow();
+        assertEquals("renamed", restored.getName());
+        assertEquals("G", restored.getMpa().getName());
+        assertEquals(Set.of(1, 2), restored.getGenres().stream().map(Genre::getId).collect(Collectors.toSet()));
+        assertEquals("Director", restored.getDirectors().iterator().next().getName());
+        assertEquals(LocalDate.of(2000, 1, 1), restored.getReleaseDate());
+        assertEquals(Set.of(second.getId()), restored.getLikes());
+        assertEquals(1, restored.getLikeCount());
+        assertEquals(Set.of(second.getId()), userStorage.getById(first.getId()).orElseThrow().getFriends());
+        assertEquals(Set.of(), userStorage.getById(second.getId()).orElseThrow().getFriends());
+    }
+
+    @Test
+    void testRecoverFromSnapshotAndLogTail() throws IOException {
+        start();
+        User first = userStorage.create(user("first"));
+        User second = userStorage.create(user("second"));
+        Film film = filmStorage.create(film("film", Set.of(1)));
+        filmStorage.addLike(film, first);
+        userStorage.addFriend(first, second);
+        persistence.snapshot();
+        // после снимка убираем изменения, попавшие в него, и добавляем новые
+        filmStorage.removeLike(film, first);
+        filmStorage.addLike(film, second);
+        userStorage.removeFriend(first, second);
+        userStorage.addFriend(second, first);
+
+        restart();
+
+        assertEquals(1, files("snapshot-").size());
+        assertEquals(Set.of(second.getId()), filmStorage.getById(film.getId()).orElseThrow().getLikes());
+        assertEquals(Set.of(), userStorage.getById(first.getId()).orElseThrow().getFriends());
+        assertEquals(Set.of(first.getId()), userStorage.getById(second.getId()).orElseThrow().getFriends());
+        assertEquals(List.of(film.getId()), ids(filmStorage.getCommonFilms(second.getId(), second.getId())));
+        assertEquals(List.of(), filmStorage.getCommonFilms(first.getId(), first.getId()));
+
+        persistence.snapshot();
+
+        // сегменты журнала до последнего снимка удаляются вместе со старыми снимками
+        assertEquals(1, files("snapshot-").size());
+        assertEquals(1, files("wal-").size());
+    }
+
+    @Test
+    void testTornTailIgnored() throws IOException {
+        start();
+        Film film = filmStorage.create(film("film", Set.of()));
+        persistence.close();
+        Path segment = files("wal-").get(0);
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        start();
+        Film next = filmStorage.create(film("next", Set.of()));
+        restart();
+
+        assertEquals(List.of(film.getId(), next.getId()), ids(filmStorage.get()));
+    }
+
+    @Test
+    void testRemoveUserDropsLikesAndFriendships() {
+        start();
+        User removed = userStorage.create(user("removed"));
+        User friend = userStorage.create(user("friend"));
+        Film film = filmStorage.create(film("film", Set.of()));
+        filmStorage.addLike(film, removed);
+        filmStorage.addLike(film, friend);
+        userStorage.addFriend(removed, friend);
+        userStorage.addFriend(friend, removed);
+        persistence.snapshot();
+
+        userStorage.removeUser(removed.getId());
+
+        assertEquals(Set.of(friend.getId()), filmStorage.getById(film.getId()).orElseThrow().getLikes());
+        assertEquals(Set.of(), filmStorage.getLikedFilmIds(removed.getId()));
+        assertEquals(Set.of(), userStorage.getById(friend.getId()).orElseThrow().getFriends());
+
+        restart();
+
+        assertEquals(List.of(friend.getId()), userStorage.get().stream().map(User::getId).collect(Collectors.toList()));
+        assertEquals(Set.of(friend.getId()), filmStorage.getById(film.getId()).orElseThrow().getLikes());
+        assertEquals(1, filmStorage.getById(film.getId()).orElseThrow().getLikeCount());
+        assertEquals(Set.of(), userStorage.getById(friend.getId()).orElseThrow().getFriends());
+    }
+
+    @Test
+    void testStoragesReadOnlyAfterJournalFailure() {
+        start();
+        User user = userStorage.create(user("user"));
+        Film film = filmStorage.create(film("film", Set.of()));
+        StorageJournal failed = new StorageJournal() {
+            @Override
+            public void checkWritable() {
+                throw new IllegalStateException("Журнал остановлен после ошибки записи");
+            }
+        };
+        filmStorage.setJournal(failed);
+        userStorage.setJournal(failed);
+
+        assertThrows(IllegalStateException.class, () -> filmStorage.create(film("next", Set.of())));
+        assertThrows(IllegalStateException.class, () -> filmStorage.addLike(film, user));
+        assertThrows(IllegalStateException.class, () -> filmStorage.update(film));
+        assertThrows(IllegalStateException.class, () -> userStorage.addFriend(user, user));
+        assertThrows(IllegalStateException.class, () -> userStorage.removeUser(user.getId()));
+
+        assertEquals(List.of(film.getId()), ids(filmStorage.get()));
+        assertEquals(Set.of(), filmStorage.getById(film.getId()).orElseThrow().getLikes());
+        assertEquals(List.of(user), userStorage.get());
+    }
+
+    @Test
+    void testIdsNotReusedAfterRemoval() {
+        start();
+        filmStorage.create(film("first", Set.of()));
+        Film second = filmStorage.create(film("second", Set.of()));
+        filmStorage.removeFilm(second.getId());
+        persistence.snapshot();
+
+        restart();
+        Film third = filmStorage.create(film("third", Set.of()));
+
+        assertEquals(second.getId() + 1, third.getId());
+        assertEquals(List.of(1, third.getId()), ids(filmStorage.get()));
+    }
+
+    @Test
+    void testPopularAndRecommendationsAfterRecovery() {
+        start();
+        List<User> users = Stream.of("a", "b", "c")
+                .map(name -> userStorage.create(user(name)))
+                .collect(Collectors.toList());
+        Film first = filmStorage.create(film("first", Set.of()));
+        Film second = filmStorage.create(film("second", Set.of()));
+        Film third = filmStorage.create(film("third", Set.of()));
+        filmStorage.addLike(first, users.get(0));
+        filmStorage.addLike(first, users.get(1));
+        filmStorage.addLike(third, users.get(0));
+        filmStorage.addLike(third, users.get(1));
+        filmStorage.addLike(third, users.get(2));
+        filmStorage.addLike(second, users.get(1));
+        persistence.snapshot();
+        filmStorage.removeLike(third, users.get(0));
+        filmStorage.removeLike(third, users.get(2));
+
+        restart();
+
+        assertEquals(List.of(first.getId(), second.getId(), third.getId()),
+                ids(filmStorage.getPopularByGenreAndYear(10, 0, 0)));
+        assertEquals(List.of(second.getId(), third.getId()),
+                ids(filmStorage.getFilmRecommendations(users.get(0).getId())));
+    }
+
+    private void start() {
+        filmStorage = new InMemoryFilmStorage();
+        userStorage = new InMemoryUserStorage(filmStorage);
+        persistence = new InMemoryPersistence(filmStorage, userStorage, directory, false, 100, Duration.ofHours(1));
+        persistence.start();
+    }
+
+    private void restart() {
+        persistence.close();
+        start();
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Film film(String name, Set<Integer> genreIds) {
+        return Film.builder()
+                .name(name)
+                .description(name + " description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new MPA(1, "G"))
+                .genres(genreIds.stream().map(id -> new Genre(id, "genre " + id)).collect(Collectors.toSet()))
+                .directors(Set.of(new Director(1, "Director")))
+                .build();
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static List<Integer> ids(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+}
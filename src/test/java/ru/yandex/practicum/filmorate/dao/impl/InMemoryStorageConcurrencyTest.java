@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Нагрузочная проверка хранилищ в памяти: параллельные создания, обновления, лайки и добавления в друзья
+// не должны терять изменений и выдавать повторяющиеся идентификаторы
+class InMemoryStorageConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 2_000;
+    private static final int FILMS = 20;
+    private static final int USERS = 200;
+
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage(filmStorage);
+
+    @Test
+    void testConcurrentCreatesGetUniqueIds() throws Exception {
+        List<List<Integer>> ids = runConcurrently(() -> {
+            List<Integer> created = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS; i++) {
+                created.add(userStorage.create(user()).getId());
+            }
+            return created;
+        });
+
+        Set<Integer> uniqueIds = ids.stream().flatMap(List::stream).collect(Collectors.toSet());
+        assertEquals(THREADS * OPERATIONS, uniqueIds.size());
+        assertEquals(THREADS * OPERATIONS, userStorage.get().size());
+        assertEquals(uniqueIds, userStorage.get().stream().map(User::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testConcurrentLikesKeepCountConsistent() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(userStorage.create(user()));
+        }
+        for (int i = 0; i < FILMS; i++) {
+            filmStorage.create(film());
+        }
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS; i++) {
+                Film film = filmStorage.getById(1 + random.nextInt(FILMS)).orElseThrow();
+                User user = users.get(random.nextInt(USERS));
+                switch (random.nextInt(4)) {
+                    case 0:
+                        filmStorage.removeLike(film, user);
+                        break;
+                    case 1:
+                        // обновление фильма не должно затирать лайки, поставленные параллельно
+                        Film update = film();
+                        update.setId(film.getId());
+                        filmStorage.update(update);
+                        break;
+                    default:
+                        filmStorage.addLike(film, user);
+                        userStorage.addFriend(user, users.get(random.nextInt(USERS)));
+                }
+                filmStorage.get();
+            }
+            return null;
+        });
+
+        int totalLikes = 0;
+        for (Film film : filmStorage.get()) {
+            assertEquals(film.getLikes().size(), film.getLikeCount(), "Фильм " + film.getId());
+            totalLikes += film.getLikeCount();
+        }
+        assertEquals(FILMS, filmStorage.get().size());
+        assertTrue(totalLikes > 0);
+    }
+
+    private <T> List<T> runConcurrently(Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get());
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    private Film film() {
+        return Film.builder()
+                .name("film")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .likes(new IdSet())
+                .build();
+    }
+
+    private User user() {
+        return User.builder()
+                .email("user@yandex.ru")
+                .login("user")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .friends(new IdSet())
+                .build();
+    }
+}
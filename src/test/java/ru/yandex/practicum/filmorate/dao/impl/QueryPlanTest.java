@@ -0,0 +1,324 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.jdbc.SqlGroup;
+import ru.yandex.practicum.filmorate.enums.ActionType;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
+import ru.yandex.practicum.filmorate.model.TimelineEntry;
+import ru.yandex.practicum.filmorate.model.User;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Выполняет запросы всех хранилищ dao.impl, записывая их текст и параметры, и проверяет EXPLAIN каждого:
+// таблицы, растущие вместе с пользователями, не должны читаться полным сканированием.
+// Таблицы заполняются тысячами строк, чтобы планировщик выбирал те же индексы, что и на рабочих данных
+@SpringBootTest
+@AutoConfigureTestDatabase
+@SqlGroup({
+        @Sql(scripts = "classpath:schema.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+        @Sql(scripts = "classpath:create_test_data.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class QueryPlanTest {
+    // справочники genre, rating и director малы и читаются целиком
+    private static final Set<String> LARGE_TABLES = Set.of("FILM", "FILMORATE_USER", "FILM_LIKE", "FRIEND",
+            "FILM_X_GENRE", "FILM_X_DIRECTOR", "REVIEW", "REVIEW_LIKE", "EVENT", "TIMELINE");
+    private static final int ROWS = 1000;
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\* PUBLIC\\.(\\w+)\\.tableScan");
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testQueriesDoNotScanLargeTables() {
+        loadRows();
+        RecordingDataSource recordingDataSource = new RecordingDataSource(dataSource);
+        runAllQueries(recordingDataSource);
+        assertTrue(recordingDataSource.statements.size() > 50, "Записано запросов: "
+                + recordingDataSource.statements.size());
+
+        List<String> violations = new ArrayList<>();
+        recordingDataSource.statements.forEach((sql, parameters) -> {
+            String plan = explain(sql, parameters);
+            Matcher matcher = TABLE_SCAN.matcher(plan);
+            while (matcher.find()) {
+                if (LARGE_TABLES.contains(matcher.group(1))) {
+                    violations.add(matcher.group(1) + ": " + plan);
+                    break;
+                }
+            }
+        });
+        assertTrue(violations.isEmpty(), "Полное сканирование таблиц:\n" + String.join("\n", violations));
+    }
+
+    // фильмы с лайками, жанрами и режиссерами, пользователи с дружбами, отзывы с оценками, события и ленты
+    private void loadRows() {
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, name, birth_dt) " +
+                "SELECT 'bulk' || X || '@yandex.ru', 'bulk' || X, 'bulk' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", ROWS);
+        jdbcTemplate.update("INSERT INTO film (name, description, release_dt, duration, rating_id) " +
+                "SELECT 'bulk film ' || X, 'bulk description', DATEADD('DAY', X * 10, DATE '1990-01-01'), 100, " +
+                "MOD(X, 5) + 1 " +
+                "FROM SYSTEM_RANGE(1, ?)", ROWS);
+        jdbcTemplate.update("INSERT INTO film_x_genre (film_id, genre_id) " +
+                "SELECT film_id, MOD(film_id, 6) + 1 FROM film WHERE name LIKE 'bulk film %'");
+        jdbcTemplate.update("INSERT INTO film_x_director (film_id, director_id) " +
+                "SELECT film_id, MOD(film_id, 3) + 1 FROM film WHERE name LIKE 'bulk film %'");
+        jdbcTemplate.update("INSERT INTO film_like (film_id, user_id) " +
+                "SELECT f.film_id, u.user_id FROM film AS f, filmorate_user AS u " +
+                "WHERE f.name LIKE 'bulk film %' AND u.login LIKE 'bulk%' AND MOD(f.film_id * 7 + u.user_id, 50) = 0");
+        jdbcTemplate.update("UPDATE film AS f " +
+                "SET like_count = (SELECT COUNT(*) FROM film_like AS fl WHERE fl.film_id = f.film_id)");
+        jdbcTemplate.update("INSERT INTO friend (user_id, friend_user_id, status) " +
+                "SELECT u.user_id, v.user_id, 'accepted' FROM filmorate_user AS u, filmorate_user AS v " +
+                "WHERE u.login LIKE 'bulk%' AND v.login LIKE 'bulk%' AND u.user_id <> v.user_id " +
+                "AND MOD(u.user_id * 3 + v.user_id, 100) = 0");
+        jdbcTemplate.update("INSERT INTO review (creator_user_id, reviewed_film_id, content, is_positive, useful) " +
+                "SELECT u.user_id, f.film_id, 'bulk review', TRUE, MOD(u.user_id, 10) " +
+                "FROM filmorate_user AS u, film AS f " +
+                "WHERE u.login LIKE 'bulk%' AND f.name LIKE 'bulk film %' AND MOD(u.user_id + f.film_id, 200) = 0");
+        jdbcTemplate.update("INSERT INTO review_like (review_id, user_id, score) " +
+                "SELECT r.review_id, u.user_id, 1 FROM review AS r, filmorate_user AS u " +
+                "WHERE u.login LIKE 'bulk%' AND MOD(r.review_id + u.user_id, 500) = 0");
+        jdbcTemplate.update("INSERT INTO event (user_id, event_type, action_type, entity_id, event_dttm) " +
+                "SELECT u.user_id, 'LIKE', 'ADD', r.X, DATEADD('SECOND', r.X, TIMESTAMP '2020-01-01 00:00:00') " +
+                "FROM filmorate_user AS u, SYSTEM_RANGE(1, 5) AS r " +
+                "WHERE u.login LIKE 'bulk%'");
+        jdbcTemplate.update("INSERT INTO timeline (user_id, event_id, author_id) " +
+                "SELECT f.user_id, e.event_id, e.user_id FROM friend AS f JOIN event AS e " +
+                "ON e.user_id = f.friend_user_id");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private String explain(String sql, List<Object> parameters) {
+        return jdbcTemplate.query("EXPLAIN " + sql, rs -> {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1).replace('\n', ' '));
+            }
+            return plan.toString();
+        }, parameters.toArray());
+    }
+
+    // выгрузки всей таблицы и поиск подстроки по ILIKE '%...%' индексом не ускоряются:
+    // запросы, выполненные только внутри recordingDataSource.fullRead(...), не проверяются
+    private void runAllQueries(RecordingDataSource recordingDataSource) {
+        JdbcTemplate recordingJdbcTemplate = new JdbcTemplate(recordingDataSource);
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(recordingJdbcTemplate);
+        GenreDbStorage genreStorage = new GenreDbStorage(recordingJdbcTemplate);
+        MPADbStorage mpaStorage = new MPADbStorage(recordingJdbcTemplate);
+        DirectorDbStorage directorStorage = new DirectorDbStorage(recordingJdbcTemplate);
+        FilmDbStorage filmStorage = new FilmDbStorage(recordingJdbcTemplate, namedJdbcTemplate,
+                new CachedGenreStorage(genreStorage, 100, Duration.ofMinutes(1)),
+                new CachedMPAStorage(mpaStorage, 100, Duration.ofMinutes(1)),
+                new CachedDirectorStorage(directorStorage, 100, Duration.ofMinutes(1)));
+        UserDbStorage userStorage = new UserDbStorage(recordingJdbcTemplate, namedJdbcTemplate);
+        ReviewDbStorage reviewStorage = new ReviewDbStorage(recordingJdbcTemplate, namedJdbcTemplate);
+        EventDbStorage eventStorage = new EventDbStorage(recordingJdbcTemplate, namedJdbcTemplate);
+        TimelineDbStorage timelineStorage = new TimelineDbStorage(recordingJdbcTemplate, namedJdbcTemplate);
+
+        genreStorage.get();
+        genreStorage.getById(1);
+        mpaStorage.get();
+        mpaStorage.getById(1);
+        directorStorage.get();
+        directorStorage.getById(1);
+        Director director = directorStorage.create(new Director(0, "Director4"));
+        directorStorage.udpate(director);
+
+        recordingDataSource.fullRead(filmStorage::get);
+        filmStorage.getPage(1, 2);
+        filmStorage.getById(1);
+        filmStorage.getByIds(List.of(1, 2));
+        recordingDataSource.fullRead(() -> filmStorage.search("film", true, true, true));
+        recordingDataSource.fullRead(filmStorage::getAllLikes);
+        filmStorage.getLikedFilmIds(1);
+        filmStorage.getFilmsByDirector(2);
+        filmStorage.getPopularByGenreAndYear(10, 0, 0);
+        filmStorage.getPopularByGenreAndYear(10, 2, 0);
+        filmStorage.getPopularByGenreAndYear(10, 0, 2000);
+        filmStorage.getPopularByGenreAndYear(10, 2, 2000);
+        filmStorage.getFilmRecommendations(3);
+        filmStorage.getCommonFilms(1, 2);
+        Film film = filmStorage.create(film("Film"));
+        filmStorage.createAll(List.of(film("Bulk film")));
+        film.setGenres(Set.of(new Genre(2, null)));
+        film.setDirectors(Set.of(new Director(1, null)));
+        filmStorage.update(film);
+
+        recordingDataSource.fullRead(userStorage::get);
+        userStorage.getPage(1, 2);
+        userStorage.getById(1);
+        userStorage.getByIds(List.of(1, 2));
+        userStorage.findExistingIds(List.of(1, 2));
+        userStorage.getFollowerIds(List.of(1, 2));
+        User user = userStorage.create(user("user5"));
+        userStorage.createAll(List.of(user("user6")));
+        userStorage.update(user);
+        User friend = userStorage.getById(2).orElseThrow();
+        userStorage.addFriend(user, friend);
+        userStorage.addFriends(List.of(new Friendship(user.getId(), 3)));
+        userStorage.removeFriend(user, friend);
+        filmStorage.addLike(film, user);
+        filmStorage.removeLike(film, user);
+
+        reviewStorage.getById(1);
+        reviewStorage.getReviewsByFilmId(1, 10);
+        reviewStorage.getReviewsByAllFilms(10);
+        Review review = reviewStorage.createReview(Review.builder()
+                .content("content").isPositive(true).userId(1).filmId(1).build());
+        reviewStorage.updateReview(review);
+        reviewStorage.likeReview(review.getReviewId(), 2, 1);
+        reviewStorage.removeLike(review.getReviewId(), 2, 1);
+        reviewStorage.voteAll(List.of(new ReviewVote(review.getReviewId(), 3, true), new ReviewVote(1L, 3, false)));
+
+        eventStorage.getById(1);
+        eventStorage.getByIds(List.of(1, 2));
+        eventStorage.getPage(0, 10);
+        eventStorage.getByUserId(1);
+        eventStorage.getLastByUserId(1, 10);
+        eventStorage.streamByUserId(1, 0L, Long.MAX_VALUE, 10, event -> {
+        });
+        Event event = eventStorage.create(1, EventType.LIKE, ActionType.ADD, 1);
+        eventStorage.createAll(List.of(Event.builder().userId(1).eventType(EventType.FRIEND)
+                .actionType(ActionType.ADD).entityId(2).eventDateTime(System.currentTimeMillis()).build()));
+
+        timelineStorage.replace(List.of(2), List.of(new TimelineEntry(2, event.getEventId(), 1)), event.getEventId());
+        recordingDataSource.fullRead(() -> timelineStorage.stream(entry -> {
+        }));
+        timelineStorage.getLastEventId();
+
+        reviewStorage.removeReview(review.getReviewId());
+        filmStorage.removeFilm(film.getId());
+        directorStorage.delete(director.getId());
+        userStorage.removeUser(user.getId());
+    }
+
+    private Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new MPA(1, null))
+                .genres(Set.of(new Genre(1, null)))
+                .directors(Set.of(new Director(2, null)))
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .email(login + "@yandex.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+    }
+
+    // запоминает текст каждого выполненного запроса и параметры его первого выполнения, кроме полных выгрузок
+    private static class RecordingDataSource extends DelegatingDataSource {
+        private final Map<String, List<Object>> statements = new LinkedHashMap<>();
+        private boolean fullRead;
+
+        RecordingDataSource(DataSource target) {
+            super(target);
+        }
+
+        void fullRead(Runnable query) {
+            fullRead = true;
+            try {
+                query.run();
+            } finally {
+                fullRead = false;
+            }
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (method.getName().equals("prepareStatement")) {
+                            return recordingStatement((PreparedStatement) result, (String) args[0]);
+                        }
+                        if (method.getName().equals("createStatement")) {
+                            return recordingStatement((Statement) result);
+                        }
+                        return result;
+                    });
+        }
+
+        private PreparedStatement recordingStatement(PreparedStatement statement, String sql) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                            parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                        } else if ((name.equals("addBatch") || name.startsWith("execute")) && !fullRead) {
+                            statements.putIfAbsent(sql, new ArrayList<>(parameters.values()));
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private Statement recordingStatement(Statement statement) {
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                    new Class<?>[]{Statement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute") && args != null && args[0] instanceof String
+                                && !fullRead) {
+                            statements.putIfAbsent((String) args[0], List.of());
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
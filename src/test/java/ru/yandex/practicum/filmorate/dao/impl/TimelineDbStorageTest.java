@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.jdbc.SqlGroup;
+import ru.yandex.practicum.filmorate.model.TimelineEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@SqlGroup({
+        @Sql(scripts = "classpath:schema.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+        @Sql(scripts = "classpath:create_test_data.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class TimelineDbStorageTest {
+
+    private final TimelineDbStorage timelineDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testReplaceAndStream() {
+        // у пользователя 2 в друзьях пользователь 1, у пользователя 3 - нет
+        timelineDbStorage.replace(Set.of(2, 3), List.of(
+                new TimelineEntry(2, 1, 1),
+                new TimelineEntry(2, 2, 1),
+                new TimelineEntry(2, 999, 1),
+                new TimelineEntry(3, 1, 1)), 999);
+        timelineDbStorage.replace(Set.of(2), List.of(new TimelineEntry(2, 2, 1)), 1000);
+
+        List<TimelineEntry> entries = new ArrayList<>();
+        timelineDbStorage.stream(entries::add);
+
+        assertEquals(List.of(new TimelineEntry(2, 2, 1)), entries);
+        assertEquals(1000, timelineDbStorage.getLastEventId());
+    }
+
+    @Test
+    public void testLastEventIdWithoutState() {
+        assertEquals(0, timelineDbStorage.getLastEventId());
+
+        // лента сохранена до появления отметки: продолжаем с последнего события в лентах
+        timelineDbStorage.replace(Set.of(2), List.of(new TimelineEntry(2, 2, 1)), 0);
+        jdbcTemplate.update("DELETE FROM timeline_state");
+
+        assertEquals(2, timelineDbStorage.getLastEventId());
+    }
+}
@@ -8,11 +8,18 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.jdbc.SqlConfig;
 import org.springframework.test.context.jdbc.SqlGroup;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +41,17 @@ class UserDbStorageTest {
         assertEquals(4, users.size());
     }
 
+    @Test
+    public void testGetPage() {
+        List<User> page = userDbStorage.getPage(1, 2);
+
+        assertEquals(2, page.size());
+        assertEquals(2, page.get(0).getId());
+        assertEquals(Set.of(1, 3), page.get(0).getFriends());
+        assertEquals(3, page.get(1).getId());
+        assertTrue(userDbStorage.getPage(4, 2).isEmpty());
+    }
+
     @Test
     public void testGetById() {
         Optional<User> userOptional = userDbStorage.getById(1);
@@ -46,6 +64,43 @@ class UserDbStorageTest {
         assertEquals(LocalDate.of(2000, 1, 1), user.getBirthday());
     }
 
+    @Test
+    public void testGetByIds() {
+        List<User> users = userDbStorage.getByIds(List.of(3, 1, 999));
+
+        assertEquals(2, users.size());
+        assertEquals(1, users.get(0).getId());
+        assertEquals(Set.of(2, 3), users.get(0).getFriends());
+        assertEquals(3, users.get(1).getId());
+        assertEquals(Set.of(2), users.get(1).getFriends());
+    }
+
+    @Test
+    public void testGetByIdsInChunks() {
+        // идентификаторов больше одной пачки запроса IN (...)
+        List<Integer> ids = IntStream.rangeClosed(1, 2500).boxed().collect(Collectors.toList());
+        Collections.reverse(ids);
+
+        List<User> users = userDbStorage.getByIds(ids);
+
+        assertEquals(List.of(1, 2, 3, 4), users.stream().map(User::getId).collect(Collectors.toList()));
+        assertEquals(Set.of(2, 3), users.get(0).getFriends());
+    }
+
+    @Test
+    public void testGetByIdsEmpty() {
+        assertTrue(userDbStorage.getByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testGetUsersWithFriends() {
+        List<User> users = userDbStorage.get();
+
+        assertEquals(Set.of(2, 3), users.get(0).getFriends());
+        assertEquals(Set.of(1, 3), users.get(1).getFriends());
+        assertTrue(users.get(3).getFriends().isEmpty());
+    }
+
     @Test
     public void testGetByIdNotFond() {
         Optional<User> userOptional = userDbStorage.getById(999);
@@ -128,6 +183,43 @@ class UserDbStorageTest {
         assertFalse(userWithOutFriend.getFriends().contains(3));
     }
 
+    @Test
+    public void testGetFollowerIds() {
+        Map<Integer, List<Integer>> followers = userDbStorage.getFollowerIds(List.of(1, 3, 4));
+
+        assertEquals(List.of(2), followers.get(1));
+        assertEquals(Set.of(1, 2), Set.copyOf(followers.get(3)));
+        assertFalse(followers.containsKey(4));
+    }
+
+    @Test
+    public void testCreateAllUsers() {
+        User first = User.builder().email("bulk1@yandex.ru").login("bulk1").name("Bulk1")
+                .birthday(LocalDate.of(1990, 1, 1)).build();
+        User second = User.builder().email("bulk2@yandex.ru").login("bulk2").name("Bulk2")
+                .birthday(LocalDate.of(1991, 1, 1)).build();
+
+        userDbStorage.createAll(List.of(first, second));
+
+        assertTrue(first.getId() > 4);
+        assertEquals(first.getId() + 1, second.getId());
+        assertEquals("bulk2", userDbStorage.getById(second.getId()).orElseThrow().getLogin());
+    }
+
+    @Test
+    public void testFindExistingIds() {
+        assertEquals(Set.of(1, 4), userDbStorage.findExistingIds(List.of(1, 4, 5, 999)));
+        assertTrue(userDbStorage.findExistingIds(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testAddFriends() {
+        userDbStorage.addFriends(List.of(new Friendship(4, 1), new Friendship(4, 2), new Friendship(1, 2)));
+
+        assertEquals(Set.of(1, 2), userDbStorage.getById(4).orElseThrow().getFriends());
+        assertTrue(userDbStorage.getById(1).orElseThrow().getFriends().contains(2));
+    }
+
     @Test
     public void testRemoveUser() {
         User user = userDbStorage.getById(1).orElse(null);
@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testZeroFilledTailEndsSegment() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(directory, false, 100);
+        wal.open(0);
+        wal.append(record(1)).join();
+        wal.append(record(2)).join();
+        wal.close();
+        // так выглядит хвост файла, место под который выделено, но данные не записаны до падения
+        Files.write(segment(0), new byte[4096], StandardOpenOption.APPEND);
+
+        wal = new WriteAheadLog(directory, false, 100);
+        wal.open(1);
+        wal.append(record(3)).join();
+        wal.close();
+
+        assertEquals(List.of(1, 2, 3), replay());
+    }
+
+    @Test
+    void testTornRecordIgnored() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(directory, false, 100);
+        wal.open(0);
+        wal.append(record(1)).join();
+        wal.append(new byte[]{2, 2, 2}).join();
+        wal.close();
+
+        // последняя запись дописана не до конца
+        try (FileChannel channel = FileChannel.open(segment(0), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+        assertEquals(List.of(1), replay());
+
+        // длина на месте, но тело записи повреждено
+        Files.write(segment(0), new byte[]{2, 2}, StandardOpenOption.APPEND);
+        try (FileChannel channel = FileChannel.open(segment(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{7}), channel.size() - 1);
+        }
+        assertEquals(List.of(1), replay());
+    }
+
+    @Test
+    void testFailedWriteTruncatesSegmentAndStopsLog() throws IOException {
+        AtomicBoolean failing = new AtomicBoolean();
+        WriteAheadLog wal = new WriteAheadLog(directory, false, 100) {
+            @Override
+            FileChannel openSegment(long number) throws IOException {
+                return new FailingChannel(super.openSegment(number), failing);
+            }
+        };
+        wal.open(0);
+        wal.append(record(1)).join();
+        long committedSize = Files.size(segment(0));
+
+        failing.set(true);
+        CompletionException failed = assertThrows(CompletionException.class,
+                () -> wal.append(new byte[64]).join());
+        failing.set(false);
+
+        assertInstanceOf(IOException.class, failed.getCause().getCause());
+        assertThrows(IllegalStateException.class, wal::checkWritable);
+        CompletionException rejected = assertThrows(CompletionException.class, () -> wal.append(record(3)).join());
+        assertInstanceOf(IllegalStateException.class, rejected.getCause());
+        assertThrows(CompletionException.class, () -> wal.rotate().join());
+        wal.close();
+
+        // половина записанной пачки отрезана, и следующий сегмент читался бы сразу после первой записи
+        assertEquals(committedSize, Files.size(segment(0)));
+        assertEquals(List.of(1), replay());
+    }
+
+    private List<Integer> replay() throws IOException {
+        List<Integer> records = new ArrayList<>();
+        WriteAheadLog.replay(directory, 0, body -> records.add((int) body.get()));
+        return records;
+    }
+
+    private Path segment(long number) {
+        return directory.resolve(String.format("wal-%020d.log", number));
+    }
+
+    private static byte[] record(int value) {
+        return new byte[]{(byte) value};
+    }
+
+    // пока включен failing, пишет половину переданных байтов и завершается ошибкой, как при заполненном диске
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final AtomicBoolean failing;
+
+        FailingChannel(FileChannel delegate, AtomicBoolean failing) {
+            this.delegate = delegate;
+            this.failing = failing;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!failing.get()) {
+                return delegate.write(src);
+            }
+            ByteBuffer half = src.duplicate();
+            half.limit(src.position() + src.remaining() / 2);
+            delegate.write(half);
+            throw new IOException("No space left on device");
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
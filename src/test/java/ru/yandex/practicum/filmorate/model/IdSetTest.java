@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdSetTest {
+
+    @Test
+    void addKeepsIdsSortedAndUnique() {
+        IdSet ids = new IdSet();
+
+        assertTrue(ids.add(5));
+        assertTrue(ids.add(1));
+        assertTrue(ids.add(9));
+        assertTrue(ids.add(3));
+        assertFalse(ids.add(5));
+
+        assertEquals(4, ids.size());
+        assertArrayEquals(new int[]{1, 3, 5, 9}, ids.toIntArray());
+        assertTrue(ids.contains(3));
+        assertTrue(ids.contains((Object) 3));
+        assertFalse(ids.contains(4));
+        assertFalse(ids.contains("3"));
+    }
+
+    @Test
+    void removeAndIteratorRemove() {
+        IdSet ids = IdSet.of(4, 2, 8, 6);
+
+        assertTrue(ids.remove(4));
+        assertFalse(ids.remove(4));
+        Iterator<Integer> iterator = ids.iterator();
+        assertEquals(2, iterator.next());
+        iterator.remove();
+        assertEquals(6, iterator.next());
+
+        assertArrayEquals(new int[]{6, 8}, ids.toIntArray());
+    }
+
+    @Test
+    void equalsOtherSets() {
+        assertEquals(Set.of(1, 2, 3), IdSet.of(3, 2, 1, 2));
+        assertEquals(IdSet.of(3, 2, 1), new HashSet<>(List.of(1, 2, 3)));
+        assertEquals(Set.of(1, 2, 3).hashCode(), IdSet.of(1, 2, 3).hashCode());
+    }
+
+    @Test
+    void ofCopiesCallerArray() {
+        int[] sorted = {1, 2, 3};
+        IdSet ids = IdSet.of(sorted);
+        sorted[0] = 5;
+
+        assertEquals(Set.of(1, 2, 3), ids);
+        assertTrue(ids.contains(1));
+    }
+
+    @Test
+    void wrapSortsUnsortedArray() {
+        assertArrayEquals(new int[]{1, 2, 3}, IdSet.wrap(new int[]{3, 1, 2, 1}).toIntArray());
+        assertArrayEquals(new int[]{1, 2, 3}, IdSet.wrap(new int[]{1, 2, 3}).toIntArray());
+    }
+
+    @Test
+    void withAndWithoutDoNotChangeOriginal() {
+        IdSet ids = IdSet.of(1, 2);
+
+        IdSet added = ids.with(3);
+        IdSet removed = ids.without(1);
+
+        assertEquals(Set.of(1, 2), ids);
+        assertEquals(Set.of(1, 2, 3), added);
+        assertEquals(Set.of(2), removed);
+        assertSame(ids, ids.with(2));
+        assertSame(ids, ids.without(5));
+    }
+
+    @Test
+    void intersectAndUnionMatchCollections() {
+        Random random = new Random(7);
+        for (int round = 0; round < 100; round++) {
+            // разные размеры множеств проверяют и слияние, и двоичный поиск по большему множеству
+            Set<Integer> first = randomIds(random, random.nextInt(20));
+            Set<Integer> second = randomIds(random, random.nextInt(2000));
+
+            Set<Integer> intersection = new TreeSet<>(first);
+            intersection.retainAll(second);
+            Set<Integer> union = new TreeSet<>(first);
+            union.addAll(second);
+
+            assertEquals(intersection, IdSet.copyOf(first).intersect(IdSet.copyOf(second)));
+            assertEquals(intersection, IdSet.copyOf(second).intersect(IdSet.copyOf(first)));
+            assertEquals(union, IdSet.copyOf(first).union(IdSet.copyOf(second)));
+            assertEquals(union, IdSet.copyOf(second).union(IdSet.copyOf(first)));
+            Set<Integer> difference = new TreeSet<>(union);
+            difference.removeAll(intersection);
+            assertEquals(difference, IdSet.copyOf(first).symmetricDifference(IdSet.copyOf(second)));
+        }
+    }
+
+    private Set<Integer> randomIds(Random random, int count) {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(random.nextInt(3000));
+        }
+        return ids;
+    }
+}
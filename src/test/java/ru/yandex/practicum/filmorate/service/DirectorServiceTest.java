@@ -18,7 +18,10 @@ import static org.mockito.Mockito.when;
 
 class DirectorServiceTest {
     private final DirectorStorage directorStorage = Mockito.mock(DirectorDbStorage.class);
-    private final DirectorService directorService = new DirectorService(directorStorage);
+    private final PopularFilmsIndex popularFilmsIndex = Mockito.mock(PopularFilmsIndex.class);
+    private final FilmSearchIndex filmSearchIndex = Mockito.mock(FilmSearchIndex.class);
+    private final DirectorService directorService = new DirectorService(directorStorage, popularFilmsIndex,
+            filmSearchIndex);
     private List<Director> directors = new ArrayList<>();
     private Director director1;
     private Director director2;
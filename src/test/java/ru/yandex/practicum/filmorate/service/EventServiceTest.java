@@ -3,14 +3,18 @@ package ru.yandex.practicum.filmorate.service;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import ru.yandex.practicum.filmorate.dao.EventStorage;
 import ru.yandex.practicum.filmorate.enums.ActionType;
 import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.exception.UserValidationException;
 import ru.yandex.practicum.filmorate.model.*;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.Arrays;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
@@ -18,8 +22,13 @@ import static org.mockito.Mockito.*;
 class EventServiceTest {
 
     private final EventStorage eventStorage = Mockito.mock(EventStorage.class);
+    private final FriendsTimeline friendsTimeline = Mockito.mock(FriendsTimeline.class);
 
-    private final EventService eventService = new EventService(eventStorage);
+    private final EventWriter eventWriter = new EventWriter(eventStorage, friendsTimeline, 10, 5,
+            Duration.ofSeconds(1));
+
+    private final EventService eventService = new EventService(eventStorage, eventWriter, friendsTimeline,
+            new ValidateService());
 
     @Test
     public void testFindByUserId() {
@@ -43,19 +52,67 @@ class EventServiceTest {
         EventType eventType = EventType.LIKE;
         ActionType actionType = ActionType.ADD;
         int entityId = 1;
-        Event event = Event.builder()
-                .eventId(1)
-                .userId(userId)
-                .eventType(eventType)
-                .actionType(actionType)
-                .entityId(entityId)
-                .build();
 
-        when(eventStorage.create(userId, eventType, actionType, entityId)).thenReturn(event);
+        eventService.createEvent(userId, actionType, eventType, entityId);
+        verify(eventStorage, never()).createAll(anyList());
+
+        eventWriter.flush();
+
+        verify(eventStorage, times(1)).createAll(argThat(events -> events.size() == 1
+                && events.get(0).getUserId() == userId
+                && events.get(0).getEventType() == eventType
+                && events.get(0).getActionType() == actionType
+                && events.get(0).getEntityId() == entityId
+                && events.get(0).getEventDateTime() > 0));
+        verify(eventStorage, never()).create(anyInt(), any(), any(), anyLong());
+    }
+
+    @Test
+    public void testFindByUserIdFlushesPendingEvents() {
+        int userId = 1;
+        eventService.createEvent(userId, ActionType.ADD, EventType.FRIEND, 2);
+
+        eventService.findByUserId(userId);
+
+        InOrder inOrder = inOrder(eventStorage);
+        inOrder.verify(eventStorage).createAll(anyList());
+        inOrder.verify(eventStorage).getByUserId(userId);
+    }
+
+    @Test
+    public void testStreamByUserIdFlushesPendingEventsAndCapsLimit() {
+        int userId = 1;
+        eventService.createEvent(userId, ActionType.ADD, EventType.FRIEND, 2);
+        List<Event> result = new ArrayList<>();
+
+        eventService.streamByUserId(userId, 1000L, 2000L, 100_000, result::add);
+
+        InOrder inOrder = inOrder(eventStorage);
+        inOrder.verify(eventStorage).createAll(anyList());
+        inOrder.verify(eventStorage).streamByUserId(eq(userId), eq(1000L), eq(2000L), eq(1000), any());
+    }
+
+    @Test
+    public void testStreamByUserIdValidatesParameters() {
+        assertThrows(UserValidationException.class,
+                () -> eventService.streamByUserId(1, null, null, 0, event -> { }));
+        assertThrows(UserValidationException.class,
+                () -> eventService.streamByUserId(1, 2000L, 1000L, null, event -> { }));
+        verify(eventStorage, never()).streamByUserId(anyInt(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testFindFriendsFeedKeepsTimelineOrder() {
+        int userId = 1;
+        when(friendsTimeline.page(userId, 10, 3)).thenReturn(List.of(9, 7, 4));
+        when(eventStorage.getByIds(List.of(9, 7, 4))).thenReturn(List.of(
+                Event.builder().eventId(4).userId(2).build(),
+                Event.builder().eventId(9).userId(3).build()));
 
-        Event result = eventService.createEvent(userId, actionType, eventType, entityId);
+        List<Event> result = eventService.findFriendsFeed(userId, 10, 3);
 
-        assertEquals(event, result);
-        verify(eventStorage, times(1)).create(userId, eventType, actionType, entityId);
+        // событие 7 удалено вместе с автором и пропускается
+        assertEquals(List.of(9, 4), result.stream().map(Event::getEventId).collect(Collectors.toList()));
+        assertThrows(UserValidationException.class, () -> eventService.findFriendsFeed(userId, null, 0));
     }
-}
\ No newline at end of file
+}
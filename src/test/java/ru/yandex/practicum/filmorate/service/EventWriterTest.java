@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import ru.yandex.practicum.filmorate.dao.EventStorage;
+import ru.yandex.practicum.filmorate.enums.ActionType;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+class EventWriterTest {
+    private final EventStorage eventStorage = Mockito.mock(EventStorage.class);
+    private final FriendsTimeline friendsTimeline = Mockito.mock(FriendsTimeline.class);
+    private final List<Event> stored = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+    private final EventWriter eventWriter = new EventWriter(eventStorage, friendsTimeline, 100, 10,
+            Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        eventWriter.stop();
+    }
+
+    @Test
+    void testEventsAreWrittenInBatchesInOrder() {
+        recordWrites();
+        eventWriter.start();
+
+        for (int i = 1; i <= 55; i++) {
+            eventWriter.enqueue(event(i));
+        }
+        eventWriter.flush();
+
+        assertEquals(55, stored.size());
+        assertEquals(ids(1, 55), stored.stream().map(Event::getEntityId).collect(Collectors.toList()));
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+    }
+
+    @Test
+    void testStopWritesQueuedEvents() {
+        recordWrites();
+        for (int i = 1; i <= 25; i++) {
+            eventWriter.enqueue(event(i));
+        }
+        assertTrue(stored.isEmpty());
+
+        eventWriter.start();
+        eventWriter.stop();
+
+        assertEquals(ids(1, 25), stored.stream().map(Event::getEntityId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testFailedEventDoesNotDropBatch() {
+        recordWrites();
+        doThrow(new DataIntegrityViolationException("user not found"))
+                .when(eventStorage).createAll(argThat(events -> events.stream().anyMatch(e -> e.getUserId() == -1)));
+
+        eventWriter.enqueue(event(1));
+        eventWriter.enqueue(Event.builder().userId(-1).eventType(EventType.LIKE).actionType(ActionType.ADD)
+                .entityId(2).eventDateTime(System.currentTimeMillis()).build());
+        eventWriter.enqueue(event(3));
+        eventWriter.flush();
+
+        assertEquals(List.of(1L, 3L), stored.stream().map(Event::getEntityId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testWriterSurvivesTransactionFailure() {
+        recordWrites();
+        doThrow(new CannotCreateTransactionException("pool timeout"))
+                .when(eventStorage).createAll(argThat(events -> events.stream().anyMatch(e -> e.getEntityId() == 1)));
+        doThrow(new IllegalStateException("fan-out failed")).doNothing().when(friendsTimeline).fanOut(anyList());
+        eventWriter.start();
+
+        eventWriter.enqueue(event(1));
+        eventWriter.flush();
+        eventWriter.enqueue(event(2));
+        eventWriter.flush();
+
+        // неудачная пачка снята с ожидания: чтение ленты не ждет flushTimeout
+        long started = System.nanoTime();
+        eventWriter.flush(1);
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(List.of(2L), stored.stream().map(Event::getEntityId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testFullQueueWritesSynchronously() {
+        recordWrites();
+        EventWriter writer = new EventWriter(eventStorage, friendsTimeline, 1, 10, Duration.ofMillis(50));
+
+        writer.enqueue(event(1));
+        writer.enqueue(event(2));
+
+        // писатель не запущен: первое событие ждет в очереди, второе записано в потоке вызова
+        assertEquals(List.of(2L), stored.stream().map(Event::getEntityId).collect(Collectors.toList()));
+        writer.stop();
+        assertEquals(List.of(2L, 1L), stored.stream().map(Event::getEntityId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testFlushWaitsOnlyForUserEvents() throws Exception {
+        EventWriter writer = new EventWriter(eventStorage, friendsTimeline, 100, 10, Duration.ofMillis(300));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            stored.addAll(invocation.getArgument(0));
+            return null;
+        }).when(eventStorage).createAll(anyList());
+        writer.start();
+        try {
+            writer.enqueue(event(2, 1));
+
+            // у пользователя 1 нет событий в очереди: чтение его ленты не ждет записи чужих
+            long started = System.nanoTime();
+            writer.flush(1);
+            assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(200));
+
+            // ожидание своих событий ограничено flushTimeout
+            started = System.nanoTime();
+            writer.flush(2);
+            assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(250));
+            assertTrue(stored.isEmpty());
+
+            release.countDown();
+            writer.flush(2);
+            assertEquals(List.of(1L), stored.stream().map(Event::getEntityId).collect(Collectors.toList()));
+        } finally {
+            release.countDown();
+            writer.stop();
+        }
+    }
+
+    private void recordWrites() {
+        doAnswer(invocation -> {
+            List<Event> events = invocation.getArgument(0);
+            stored.addAll(events);
+            batchSizes.add(events.size());
+            return null;
+        }).when(eventStorage).createAll(anyList());
+    }
+
+    private Event event(long entityId) {
+        return event(1, entityId);
+    }
+
+    private Event event(int userId, long entityId) {
+        return Event.builder()
+                .userId(userId)
+                .eventType(EventType.LIKE)
+                .actionType(ActionType.ADD)
+                .entityId(entityId)
+                .eventDateTime(System.currentTimeMillis())
+                .build();
+    }
+
+    private List<Long> ids(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
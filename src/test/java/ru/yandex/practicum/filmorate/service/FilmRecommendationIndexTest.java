@@ -0,0 +1,188 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.model.IdSet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+class FilmRecommendationIndexTest {
+    private static final int FILMS = 30;
+    private static final int USERS = 20;
+
+    private final FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+    private final FilmRecommendationIndex recommendationIndex = new FilmRecommendationIndex(filmStorage, 2, 1000, 1000);
+
+    // фильм -> лайкнувшие пользователи, источник данных для перестроения индекса
+    private final Map<Integer, Set<Integer>> likes = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() {
+        when(filmStorage.getAllLikes()).thenAnswer(invocation -> allLikes());
+    }
+
+    @Test
+    void testRecommendsFilmsOfMostSimilarUsers() {
+        like(1, 1);
+        like(2, 1);
+        like(1, 2);
+        like(2, 2);
+        like(3, 2);
+        like(1, 3);
+        like(4, 3);
+        like(5, 3);
+        like(6, 3);
+        like(7, 4);
+        recommendationIndex.rebuild();
+
+        // пользователь 2 схож с 1 на 2/3, пользователь 3 - на 1/5
+        assertEquals(List.of(3, 4, 5, 6), recommendationIndex.recommend(1));
+        assertEquals(List.of(), recommendationIndex.recommend(4));
+        assertEquals(List.of(), recommendationIndex.recommend(100));
+    }
+
+    @Test
+    void testLikersOfPopularFilmSampled() {
+        FilmRecommendationIndex index = new FilmRecommendationIndex(filmStorage, 10, 1000, 2);
+        for (int userId = 1; userId <= 6; userId++) {
+            like(1, userId);
+        }
+        like(2, 6);
+        like(3, 4);
+        index.rebuild();
+
+        // из 6 лайкнувших фильм 1 просматривается каждый третий: пользователи 1 и 4
+        assertEquals(List.of(3), index.recommend(1));
+    }
+
+    @Test
+    void testIncrementalUpdatesMatchRebuild() {
+        assertIncrementalUpdatesMatchRebuild(recommendationIndex);
+    }
+
+    // у каждого фильма больше двух лайкнувших, поэтому они сбрасываются лениво, при чтении
+    @Test
+    void testLazyInvalidationOfPopularFilmsMatchesRebuild() {
+        assertIncrementalUpdatesMatchRebuild(new FilmRecommendationIndex(filmStorage, 2, 2, 1000));
+    }
+
+    @Test
+    void testConcurrentRecommendationsMatchRebuild() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            like(1 + random.nextInt(FILMS), 1 + random.nextInt(USERS));
+        }
+        recommendationIndex.rebuild();
+
+        // рекомендации считаются без блокировки одновременно с лайками; устаревший расчет не должен попасть в кэш
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int thread = 0; thread < 3; thread++) {
+            int seed = thread;
+            readers.add(executor.submit(() -> {
+                Random readerRandom = new Random(seed);
+                while (writing.get()) {
+                    recommendationIndex.recommend(1 + readerRandom.nextInt(USERS));
+                }
+            }));
+        }
+        executor.submit(() -> {
+            for (int i = 0; i < 2000; i++) {
+                change(random);
+            }
+            writing.set(false);
+        }).get();
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+
+        assertMatchesRebuild(recommendationIndex);
+    }
+
+    @Test
+    void testRemoveUserAndFilm() {
+        like(1, 1);
+        like(1, 2);
+        like(2, 2);
+        like(3, 2);
+        recommendationIndex.rebuild();
+        assertEquals(List.of(2, 3), recommendationIndex.recommend(1));
+
+        likes.remove(2);
+        recommendationIndex.removeFilm(2);
+        assertEquals(List.of(3), recommendationIndex.recommend(1));
+
+        likes.values().forEach(users -> users.remove(2));
+        recommendationIndex.removeUser(2);
+        assertEquals(List.of(), recommendationIndex.recommend(1));
+    }
+
+    private void assertIncrementalUpdatesMatchRebuild(FilmRecommendationIndex index) {
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            like(1 + random.nextInt(FILMS), 1 + random.nextInt(USERS));
+        }
+        index.rebuild();
+        assertTrue(index.isReady());
+
+        for (int i = 0; i < 300; i++) {
+            change(index, random);
+            // прогреваем кэш части пользователей, чтобы проверить его инвалидацию
+            index.recommend(1 + random.nextInt(USERS));
+        }
+
+        assertMatchesRebuild(index);
+    }
+
+    private void change(Random random) {
+        change(recommendationIndex, random);
+    }
+
+    private void change(FilmRecommendationIndex index, Random random) {
+        int filmId = 1 + random.nextInt(FILMS);
+        int userId = 1 + random.nextInt(USERS);
+        if (random.nextBoolean()) {
+            like(filmId, userId);
+            index.addLike(filmId, userId);
+        } else {
+            likes.getOrDefault(filmId, new HashSet<>()).remove(userId);
+            index.removeLike(filmId, userId);
+        }
+    }
+
+    private void assertMatchesRebuild(FilmRecommendationIndex index) {
+        FilmRecommendationIndex rebuilt = new FilmRecommendationIndex(filmStorage, 2, 1000, 1000);
+        rebuilt.rebuild();
+        for (int userId = 1; userId <= USERS; userId++) {
+            assertEquals(rebuilt.recommend(userId), index.recommend(userId), "Пользователь " + userId);
+        }
+    }
+
+    private void like(int filmId, int userId) {
+        likes.computeIfAbsent(filmId, id -> new HashSet<>()).add(userId);
+    }
+
+    private Map<Integer, IdSet> allLikes() {
+        return likes.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> IdSet.copyOf(entry.getValue())));
+    }
+}
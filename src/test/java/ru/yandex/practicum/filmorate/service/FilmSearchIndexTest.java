@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.enums.SearchCategoryType;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+class FilmSearchIndexTest {
+    private static final Set<SearchCategoryType> TITLE = EnumSet.of(SearchCategoryType.TITLE);
+    private static final Set<SearchCategoryType> DIRECTOR = EnumSet.of(SearchCategoryType.DIRECTOR);
+    private static final Set<SearchCategoryType> ALL = EnumSet.allOf(SearchCategoryType.class);
+
+    private final FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+    private final FilmSearchIndex filmSearchIndex = new FilmSearchIndex(filmStorage);
+
+    @BeforeEach
+    void setUp() {
+        when(filmStorage.get()).thenReturn(List.of(
+                film(1, "Крутой фильм", "Про кино", new Director(1, "Иван Петров")),
+                film(2, "The Matrix", "Крутой боевик", new Director(2, "Lana Wachowski")),
+                film(3, "Matrix: Reloaded", "Sequel", new Director(2, "Lana Wachowski"))));
+        filmSearchIndex.rebuild();
+    }
+
+    @Test
+    void testSearchByTitlePrefixIgnoresCase() {
+        assertTrue(filmSearchIndex.isReady());
+        assertEquals(Set.of(1), filmSearchIndex.search("КРУТ", TITLE).keySet());
+        assertEquals(Set.of(2, 3), filmSearchIndex.search("matr", TITLE).keySet());
+        assertEquals(Set.of(3), filmSearchIndex.search("matrix reload", TITLE).keySet());
+        assertTrue(filmSearchIndex.search("atrix", TITLE).isEmpty());
+        assertTrue(filmSearchIndex.search("  ", TITLE).isEmpty());
+    }
+
+    @Test
+    void testScoresPreferTitleAndExactMatches() {
+        Map<Integer, Integer> scores = filmSearchIndex.search("крутой", ALL);
+
+        assertEquals(Set.of(1, 2), scores.keySet());
+        assertTrue(scores.get(1) > scores.get(2));
+        assertTrue(filmSearchIndex.search("matrix", TITLE).get(2) > filmSearchIndex.search("matri", TITLE).get(2));
+    }
+
+    @Test
+    void testPutAndRemoveUpdatePostings() {
+        filmSearchIndex.put(film(1, "Новое название", "Про кино", new Director(1, "Иван Петров")));
+        filmSearchIndex.put(film(4, "Matrix Resurrections", "", new Director(2, "Lana Wachowski")));
+        filmSearchIndex.remove(3);
+
+        assertTrue(filmSearchIndex.search("крутой", TITLE).isEmpty());
+        assertEquals(Set.of(1), filmSearchIndex.search("новое", TITLE).keySet());
+        assertEquals(Set.of(2, 4), filmSearchIndex.search("matrix", TITLE).keySet());
+    }
+
+    @Test
+    void testDirectorChangesAreReflected() {
+        filmSearchIndex.updateDirector(new Director(2, "The Wachowskis"));
+        assertTrue(filmSearchIndex.search("lana", DIRECTOR).isEmpty());
+        assertEquals(Set.of(2, 3), filmSearchIndex.search("wachowskis", DIRECTOR).keySet());
+
+        filmSearchIndex.removeDirector(2);
+        assertTrue(filmSearchIndex.search("wachowskis", DIRECTOR).isEmpty());
+        assertEquals(Set.of(1), filmSearchIndex.search("петров", DIRECTOR).keySet());
+    }
+
+    private Film film(int id, String name, String description, Director director) {
+        Film film = Film.builder()
+                .name(name)
+                .description(description)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .directors(new LinkedHashSet<>(List.of(director)))
+                .build();
+        film.setId(id);
+        return film;
+    }
+}
@@ -7,21 +7,28 @@ import ru.yandex.practicum.filmorate.dao.FilmStorage;
 import ru.yandex.practicum.filmorate.dao.UserStorage;
 import ru.yandex.practicum.filmorate.enums.SortCategoryType;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.FilmValidationException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -33,7 +40,13 @@ class FilmServiceTest {
     private final DirectorService directorService = Mockito.mock(DirectorService.class);
 
 
-    private final FilmService filmService = new FilmService(filmStorage, userStorage, directorService);
+    private final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(filmStorage);
+    private final FilmSearchIndex filmSearchIndex = new FilmSearchIndex(filmStorage);
+    private final FilmRecommendationIndex filmRecommendationIndex = Mockito.mock(FilmRecommendationIndex.class);
+
+
+    private final FilmService filmService = new FilmService(filmStorage, userStorage, directorService, popularFilmsIndex,
+            filmSearchIndex, filmRecommendationIndex);
 
     private Film film = Film.builder()
             .name("name")
@@ -61,8 +74,8 @@ class FilmServiceTest {
 
     @BeforeEach
     void setLikes() {
-        film.setLikes(new HashSet<>());
-        popularFilm.setLikes(Set.of(1, 2, 3));
+        film.setLikes(new IdSet());
+        popularFilm.setLikes(IdSet.of(1, 2, 3));
     }
 
     @Test
@@ -166,6 +179,64 @@ class FilmServiceTest {
         assertEquals(List.of(film, popularFilm), top);
     }
 
+    @Test
+    void getTopFromIndex() {
+        film.setId(filmId);
+        popularFilm.setId(2);
+        popularFilm.setLikeCount(3);
+        when(filmStorage.get()).thenReturn(List.of(film, popularFilm));
+        popularFilmsIndex.rebuild();
+
+        Collection<Film> top = filmService.getTop(10, 0, 0);
+
+        verify(filmStorage, never()).getPopularByGenreAndYear(anyInt(), anyInt(), anyInt());
+        assertEquals(List.of(2, filmId), ids(top));
+        assertEquals(List.of(2), ids(filmService.getTop(10, 0, 2010)));
+        assertEquals(List.of(2), ids(filmService.getTop(1, 0, 0)));
+    }
+
+    @Test
+    void getTopReturnsCopies() {
+        film.setId(filmId);
+        popularFilm.setId(2);
+        popularFilm.setLikeCount(3);
+        when(filmStorage.get()).thenReturn(List.of(film, popularFilm));
+        popularFilmsIndex.rebuild();
+
+        // изменения исходных и выданных фильмов не должны попадать в индекс
+        popularFilm.setLikeCount(0);
+        popularFilm.setReleaseDate(LocalDate.of(2020, 1, 1));
+        filmService.getTop(1, 0, 0).get(0).setLikeCount(0);
+
+        List<Film> top = filmService.getTop(10, 0, 2010);
+        assertEquals(List.of(2), ids(top));
+        assertEquals(3, top.get(0).getLikeCount());
+        assertNull(top.get(0).getLikes());
+    }
+
+    @Test
+    void addLikeUpdatesIndex() {
+        film.setId(filmId);
+        popularFilm.setId(2);
+        popularFilm.setLikeCount(3);
+        when(filmStorage.get()).thenReturn(List.of(film, popularFilm));
+        popularFilmsIndex.rebuild();
+        when(filmStorage.getById(filmId)).thenReturn(Optional.of(film));
+        when(userStorage.getById(userId)).thenReturn(Optional.of(user));
+        // повторный лайк хранилище не добавляет, индекс не должен его учитывать
+        when(filmStorage.addLike(film, user)).thenReturn(true, false);
+
+        for (int i = 0; i < 4; i++) {
+            popularFilmsIndex.addLike(filmId);
+        }
+        filmService.addLike(filmId, userId);
+        filmService.addLike(filmId, userId);
+
+        assertEquals(List.of(filmId, 2), ids(filmService.getTop(10, 0, 0)));
+        assertEquals(5, filmService.getTop(1, 0, 0).get(0).getLikeCount());
+        verify(filmRecommendationIndex, times(2)).addLike(filmId, userId);
+    }
+
     @Test
     public void testFindAll() {
         when(filmStorage.get()).thenReturn(List.of(film, popularFilm));
@@ -177,6 +248,33 @@ class FilmServiceTest {
         verify(filmStorage, times(1)).get();
     }
 
+    @Test
+    public void testFindPage() {
+        when(filmStorage.getPage(5, 1000)).thenReturn(List.of(film));
+
+        Collection<Film> result = filmService.findPage(5, 5000);
+
+        assertEquals(List.of(film), result);
+        verify(filmStorage).getPage(5, 1000);
+    }
+
+    @Test
+    public void testFindPageWithNonPositiveLimit() {
+        assertThrows(FilmValidationException.class, () -> filmService.findPage(0, 0));
+    }
+
+    @Test
+    public void testStreamAll() {
+        film.setId(1);
+        when(filmStorage.getPage(0, 1000)).thenReturn(List.of(film));
+        List<Film> streamed = new ArrayList<>();
+
+        filmService.streamAll(streamed::add);
+
+        assertEquals(List.of(film), streamed);
+        verify(filmStorage, times(1)).getPage(anyInt(), anyInt());
+    }
+
     @Test
     public void testFindById() {
         int filmId = 1;
@@ -251,7 +349,8 @@ class FilmServiceTest {
                 .duration(100)
                 .directors(new HashSet<>(Arrays.asList(
                         new Director(1, "Director1"))))
-                .likes(new HashSet<>(Arrays.asList(2)))
+                .likes(IdSet.of(2))
+                .likeCount(1)
                 .build();
         Film film2 = Film.builder()
                 .name("name2")
@@ -260,10 +359,11 @@ class FilmServiceTest {
                 .duration(200)
                 .directors(new HashSet<>(Arrays.asList(
                         new Director(1, "Director1"))))
-                .likes(new HashSet<>(Arrays.asList(1, 2)))
+                .likes(IdSet.of(1, 2))
+                .likeCount(2)
                 .build();
 
-        when(filmStorage.getFilmsByDirector(1)).thenReturn(List.of(film2, film1));
+        when(filmStorage.getFilmsByDirector(1)).thenReturn(List.of(film1, film2));
 
         Collection<Film> result = filmService.getFilmsByDirector(1, SortCategoryType.LIKES);
 
@@ -282,7 +382,8 @@ class FilmServiceTest {
                 .duration(100)
                 .directors(new HashSet<>(Arrays.asList(
                         new Director(1, "Director1"))))
-                .likes(new HashSet<>(Arrays.asList(2)))
+                .likes(IdSet.of(2))
+                .likeCount(1)
                 .build();
         Film film2 = Film.builder()
                 .name("name2")
@@ -291,7 +392,8 @@ class FilmServiceTest {
                 .duration(200)
                 .directors(new HashSet<>(Arrays.asList(
                         new Director(1, "Director1"))))
-                .likes(new HashSet<>(Arrays.asList(1, 2)))
+                .likes(IdSet.of(1, 2))
+                .likeCount(2)
                 .build();
 
         when(filmStorage.getFilmsByDirector(1)).thenReturn(List.of(film1, film2));
@@ -324,15 +426,47 @@ class FilmServiceTest {
                 .duration(100)
                 .directors(new HashSet<>(Arrays.asList(
                         new Director(1, "Director1"))))
-                .likes(new HashSet<>(Arrays.asList(2)))
+                .likes(IdSet.of(2))
+                .likeCount(1)
                 .build();
 
-        when(filmStorage.search("name1", false, true)).thenReturn(List.of(film1));
+        when(filmStorage.search("name1", false, true, false)).thenReturn(List.of(film1));
 
-        Collection<Film> result = filmService.searchFilms("name1", false, true);
+        Collection<Film> result = filmService.searchFilms("name1", false, true, false);
 
         assertEquals(1, result.size());
         assertEquals(List.of(film1), result);
 
     }
+
+    @Test
+    void testSearchFilmsByDescriptionBeforeIndexReady() {
+        when(filmStorage.search("description", false, false, true)).thenReturn(List.of(film));
+
+        assertEquals(List.of(film), filmService.searchFilms("description", false, false, true));
+        verify(filmStorage).search("description", false, false, true);
+    }
+
+    @Test
+    void testSearchFilmsFromIndex() {
+        film.setId(filmId);
+        film.setName("Brave new world");
+        film.setDirectors(new HashSet<>(List.of(new Director(1, "Newman"))));
+        popularFilm.setId(2);
+        popularFilm.setName("New");
+        popularFilm.setLikeCount(3);
+        when(filmStorage.get()).thenReturn(List.of(film, popularFilm));
+        filmSearchIndex.rebuild();
+        when(filmStorage.getByIds(Set.of(filmId, 2))).thenReturn(List.of(film, popularFilm));
+        when(filmStorage.getByIds(Set.of(filmId))).thenReturn(List.of(film));
+
+        assertEquals(List.of(popularFilm, film), filmService.searchFilms("new", false, true, false));
+        assertEquals(List.of(film), filmService.searchFilms("NEW world", true, true, false));
+        verify(filmStorage, never()).search(Mockito.anyString(), Mockito.anyBoolean(), Mockito.anyBoolean(),
+                Mockito.anyBoolean());
+    }
+
+    private static List<Integer> ids(Collection<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
 }
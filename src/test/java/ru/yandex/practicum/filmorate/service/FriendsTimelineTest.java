@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.CannotCreateTransactionException;
+import ru.yandex.practicum.filmorate.dao.EventStorage;
+import ru.yandex.practicum.filmorate.dao.TimelineStorage;
+import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.TimelineEntry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FriendsTimelineTest {
+    private final UserStorage userStorage = Mockito.mock(UserStorage.class);
+    private final EventStorage eventStorage = Mockito.mock(EventStorage.class);
+    private final TimelineStorage timelineStorage = Mockito.mock(TimelineStorage.class);
+    private final FriendsTimeline friendsTimeline =
+            new FriendsTimeline(userStorage, eventStorage, timelineStorage, 3, Duration.ofMinutes(1));
+
+    // сохраненные ленты, заменяемые при persist()
+    private final List<TimelineEntry> persisted = new ArrayList<>();
+    private final AtomicInteger persistedEventId = new AtomicInteger();
+    private final AtomicBoolean replaceFails = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        // у пользователя 1 в друзьях 10 и 11, у пользователя 2 - только 10
+        when(userStorage.getFollowerIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> authorIds = invocation.getArgument(0);
+            Map<Integer, List<Integer>> followers = Map.of(10, List.of(1, 2), 11, List.of(1));
+            return followers.entrySet().stream()
+                    .filter(entry -> authorIds.contains(entry.getKey()))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        });
+        doAnswer(invocation -> {
+            if (replaceFails.get()) {
+                throw new CannotCreateTransactionException("pool timeout");
+            }
+            Collection<Integer> userIds = invocation.getArgument(0);
+            persisted.removeIf(entry -> userIds.contains(entry.getUserId()));
+            persisted.addAll(invocation.getArgument(1));
+            persistedEventId.set(invocation.getArgument(2));
+            return null;
+        }).when(timelineStorage).replace(anyCollection(), any(), anyInt());
+        when(timelineStorage.getLastEventId()).thenAnswer(invocation -> persistedEventId.get());
+        doAnswer(invocation -> {
+            Consumer<TimelineEntry> consumer = invocation.getArgument(0);
+            new ArrayList<>(persisted).forEach(consumer);
+            return null;
+        }).when(timelineStorage).stream(any());
+        when(eventStorage.getPage(anyInt(), anyInt())).thenReturn(List.of());
+    }
+
+    @Test
+    void testFanOutToFollowersNewestFirst() {
+        friendsTimeline.fanOut(List.of(event(1, 10), event(2, 11), event(3, 12)));
+        friendsTimeline.fanOut(List.of(event(4, 10)));
+
+        assertEquals(List.of(4, 2, 1), friendsTimeline.page(1, null, 10));
+        assertEquals(List.of(4, 1), friendsTimeline.page(2, null, 10));
+        assertEquals(List.of(2), friendsTimeline.page(1, 4, 1));
+        assertTrue(friendsTimeline.page(12, null, 10).isEmpty());
+    }
+
+    @Test
+    void testRingBufferKeepsLatestEventsAndSkipsDuplicates() {
+        friendsTimeline.fanOut(List.of(event(1, 11), event(3, 11), event(5, 11), event(7, 11)));
+        assertEquals(List.of(7, 5, 3), friendsTimeline.page(1, null, 10));
+
+        // событие старше всех в заполненной ленте не попадает в нее, промежуточное вытесняет самое старое
+        when(eventStorage.getLastByUserId(10, 3)).thenReturn(List.of(event(6, 10), event(5, 10), event(2, 10)));
+        friendsTimeline.addFriend(1, 10);
+        assertEquals(List.of(7, 6, 5), friendsTimeline.page(1, null, 10));
+
+        friendsTimeline.fanOut(List.of(event(7, 11)));
+        assertEquals(List.of(7, 6, 5), friendsTimeline.page(1, null, 10));
+    }
+
+    @Test
+    void testRemoveFriendDropsAuthorEvents() {
+        friendsTimeline.fanOut(List.of(event(1, 10), event(2, 11), event(3, 10)));
+
+        friendsTimeline.removeFriend(1, 10);
+
+        assertEquals(List.of(2), friendsTimeline.page(1, null, 10));
+        assertEquals(List.of(3, 1), friendsTimeline.page(2, null, 10));
+    }
+
+    @Test
+    void testPersistAndLoadWithCatchUp() {
+        friendsTimeline.fanOut(List.of(event(1, 10), event(2, 11)));
+        friendsTimeline.persist();
+        assertEquals(3, persisted.size());
+
+        when(eventStorage.getPage(2, 1000)).thenReturn(List.of(event(3, 11)));
+        FriendsTimeline restarted =
+                new FriendsTimeline(userStorage, eventStorage, timelineStorage, 3, Duration.ofMinutes(1));
+        restarted.load();
+
+        assertEquals(List.of(3, 2, 1), restarted.page(1, null, 10));
+        assertEquals(List.of(1), restarted.page(2, null, 10));
+    }
+
+    @Test
+    void testEventsWithoutFollowersAdvanceCatchUpStart() {
+        friendsTimeline.fanOut(List.of(event(1, 10)));
+        friendsTimeline.persist();
+        // у автора 12 подписчиков нет: ленты не меняются, но отметка сохраняется
+        friendsTimeline.fanOut(List.of(event(2, 12), event(3, 12)));
+        friendsTimeline.persist();
+
+        assertEquals(3, persistedEventId.get());
+        when(eventStorage.getPage(3, 1000)).thenReturn(List.of(event(4, 11)));
+        FriendsTimeline restarted =
+                new FriendsTimeline(userStorage, eventStorage, timelineStorage, 3, Duration.ofMinutes(1));
+        restarted.load();
+
+        verify(eventStorage, never()).getPage(0, 1000);
+        assertEquals(List.of(4, 1), restarted.page(1, null, 10));
+    }
+
+    @Test
+    void testFailedPersistKeepsTimelinesDirty() {
+        friendsTimeline.fanOut(List.of(event(1, 10), event(2, 11)));
+        replaceFails.set(true);
+
+        friendsTimeline.persist();
+
+        assertTrue(persisted.isEmpty());
+        replaceFails.set(false);
+        friendsTimeline.persist();
+        assertEquals(3, persisted.size());
+        assertEquals(2, persistedEventId.get());
+    }
+
+    private Event event(int eventId, int userId) {
+        return Event.builder().eventId(eventId).userId(userId).build();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.jdbc.SqlGroup;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@SqlGroup({
+        @Sql(scripts = "classpath:schema.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+        @Sql(scripts = "classpath:create_test_data.sql", config = @SqlConfig(encoding = "UTF-8"), executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class PopularFilmsIndexTest {
+    private static final int[] GENRE_IDS = {0, 1, 2, 3, 4, 5, 6};
+    private static final int[] YEARS = {0, 1999, 2020, 2021, 2022};
+    private static final int[] COUNTS = {1, 2, 10};
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+
+    private PopularFilmsIndex popularFilmsIndex;
+
+    @BeforeEach
+    void setUp() {
+        popularFilmsIndex = new PopularFilmsIndex(filmDbStorage);
+        popularFilmsIndex.rebuild();
+    }
+
+    @Test
+    void testIndexMatchesDatabaseAfterRebuild() {
+        assertConsistentWithDatabase();
+    }
+
+    @Test
+    void testIndexMatchesDatabaseAfterLikes() {
+        like(3, 1);
+        like(3, 2);
+        like(3, 4);
+        unlike(1, 1);
+        unlike(1, 2);
+        unlike(1, 4);
+        unlike(2, 4);
+
+        assertConsistentWithDatabase();
+        assertEquals(3, popularFilmsIndex.getTop(1, 0, 0).get(0).getId());
+    }
+
+    @Test
+    void testIndexMatchesDatabaseAfterFilmChanges() {
+        Film film = filmDbStorage.getById(2).orElseThrow();
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(2, "Драма"))));
+        popularFilmsIndex.put(filmDbStorage.update(film).orElseThrow());
+
+        filmDbStorage.removeFilm(1);
+        popularFilmsIndex.remove(1);
+
+        IdSet likedFilmIds = filmDbStorage.getLikedFilmIds(2);
+        userDbStorage.removeUser(2);
+        popularFilmsIndex.refresh(likedFilmIds);
+
+        assertConsistentWithDatabase();
+    }
+
+    private void like(int filmId, int userId) {
+        if (filmDbStorage.addLike(film(filmId), user(userId))) {
+            popularFilmsIndex.addLike(filmId);
+        }
+    }
+
+    private void unlike(int filmId, int userId) {
+        if (filmDbStorage.removeLike(film(filmId), user(userId))) {
+            popularFilmsIndex.removeLike(filmId);
+        }
+    }
+
+    private Film film(int filmId) {
+        return filmDbStorage.getById(filmId).orElseThrow();
+    }
+
+    private User user(int userId) {
+        return userDbStorage.getById(userId).orElseThrow();
+    }
+
+    private void assertConsistentWithDatabase() {
+        for (int genreId : GENRE_IDS) {
+            for (int year : YEARS) {
+                for (int count : COUNTS) {
+                    List<Film> expected = filmDbStorage.getPopularByGenreAndYear(count, genreId, year);
+                    List<Film> actual = popularFilmsIndex.getTop(count, genreId, year);
+                    assertEquals(expected, actual,
+                            String.format("Жанр %d, год %d, количество %d", genreId, year, count));
+                }
+            }
+        }
+    }
+}
@@ -6,6 +6,9 @@ import org.mockito.Mockito;
 import ru.yandex.practicum.filmorate.dao.FilmStorage;
 import ru.yandex.practicum.filmorate.dao.UserStorage;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
@@ -22,7 +25,14 @@ class UserServiceTest {
 
     private final FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
 
-    private final UserService userService = new UserService(userStorage, filmStorage);
+    private final PopularFilmsIndex popularFilmsIndex = Mockito.mock(PopularFilmsIndex.class);
+
+    private final FilmRecommendationIndex filmRecommendationIndex = Mockito.mock(FilmRecommendationIndex.class);
+
+    private final FriendsTimeline friendsTimeline = Mockito.mock(FriendsTimeline.class);
+
+    private final UserService userService = new UserService(userStorage, filmStorage, popularFilmsIndex,
+            filmRecommendationIndex, friendsTimeline);
 
     private User user = User.builder()
             .email("test1@test.test")
@@ -45,8 +55,8 @@ class UserServiceTest {
 
     @BeforeEach
     void setFriends() {
-        user.setFriends(new HashSet<>());
-        otherUser.setFriends(new HashSet<>());
+        user.setFriends(new IdSet());
+        otherUser.setFriends(new IdSet());
     }
 
     @Test
@@ -80,6 +90,7 @@ class UserServiceTest {
         verify(userStorage).getById(userId);
         verify(userStorage).getById(otherUserId);
         verify(userStorage).addFriend(user, otherUser);
+        verify(friendsTimeline).addFriend(userId, otherUserId);
     }
 
     @Test
@@ -126,20 +137,22 @@ class UserServiceTest {
         verify(userStorage).getById(userId);
         verify(userStorage).getById(otherUserId);
         verify(userStorage).removeFriend(user, otherUser);
+        verify(friendsTimeline).removeFriend(userId, otherUserId);
     }
 
     @Test
     void getCommonFriends() {
         user.getFriends().add(commonFriendId);
-        otherUser.setFriends(Set.of(commonFriendId, otherFriendId));
+        otherUser.setFriends(IdSet.of(commonFriendId, otherFriendId));
         when(userStorage.getById(userId)).thenReturn(Optional.of(user));
         when(userStorage.getById(otherUserId)).thenReturn(Optional.of(otherUser));
-        when(userStorage.getById(commonFriendId)).thenReturn(Optional.of(user));
+        when(userStorage.getByIds(Set.of(commonFriendId))).thenReturn(List.of(user));
 
         Collection<User> commonFriends = userService.getCommonFriends(userId, otherUserId);
 
         verify(userStorage).getById(userId);
-        verify(userStorage).getById(commonFriendId);
+        verify(userStorage).getByIds(Set.of(commonFriendId));
+        verify(userStorage, never()).getById(commonFriendId);
         verify(userStorage, never()).getById(otherFriendId);
         assertEquals(1, commonFriends.size());
         assertEquals(List.of(user), commonFriends);
@@ -212,14 +225,31 @@ class UserServiceTest {
         assertEquals(0, friends.size());
     }
 
+    @Test
+    public void testGetFriendsLoadsFriendsInBulk() {
+        user.getFriends().add(otherUserId);
+        when(userStorage.getById(userId)).thenReturn(Optional.of(user));
+        when(userStorage.getByIds(Set.of(otherUserId))).thenReturn(List.of(otherUser));
+
+        Collection<User> friends = userService.getFriends(userId);
+
+        verify(userStorage).getByIds(Set.of(otherUserId));
+        verify(userStorage, never()).getById(otherUserId);
+        assertEquals(List.of(otherUser), friends);
+    }
+
     @Test
     public void testRemoveUser() {
         when(userStorage.getById(userId)).thenReturn(Optional.of(user));
+        IdSet likedFilmIds = IdSet.of(1, 2);
+        when(filmStorage.getLikedFilmIds(userId)).thenReturn(likedFilmIds);
 
         userService.removeUser(userId);
 
         verify(userStorage).getById(userId);
         verify(userStorage).removeUser(userId);
+        verify(popularFilmsIndex).refresh(likedFilmIds);
+        verify(friendsTimeline).removeUser(userId);
     }
 
     @Test
@@ -230,4 +260,46 @@ class UserServiceTest {
         verify(userStorage).getById(userId);
         assertEquals(exception.getMessage(), "Пользователь с ID = " + userId + " не найден.");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetFilmRecommendationsFromIndex() {
+        Film film1 = Film.builder().name("film1").build();
+        film1.setId(1);
+        Film film2 = Film.builder().name("film2").build();
+        film2.setId(2);
+        when(userStorage.getById(userId)).thenReturn(Optional.of(user));
+        when(filmRecommendationIndex.isReady()).thenReturn(true);
+        when(filmRecommendationIndex.recommend(userId)).thenReturn(List.of(2, 3, 1));
+        when(filmStorage.getByIds(List.of(2, 3, 1))).thenReturn(List.of(film1, film2));
+
+        List<Film> recommendations = userService.getFilmRecommendations(userId);
+
+        verify(filmStorage, never()).getFilmRecommendations(anyInt());
+        assertEquals(List.of(film2, film1), recommendations);
+    }
+
+    @Test
+    void addFriendsChecksAllUsersAtOnce() {
+        List<Friendship> friendships = List.of(new Friendship(userId, otherUserId), new Friendship(userId, commonFriendId));
+        when(userStorage.findExistingIds(anyCollection())).thenReturn(Set.of(userId, otherUserId, commonFriendId));
+
+        userService.addFriends(friendships);
+
+        verify(userStorage, times(1)).findExistingIds(Set.of(userId, otherUserId, commonFriendId));
+        verify(userStorage, never()).getById(anyInt());
+        verify(userStorage).addFriends(friendships);
+        verify(friendsTimeline).addFriends(friendships);
+    }
+
+    @Test
+    void addFriendsWhenUserIsMissing() {
+        List<Friendship> friendships = List.of(new Friendship(userId, otherUserId), new Friendship(otherFriendId, userId));
+        when(userStorage.findExistingIds(anyCollection())).thenReturn(Set.of(userId, otherUserId));
+
+        UserNotFoundException exception = assertThrows(UserNotFoundException.class,
+                () -> userService.addFriends(friendships));
+        assertEquals("Пользователи с ID = [" + otherFriendId + "] не найдены.", exception.getMessage());
+        verify(userStorage, never()).addFriends(any());
+        verifyNoInteractions(friendsTimeline);
+    }
+}